@@ -0,0 +1,175 @@
+package magma;
+
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The manifest of the last build: for every source file, the hash of its content and the hash of the output that was
+ * written for it. A file whose content and output are both unchanged is not compiled again. The manifest is only
+ * used by the same compiler version: the version is a hash of the compiler's own class files and of the options that
+ * change its output, so rebuilding the compiler invalidates it.
+ * <p>
+ * The manifest is a text file. Its first line is the compiler version. Every other line holds a source path, the input
+ * hash and the output hash, separated by tabs. A missing or unreadable manifest is treated as empty. One cache can
+ * serve any number of builds (see {@link Daemon}); every build updates the entries of the files it compiled, and drops
+ * the entries of the files that were deleted.
+ */
+public final class BuildCache {
+	private static final String SEPARATOR = "\t";
+	private final String version;
+	private final Map<String, Entry> entries;
+	private final AtomicLong reused = new AtomicLong();
+
+	private record Entry(String inputHash, String outputHash) {
+		private String format(String key) {
+			return key + SEPARATOR + inputHash + SEPARATOR + outputHash;
+		}
+	}
+
+	private BuildCache(String version, Map<String, Entry> entries) {
+		this.version = version;
+		this.entries = new ConcurrentHashMap<String, Entry>(entries);
+	}
+
+	public static BuildCache empty() {
+		return new BuildCache("", Map.of());
+	}
+
+	public static BuildCache load(Path manifest) {
+		final String version = compilerVersion();
+		try {
+			if (!Files.exists(manifest)) return new BuildCache(version, Map.of());
+			final java.util.List<String> lines = Files.readAllLines(manifest);
+			if (lines.isEmpty() || version.isEmpty() || !lines.getFirst().equals(version))
+				return new BuildCache(version, Map.of());
+			return new BuildCache(version, parse(lines.stream().skip(1)));
+		} catch (IOException e) {
+			return new BuildCache(version, Map.of());
+		}
+	}
+
+	private static Map<String, Entry> parse(Stream<String> lines) {
+		return lines.map(line -> line.split(SEPARATOR))
+								.filter(parts -> parts.length == 3)
+								.collect(Collectors.toMap(parts -> parts[0], parts -> new Entry(parts[1], parts[2])));
+	}
+
+	/**
+	 * Whether {@code output} is still what compiling {@code input} would write.
+	 */
+	public boolean isUpToDate(String key, String input, Path output) {
+		if (!(entries.get(key) instanceof Entry entry)) return false;
+		if (!(hash(input) instanceof Some<String>(String inputHash)) || !inputHash.equals(entry.inputHash())) return false;
+		if (!(hashFile(output) instanceof Some<String>(String outputHash)) || !outputHash.equals(entry.outputHash()))
+			return false;
+
+		reused.incrementAndGet();
+		return true;
+	}
+
+	public void record(String key, String input, String output) {
+		if (hash(input) instanceof Some<String>(String inputHash) && hash(output) instanceof Some<String>(String outputHash))
+			entries.put(key, new Entry(inputHash, outputHash));
+	}
+
+	/**
+	 * The source paths that have an entry.
+	 */
+	public java.util.List<String> keys() {
+		return java.util.List.copyOf(entries.keySet());
+	}
+
+	/**
+	 * Drops the entry of a source that was deleted.
+	 */
+	public void forget(String key) {
+		entries.remove(key);
+	}
+
+	/**
+	 * The number of times an output was reused, over all builds.
+	 */
+	public long reused() {
+		return reused.get();
+	}
+
+	/**
+	 * Writes every entry. A file that failed keeps the entry of its last successful compile, which is still valid for
+	 * that content.
+	 */
+	public Option<IOException> save(Path manifest) {
+		if (version.isEmpty()) return new None<IOException>();
+		final String lines = entries.entrySet()
+																.stream()
+																.sorted(Map.Entry.comparingByKey())
+																.map(entry -> entry.getValue().format(entry.getKey()) + System.lineSeparator())
+																.collect(Collectors.joining());
+		try {
+			Files.createDirectories(manifest.getParent());
+			Files.writeString(manifest, version + System.lineSeparator() + lines);
+			return new None<IOException>();
+		} catch (IOException e) {
+			return new Some<IOException>(e);
+		}
+	}
+
+	private static Option<String> hashFile(Path path) {
+		try {
+			if (!Files.exists(path)) return new None<String>();
+			return digest(Files.readAllBytes(path));
+		} catch (IOException e) {
+			return new None<String>();
+		}
+	}
+
+	private static Option<String> hash(String text) {
+		return digest(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static Option<String> digest(byte[] bytes) {
+		try {
+			return new Some<String>(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes)));
+		} catch (NoSuchAlgorithmException e) {
+			return new None<String>();
+		}
+	}
+
+	// Hashes the class files the compiler was loaded from, and the options that change what it generates.
+	private static String compilerVersion() {
+		try {
+			final Path location = Path.of(Compiler.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+			final String options = "magma.or=" + System.getProperty("magma.or", "first");
+			return hashClasses(location).map(classes -> classes + SEPARATOR + options).orElse("");
+		} catch (URISyntaxException e) {
+			return "";
+		}
+	}
+
+	private static Option<String> hashClasses(Path location) {
+		if (!Files.isDirectory(location)) return hashFile(location);
+		try (Stream<Path> paths = Files.walk(location)) {
+			final String hashes = paths.filter(path -> path.toString().endsWith(".class"))
+																 .sorted()
+																 .map(path -> location.relativize(path) + "=" + hashFile(path).orElse(""))
+																 .collect(Collectors.joining(SEPARATOR));
+			return hash(hashes);
+		} catch (IOException e) {
+			return new None<String>();
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package magma;
+
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * How {@link Main} compiles the source tree, read from system properties:
+ * <ul>
+ *   <li>{@code magma.threads}: {@code platform} (default) runs a fixed pool of platform threads, {@code virtual} runs
+ *   one virtual thread per file</li>
+ *   <li>{@code magma.parallelism}: the size of the platform thread pool, by default the number of processors</li>
+ *   <li>{@code magma.errors}: {@code first} (default) stops at the first file that fails, {@code all} compiles every
+ *   file and reports all failures</li>
+ *   <li>{@code magma.cache}: {@code true} (default) skips files that are unchanged since the last build, see
+ *   {@link BuildCache}; {@code false} compiles everything</li>
+ * </ul>
+ *
+ * @param virtual          whether to compile on virtual threads
+ * @param parallelism      the number of platform threads
+ * @param stopAtFirstError whether to stop at the first failing file, in input order
+ * @param incremental      whether to reuse the outputs of unchanged files
+ */
+public record BuildOptions(boolean virtual, int parallelism, boolean stopAtFirstError, boolean incremental) {
+	// The grammars recurse deeply on nested expressions, so platform workers get a large stack (64 MiB).
+	private static final long STACK_SIZE = 67108864L;
+
+	public static BuildOptions fromProperties() {
+		final boolean virtual = System.getProperty("magma.threads", "platform").equals("virtual");
+		final int parallelism = Integer.getInteger("magma.parallelism", Runtime.getRuntime().availableProcessors());
+		final boolean stopAtFirstError = !System.getProperty("magma.errors", "first").equals("all");
+		final boolean incremental = !System.getProperty("magma.cache", "true").equals("false");
+		return new BuildOptions(virtual, Math.max(1, parallelism), stopAtFirstError, incremental);
+	}
+
+	public ExecutorService executor() {
+		if (virtual) return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("magma-compile-", 0).factory());
+		return Executors.newFixedThreadPool(parallelism,
+																				Thread.ofPlatform().name("magma-compile-", 0).stackSize(STACK_SIZE).factory());
+	}
+
+	public BuildCache cache(Path manifest) {
+		if (incremental) return BuildCache.load(manifest);
+		return BuildCache.empty();
+	}
+
+	public String describe() {
+		final String errors;
+		if (stopAtFirstError) errors = "stopping at the first error";
+		else errors = "collecting all errors";
+		if (virtual) return "virtual threads, " + errors;
+		return parallelism + " platform threads, " + errors;
+	}
+}
@@ -0,0 +1,24 @@
+package magma;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One phase of {@link Compiler#compile(String)} on one file, recorded by Java Flight Recorder. The duration of the
+ * event is the duration of the phase. See {@link PhaseMetrics}.
+ */
+@Name("magma.CompilePhase")
+@Label("Compile Phase")
+@Category("Magma")
+@Description("One phase of compiling one Java file to C")
+final class CompilePhaseEvent extends Event {
+	// The grammar does not lex annotated fields, so Flight Recorder labels these by their names.
+	String file;
+	String phase;
+	long inputBytes;
+	// Nodes of the tree the phase built or read, or 0 for a phase on records.
+	int nodes;
+}
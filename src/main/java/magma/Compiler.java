@@ -1,9 +1,17 @@
 package magma;
 
+import magma.compile.CEmitter;
+import magma.compile.HashCons;
 import magma.compile.Lang;
+import magma.compile.Node;
+import magma.compile.RecordFusion;
 import magma.compile.Serializers;
 import magma.compile.error.CompileError;
+import magma.compile.rule.Diagnostics;
+import magma.compile.rule.LexMemo;
+import magma.compile.rule.RuleProfiler;
 import magma.compile.rule.Slice;
+import magma.result.Ok;
 import magma.result.Result;
 import magma.transform.Transformer;
 
@@ -11,12 +19,62 @@ import static magma.compile.CRules.CRoot;
 import static magma.compile.Lang.JRoot;
 
 public class Compiler {
+	private static final boolean MEMOIZE = Boolean.getBoolean("magma.memo");
+	// The plain Node path, without records built during lexing, is kept for debugging the grammar or the serializer.
+	private static final boolean FUSED = !System.getProperty("magma.fused", "true").equals("false");
+	// CEmitter writes what the rules generate when OrRule picks the first match, so other selections keep the rules.
+	private static final boolean EMIT = !System.getProperty("magma.emitter", "true").equals("false") &&
+																			System.getProperty("magma.or", "first").equals("first");
+	// Identical type records of a file share one instance, see HashCons.
+	private static final boolean SHARE_TYPES = !System.getProperty("magma.hashcons", "true").equals("false");
+
 	public static Result<String, CompileError> compile(String input) {
-		return JRoot().lex(new Slice(input))
-									.flatMap(node -> Serializers.deserialize(JRoot.class, node))
-									.flatMap(Transformer::transform)
-									.flatMap(cRoot -> Serializers.serialize(Lang.CRoot.class, cRoot))
-									.flatMap(CRoot()::generate);
+		if (SHARE_TYPES) return HashCons.within(() -> compileOnce(input));
+		return compileOnce(input);
+	}
+
+	private static Result<String, CompileError> compileOnce(String input) {
+		return PhaseMetrics.measure(PhaseMetrics.LEX, () -> lex(input), Node::count)
+											 .flatMap(Compiler::deserialize)
+											 .flatMap(root -> PhaseMetrics.measure(PhaseMetrics.TRANSFORM,
+																														 () -> Transformer.transform(root),
+																														 PhaseMetrics::noNodes))
+											 .flatMap(Compiler::generate);
+	}
+
+	private static Result<Lang.JRoot, CompileError> deserialize(Node node) {
+		return PhaseMetrics.measure(PhaseMetrics.DESERIALIZE,
+																() -> Serializers.deserialize(JRoot.class, node),
+																root -> node.count());
+	}
+
+	private static Result<String, CompileError> generate(Lang.CRoot root) {
+		if (EMIT) return PhaseMetrics.measure(PhaseMetrics.EMIT, () -> CEmitter.emit(root), PhaseMetrics::noNodes);
+		return PhaseMetrics.measure(PhaseMetrics.SERIALIZE,
+																() -> Serializers.serialize(Lang.CRoot.class, root),
+																Node::count).flatMap(Compiler::generateText);
 	}
 
+	private static Result<String, CompileError> generateText(Node root) {
+		return PhaseMetrics.measure(PhaseMetrics.GENERATE, () -> CRoot().generate(root), output -> root.count());
+	}
+
+	private static Result<Node, CompileError> lex(String input) {
+		if (FUSED) return RecordFusion.within(() -> lexDescribingFailure(input));
+		return lexDescribingFailure(input);
+	}
+
+	// Lexing fails cheaply first; only a failure is lexed again to describe why.
+	private static Result<Node, CompileError> lexDescribingFailure(String input) {
+		final Result<Node, CompileError> result = Diagnostics.withoutDetails(() -> lexOnce(input));
+		if (result instanceof Ok<Node, CompileError>) return result;
+		return Diagnostics.withDetails(() -> lexOnce(input));
+	}
+
+	private static Result<Node, CompileError> lexOnce(String input) {
+		RuleProfiler.startAtRoot();
+		if (!MEMOIZE) return JRoot().lex(new Slice(input));
+
+		return LexMemo.within(() -> JRoot().lex(new Slice(input))).left();
+	}
 }
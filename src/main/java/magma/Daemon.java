@@ -0,0 +1,216 @@
+package magma;
+
+import magma.compile.error.ApplicationError;
+import magma.compile.error.ThrowableError;
+import magma.list.ArrayList;
+import magma.list.List;
+import magma.option.Option;
+import magma.option.Some;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * The watch mode of {@link Main}, started with {@code --watch}. After a first build, the process stays alive. The
+ * grammars, the JIT-compiled parser and the {@link BuildCache} stay warm, and only files that change under the source
+ * root are compiled again.
+ * <p>
+ * A build can also be requested over a local socket: port {@code magma.port}, default 7077, loopback only. Each
+ * connection sends one command line and gets one line back:
+ * <ul>
+ *   <li>{@code build} compiles every file that changed since it was last compiled and answers {@code ok <ms>} or
+ *   {@code failed <ms>}</li>
+ *   <li>{@code stop} stops the daemon and answers {@code stopping}</li>
+ * </ul>
+ */
+public final class Daemon {
+	private static final int PORT = Integer.getInteger("magma.port", 7077);
+	private static final long POLL_MILLIS = 500;
+	// Editors write a file in several steps; events that arrive this close together are compiled as one change.
+	private static final long DEBOUNCE_MILLIS = 50;
+	private final Path javaSourceRoot;
+	private final Path cOutputRoot;
+	private final BuildOptions options;
+	private final BuildCache cache;
+	private final AtomicBoolean running = new AtomicBoolean(true);
+
+	private record Change(Set<Path> files, Set<Path> deleted, long detectedAt) {
+		private boolean isEmpty() {
+			return files.isEmpty() && deleted.isEmpty();
+		}
+	}
+
+	public Daemon(Path javaSourceRoot, Path cOutputRoot, BuildOptions options, BuildCache cache) {
+		this.javaSourceRoot = javaSourceRoot;
+		this.cOutputRoot = cOutputRoot;
+		this.options = options;
+		this.cache = cache;
+	}
+
+	public Option<ApplicationError> run() {
+		if (buildAll() instanceof Some<ApplicationError>(ApplicationError error)) System.err.println(error.display());
+
+		try (WatchService watcher = javaSourceRoot.getFileSystem().newWatchService()) {
+			registerAll(watcher, javaSourceRoot);
+			return serve(watcher);
+		} catch (IOException e) {
+			return Option.of(new ApplicationError(new ThrowableError(e)));
+		}
+	}
+
+	private Option<ApplicationError> serve(WatchService watcher) {
+		try (ServerSocket server = new ServerSocket(PORT, 0, InetAddress.getLoopbackAddress())) {
+			Thread.ofPlatform().daemon(true).name("magma-control").start(() -> acceptAll(server));
+			System.out.println("Watching " + javaSourceRoot + " for changes, control port " + server.getLocalPort());
+			watch(watcher);
+			System.out.println("Stopped watching " + javaSourceRoot);
+			return Option.empty();
+		} catch (IOException e) {
+			return Option.of(new ApplicationError(new ThrowableError(e)));
+		}
+	}
+
+	private synchronized Option<ApplicationError> buildAll() {
+		return Main.compileAllJavaFiles(javaSourceRoot, cOutputRoot, options, cache);
+	}
+
+	// A file that was created and deleted again within one change is not compiled.
+	private synchronized Option<ApplicationError> build(Change change) {
+		if (!change.deleted().isEmpty()) Main.removeDeleted(javaSourceRoot, cOutputRoot, change.deleted(), cache);
+		final List<Path> files = new ArrayList<Path>(change.files().stream().filter(Files::exists).toList());
+		final Option<ApplicationError> result = Main.compileAll(javaSourceRoot, cOutputRoot, files, options, cache);
+		System.out.println("Change compiled " + millisSince(change.detectedAt()) + " ms after it was detected");
+		return result;
+	}
+
+	private static long millisSince(long start) {
+		return Duration.ofNanos(System.nanoTime() - start).toMillis();
+	}
+
+	private void watch(WatchService watcher) {
+		while (running.get()) {
+			final Change change = collect(watcher);
+			if (!change.isEmpty() && build(change) instanceof Some<ApplicationError>(ApplicationError error))
+				System.err.println(error.display());
+		}
+	}
+
+	private Change collect(WatchService watcher) {
+		Option<WatchKey> key = poll(watcher, POLL_MILLIS);
+		final Change change = new Change(new TreeSet<Path>(), new TreeSet<Path>(), System.nanoTime());
+		while (key instanceof Some<WatchKey>(WatchKey found)) {
+			drain(watcher, found, change);
+			key = poll(watcher, DEBOUNCE_MILLIS);
+		}
+		return change;
+	}
+
+	private Option<WatchKey> poll(WatchService watcher, long millis) {
+		try {
+			return Option.ofNullable(watcher.poll(millis, TimeUnit.MILLISECONDS));
+		} catch (InterruptedException e) {
+			running.set(false);
+			return Option.empty();
+		}
+	}
+
+	private void drain(WatchService watcher, WatchKey key, Change change) {
+		final Path directory = Path.class.cast(key.watchable());
+		key.pollEvents().forEach(event -> onEvent(watcher, directory, event, change));
+		key.reset();
+	}
+
+	// Events were lost when the queue overflowed, so everything is checked again; the cache skips unchanged files, and
+	// the sources of the manifest that are gone are removed. A rename arrives as a deletion and a creation.
+	private void onEvent(WatchService watcher, Path directory, WatchEvent<?> event, Change change) {
+		if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+			change.files().addAll(javaFiles(javaSourceRoot));
+			change.deleted().add(javaSourceRoot);
+		} else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE)
+			change.deleted().add(directory.resolve(Path.class.cast(event.context())));
+		else onPath(watcher, directory.resolve(Path.class.cast(event.context())), change.files());
+	}
+
+	private void onPath(WatchService watcher, Path path, Set<Path> files) {
+		if (Files.isDirectory(path)) {
+			registerAll(watcher, path);
+			files.addAll(javaFiles(path));
+		} else if (path.toString().endsWith(".java") && Files.isRegularFile(path)) files.add(path);
+	}
+
+	private static java.util.List<Path> javaFiles(Path root) {
+		try (Stream<Path> paths = Files.walk(root)) {
+			return paths.filter(Files::isRegularFile).filter(path -> path.toString().endsWith(".java")).toList();
+		} catch (IOException e) {
+			System.err.println("Failed to list " + root + ": " + e.getMessage());
+			return java.util.List.of();
+		}
+	}
+
+	private static void registerAll(WatchService watcher, Path root) {
+		try (Stream<Path> paths = Files.walk(root)) {
+			paths.filter(Files::isDirectory).forEach(directory -> register(watcher, directory));
+		} catch (IOException e) {
+			System.err.println("Failed to watch " + root + ": " + e.getMessage());
+		}
+	}
+
+	private static void register(WatchService watcher, Path directory) {
+		try {
+			directory.register(watcher,
+												 StandardWatchEventKinds.ENTRY_CREATE,
+												 StandardWatchEventKinds.ENTRY_MODIFY,
+												 StandardWatchEventKinds.ENTRY_DELETE,
+												 StandardWatchEventKinds.OVERFLOW);
+		} catch (IOException e) {
+			System.err.println("Failed to watch " + directory + ": " + e.getMessage());
+		}
+	}
+
+	private void acceptAll(ServerSocket server) {
+		while (running.get()) accept(server);
+	}
+
+	private void accept(ServerSocket server) {
+		try (Socket socket = server.accept()) {
+			final BufferedReader reader =
+					new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			final PrintWriter writer =
+					new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+			writer.println(execute(Option.ofNullable(reader.readLine()).orElse("").strip()));
+		} catch (IOException e) {
+			if (running.get()) System.err.println("Control connection failed: " + e.getMessage());
+		}
+	}
+
+	private String execute(String command) {
+		if (command.equals("stop")) {
+			running.set(false);
+			return "stopping";
+		}
+
+		if (!command.equals("build")) return "unknown command '" + command + "', expected 'build' or 'stop'";
+		final long start = System.nanoTime();
+		if (buildAll() instanceof Some<ApplicationError>) return "failed " + millisSince(start);
+		return "ok " + millisSince(start);
+	}
+}
@@ -2,9 +2,15 @@ package magma;
 
 import magma.compile.error.ApplicationError;
 import magma.compile.error.CompileError;
+import magma.compile.error.FailedFiles;
 import magma.compile.error.ThrowableError;
+import magma.compile.rule.LexMemo;
+import magma.compile.rule.OrRule;
+import magma.compile.rule.RuleProfiler;
+import magma.compile.rule.ScanHeatmap;
 import magma.list.ArrayList;
 import magma.list.List;
+import magma.list.ListCollector;
 import magma.option.Option;
 import magma.option.Some;
 import magma.result.Err;
@@ -15,15 +21,26 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Stream;
 
 public class Main {
+	private static final Path MANIFEST = Paths.get(".", "target", "magma-build.manifest");
+	private static final Path PROFILE_TABLE = Paths.get(".", "target", "magma-rules.txt");
+	private static final Path PROFILE_STACKS = Paths.get(".", "target", "magma-rules.folded");
+	private static final Path HEATMAPS = Paths.get(".", "target", "magma-heatmap");
+	private static final Path PHASE_METRICS = Paths.get(".", "target", "magma-phases.txt");
 
 	public static void main(String[] args) {
-		if (run() instanceof Some<ApplicationError>(ApplicationError value)) System.err.println(value.display());
+		final boolean watch = Arrays.asList(args).contains("--watch");
+		if (run(watch) instanceof Some<ApplicationError>(ApplicationError value)) System.err.println(value.display());
 	}
 
-	private static Option<ApplicationError> run() {
+	private static Option<ApplicationError> run(boolean watch) {
 		final Path javaSourceRoot = Paths.get(".", "src", "main", "java");
 		final Path cOutputRoot = Paths.get(".", "src", "main", "windows");
 
@@ -34,71 +51,232 @@ public class Main {
 			return Option.of(new ApplicationError(new ThrowableError(e)));
 		}
 
-		return compileAllJavaFiles(javaSourceRoot, cOutputRoot);
+		final BuildOptions options = BuildOptions.fromProperties();
+		final BuildCache cache = options.cache(MANIFEST);
+		if (watch) return new Daemon(javaSourceRoot, cOutputRoot, options, cache).run();
+		return compileAllJavaFiles(javaSourceRoot, cOutputRoot, options, cache);
 	}
 
-	private static Option<ApplicationError> compileAllJavaFiles(Path javaSourceRoot, Path cOutputRoot) {
+	static Option<ApplicationError> compileAllJavaFiles(Path javaSourceRoot,
+																											Path cOutputRoot,
+																											BuildOptions options,
+																											BuildCache cache) {
 		try (Stream<Path> paths = Files.walk(javaSourceRoot)) {
 			List<Path> javaFiles = new ArrayList<Path>(paths.filter(Files::isRegularFile)
 																											.filter(path -> path.toString().endsWith(".java"))
+																											.sorted()
 																											.toList());
 
 			System.out.println("Found " + javaFiles.size() + " Java files to compile");
-			return compileAll(javaSourceRoot, cOutputRoot, javaFiles);
+			return compileAll(javaSourceRoot, cOutputRoot, javaFiles, options, cache);
 		} catch (IOException e) {
 			return Option.of(new ApplicationError(new ThrowableError(e)));
 		}
 	}
 
-	private static Option<ApplicationError> compileAll(Path javaSourceRoot, Path cOutputRoot, List<Path> javaFiles) {
+	// Files are compiled concurrently, but reported one by one in input order.
+	static Option<ApplicationError> compileAll(Path javaSourceRoot,
+																						 Path cOutputRoot,
+																						 List<Path> javaFiles,
+																						 BuildOptions options,
+																						 BuildCache cache) {
+		System.out.println("Compiling on " + options.describe());
+
+		final long start = System.nanoTime();
+		final long reusedBefore = cache.reused();
+		final ExecutorService executor = options.executor();
+		final List<Task> tasks = javaFiles.stream()
+																			.map(javaFile -> submit(executor, javaFile, javaSourceRoot, cOutputRoot, cache))
+																			.collect(new ListCollector<Task>());
+
+		final Option<ApplicationError> result = reportAll(tasks, options.stopAtFirstError());
+		// Interrupting a worker inside Files.writeString would leave its output truncated, so only the files that have
+		// not started are cancelled, and the manifest is saved once the others are written.
+		tasks.stream().forEach(task -> task.result().cancel(false));
+		executor.close();
+		if (cache.save(MANIFEST) instanceof Some<IOException>(IOException e))
+			System.err.println("Failed to save the build manifest: " + e.getMessage());
+
+		System.out.println("Finished in " + Duration.ofNanos(System.nanoTime() - start).toMillis() + " ms, " +
+											 (cache.reused() - reusedBefore) + " unchanged file(s) skipped");
+		if (LexMemo.report() instanceof Some<String>(String memo)) System.out.println(memo);
+		if (OrRule.orderReport() instanceof Some<String>(String order)) System.out.println(order);
+		if (RuleProfiler.enabled()) reportProfile();
+		if (PhaseMetrics.enabled()) reportPhases();
+		return result;
+	}
+
+	private static void reportProfile() {
+		System.out.println(RuleProfiler.summary());
+		if (RuleProfiler.write(PROFILE_TABLE, PROFILE_STACKS) instanceof Some<IOException>(IOException e))
+			System.err.println("Failed to write the rule profile: " + e.getMessage());
+		else System.out.println("Rule profile written to " + PROFILE_TABLE + " and " + PROFILE_STACKS);
+	}
+
+	private static void reportPhases() {
+		final java.util.List<String> lines = PhaseMetrics.report();
+		System.out.println(String.join(System.lineSeparator(), lines));
+		if (PhaseMetrics.write(PHASE_METRICS, lines) instanceof Some<IOException>(IOException e))
+			System.err.println("Failed to write the phase metrics: " + e.getMessage());
+		else System.out.println("Phase metrics written to " + PHASE_METRICS);
+	}
+
+	private static Task submit(ExecutorService executor,
+														 Path javaFile,
+														 Path javaSourceRoot,
+														 Path cOutputRoot,
+														 BuildCache cache) {
+		return new Task(javaFile, executor.submit(() -> compileJavaFile(javaFile, javaSourceRoot, cOutputRoot, cache)));
+	}
+
+	private static Option<ApplicationError> reportAll(List<Task> tasks, boolean stopAtFirstError) {
+		final List<Path> failed = new ArrayList<Path>();
 		int i = 0;
-		while (i < javaFiles.size()) {
-			Path javaFile = javaFiles.get(i).orElse(null);
-			System.out.println("Compiling: " + javaFile);
-			Option<ApplicationError> result = compileJavaFile(javaFile, javaSourceRoot, cOutputRoot);
-			if (result instanceof Some<ApplicationError>(ApplicationError error)) {
-				System.err.println("Failed to compile " + javaFile + ": " + error.display());
-				return result;
+		while (i < tasks.size()) {
+			if (tasks.get(i) instanceof Some<Task>(Task task) &&
+					task.report() instanceof Some<ApplicationError>(ApplicationError error)) {
+				if (stopAtFirstError) return Option.of(error);
+				failed.addLast(task.javaFile());
 			}
-			System.out.println("Successfully compiled: " + javaFile);
 			i++;
 		}
 
-		return Option.empty();
+		if (failed.isEmpty()) return Option.empty();
+		return Option.of(new ApplicationError(new FailedFiles(failed)));
 	}
 
-	private static Option<ApplicationError> compileJavaFile(Path javaFile, Path javaSourceRoot, Path cOutputRoot) {
+	// How a file that did not fail finished: compiled, or skipped because the build cache had it up to date.
+	private sealed interface Outcome permits Compiled, Unchanged {
+		String status();
+	}
+
+	private record Compiled() implements Outcome {
+		@Override
+		public String status() {
+			return "Successfully compiled";
+		}
+	}
+
+	private record Unchanged() implements Outcome {
+		@Override
+		public String status() {
+			return "Unchanged";
+		}
+	}
+
+	// Prints one line for the file once it is finished.
+	private record Task(Path javaFile, Future<Result<Outcome, ApplicationError>> result) {
+		private Option<ApplicationError> report() {
+			final Result<Outcome, ApplicationError> outcome = await();
+			if (outcome instanceof Err<Outcome, ApplicationError>(ApplicationError error)) {
+				System.err.println("Failed to compile " + javaFile + ": " + error.display());
+				return Option.of(error);
+			}
+			if (outcome instanceof Ok<Outcome, ApplicationError>(Outcome value))
+				System.out.println(value.status() + ": " + javaFile);
+			return Option.empty();
+		}
+
+		private Result<Outcome, ApplicationError> await() {
+			try {
+				return result.get();
+			} catch (InterruptedException e) {
+				return new Err<Outcome, ApplicationError>(new ApplicationError(new ThrowableError(e)));
+			} catch (ExecutionException e) {
+				return new Err<Outcome, ApplicationError>(new ApplicationError(new ThrowableError(e.getCause())));
+			}
+		}
+	}
+
+	private static Result<Outcome, ApplicationError> compileJavaFile(Path javaFile,
+																																	 Path javaSourceRoot,
+																																	 Path cOutputRoot,
+																																	 BuildCache cache) {
 		// Calculate relative path from source root
 		Path relativePath = javaSourceRoot.relativize(javaFile);
 
-		// Change extension from .java to .c
-		String fileName = relativePath.getFileName().toString();
-		String cFileName = fileName.substring(0, fileName.lastIndexOf('.')) + ".cpp";
-		Path cFilePath = cOutputRoot.resolve(relativePath.getParent()).resolve(cFileName);
+		Path cFilePath = outputPath(cOutputRoot, relativePath);
 
 		// Ensure output directory exists
 		try {
 			Files.createDirectories(cFilePath.getParent());
 		} catch (IOException e) {
-			return Option.of(new ApplicationError(new ThrowableError(e)));
+			return new Err<Outcome, ApplicationError>(new ApplicationError(new ThrowableError(e)));
 		}
 
-		Result<String, ThrowableError> readResult = readString(javaFile);
-		if (readResult instanceof Err<String, ThrowableError>(ThrowableError error))
-			return Option.of(new ApplicationError(error));
+		return readString(javaFile).mapErr(ApplicationError::new)
+															 .flatMap(input -> compileSource(javaFile, relativePath, cFilePath, input, cache));
+	}
+
+	private static Result<Outcome, ApplicationError> compileSource(Path javaFile,
+																																 Path relativePath,
+																																 Path cFilePath,
+																																 String input,
+																																 BuildCache cache) {
+		final String key = relativePath.toString();
+		if (cache.isUpToDate(key, input, cFilePath)) return new Ok<Outcome, ApplicationError>(new Unchanged());
+
+		return compile(input, relativePath).mapErr(ApplicationError::new).flatMap(compiled -> {
+			final String output = formatMessage(javaFile) + compiled;
+			if (writeString(cFilePath, output) instanceof Some<IOException>(IOException e))
+				return new Err<Outcome, ApplicationError>(new ApplicationError(new ThrowableError(e)));
+
+			cache.record(key, input, output);
+			return new Ok<Outcome, ApplicationError>(new Compiled());
+		});
+	}
+
+	// Change extension from .java to .cpp
+	private static Path outputPath(Path cOutputRoot, Path relativePath) {
+		String fileName = relativePath.getFileName().toString();
+		String cFileName = fileName.substring(0, fileName.lastIndexOf('.')) + ".cpp";
+		return cOutputRoot.resolve(relativePath.getParent()).resolve(cFileName);
+	}
 
-		if (!(readResult instanceof Ok<String, ThrowableError>(String input))) return Option.empty();
+	/**
+	 * Removes the generated file and the manifest entry of every source at or under one of the {@code deleted} paths
+	 * that no longer exists. A deleted directory takes the sources that the manifest lists under it with it.
+	 */
+	static void removeDeleted(Path javaSourceRoot, Path cOutputRoot, java.util.Set<Path> deleted, BuildCache cache) {
+		final java.util.Set<String> keys = new java.util.TreeSet<String>();
+		deleted.forEach(path -> keys.addAll(deletedKeys(javaSourceRoot, path, cache)));
+		keys.forEach(key -> removeOutput(cOutputRoot, key, cache));
+		if (cache.save(MANIFEST) instanceof Some<IOException>(IOException e))
+			System.err.println("Failed to save the build manifest: " + e.getMessage());
+	}
 
-		Result<String, CompileError> compileResult = Compiler.compile(input);
-		if (compileResult instanceof Err<String, CompileError>(CompileError error))
-			return Option.of(new ApplicationError(error));
+	private static java.util.List<String> deletedKeys(Path javaSourceRoot, Path deleted, BuildCache cache) {
+		final Stream<String> file = Stream.of(javaSourceRoot.relativize(deleted).toString())
+																			.filter(key -> key.endsWith(".java"));
+		final Stream<String> cached = cache.keys().stream().filter(key -> javaSourceRoot.resolve(key).startsWith(deleted));
+		return Stream.concat(file, cached).filter(key -> !Files.exists(javaSourceRoot.resolve(key))).toList();
+	}
 
-		if (compileResult instanceof Ok<String, CompileError>(String compiled)) {
-			final String message = formatMessage(javaFile);
-			return writeString(cFilePath, message + compiled).map(ThrowableError::new).map(ApplicationError::new);
+	private static void removeOutput(Path cOutputRoot, String key, BuildCache cache) {
+		final Path output = outputPath(cOutputRoot, Paths.get(key));
+		try {
+			Files.deleteIfExists(output);
+			cache.forget(key);
+			System.out.println("Removed: " + output);
+		} catch (IOException e) {
+			System.err.println("Failed to remove " + output + ": " + e.getMessage());
 		}
+	}
+
+	private static Result<String, CompileError> compile(String input, Path relativePath) {
+		return PhaseMetrics.within(relativePath.toString(), input, () -> scan(input, relativePath));
+	}
+
+	private static Result<String, CompileError> scan(String input, Path relativePath) {
+		if (!ScanHeatmap.enabled()) return Compiler.compile(input);
 
-		return Option.empty();
+		final Tuple<Result<String, CompileError>, ScanHeatmap> scanned =
+				ScanHeatmap.within(input, () -> Compiler.compile(input));
+		final Path text = HEATMAPS.resolve(relativePath + ".txt");
+		final Path html = HEATMAPS.resolve(relativePath + ".html");
+		if (scanned.right().write(text, html, relativePath.toString()) instanceof Some<IOException>(IOException e))
+			System.err.println("Failed to write the scan heatmap of " + relativePath + ": " + e.getMessage());
+		return scanned.left();
 	}
 
 	private static String formatMessage(Path javaFile) {
@@ -108,8 +286,10 @@ public class Main {
 					 System.lineSeparator();
 	}
 
+	// Leaves the file untouched when its content would not change.
 	private static Option<IOException> writeString(Path path, String result) {
 		try {
+			if (Files.exists(path) && Files.readString(path).equals(result)) return Option.empty();
 			Files.writeString(path, result);
 			return Option.empty();
 		} catch (IOException e) {
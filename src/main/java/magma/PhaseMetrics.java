@@ -0,0 +1,217 @@
+package magma;
+
+import magma.compile.error.CompileError;
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
+import magma.result.Ok;
+import magma.result.Result;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Times each phase of {@link Compiler#compile(String)}: lexing, deserializing the Java tree, transforming it, and
+ * either emitting C or serializing the C tree and generating its text. Every phase of a file bound by
+ * {@link #within(String, String, Supplier)} is committed as a {@link CompilePhaseEvent} when a flight recording
+ * enables that event, with the file, its size in bytes and the nodes of the tree the phase built or read.
+ * <p>
+ * With {@code -Dmagma.metrics=true}, the phases are also kept until {@link #report()}, which summarizes them per
+ * phase (files, total, p50, p95 and maximum) and lists the slowest files. Times are summed over the worker threads,
+ * so the totals may exceed the wall time of a build.
+ */
+public final class PhaseMetrics {
+	public static final String LEX = "lex";
+	public static final String DESERIALIZE = "deserialize";
+	public static final String TRANSFORM = "transform";
+	public static final String SERIALIZE = "serialize";
+	public static final String GENERATE = "generate";
+	public static final String EMIT = "emit";
+	private static final List<String> PHASES = List.of(LEX, DESERIALIZE, TRANSFORM, SERIALIZE, GENERATE, EMIT);
+	private static final String ALL = "all phases";
+	private static final boolean ENABLED = Boolean.getBoolean("magma.metrics");
+	private static final int REPORTED_FILES = 10;
+	private static final long NANOS_PER_MILLI = 1000000L;
+	private static final long NANOS_PER_MICRO = 1000L;
+	private static final ThreadLocal<Option<Unit>> CURRENT = ThreadLocal.withInitial(None::new);
+	private static final Queue<Sample> SAMPLES = new ConcurrentLinkedQueue<Sample>();
+
+	private record Unit(String file, String input) {
+		private long bytes() {
+			return input.getBytes(StandardCharsets.UTF_8).length;
+		}
+	}
+
+	private record Sample(String file, String phase, long nanos, long inputBytes, int nodes) {}
+
+	private record FileTotal(String file, long nanos, long inputBytes, Sample slowest) {
+		private String row() {
+			return "%-64s %10s %10d  %s %s ms".formatted(file,
+																									 millis(nanos),
+																									 inputBytes,
+																									 slowest.phase(),
+																									 millis(slowest.nanos()));
+		}
+	}
+
+	private PhaseMetrics() {
+	}
+
+	public static boolean enabled() {
+		return ENABLED;
+	}
+
+	/**
+	 * Runs {@code action}, attributing the phases it measures to {@code file}, whose source is {@code input}.
+	 */
+	public static <T> T within(String file, String input, Supplier<T> action) {
+		final Option<Unit> previous = CURRENT.get();
+		CURRENT.set(new Some<Unit>(new Unit(file, input)));
+		final T result = action.get();
+		CURRENT.set(previous);
+		return result;
+	}
+
+	/**
+	 * Runs {@code action} as the phase {@code phase}. {@code nodes} is only called when the phase is recorded.
+	 */
+	public static <T> Result<T, CompileError> measure(String phase,
+																										Supplier<Result<T, CompileError>> action,
+																										ToIntFunction<T> nodes) {
+		final CompilePhaseEvent event = new CompilePhaseEvent();
+		event.begin();
+		final long start = System.nanoTime();
+		final Result<T, CompileError> result = action.get();
+		final long elapsed = System.nanoTime() - start;
+		event.end();
+		if (ENABLED || event.shouldCommit()) record(event, phase, elapsed, nodesOf(result, nodes));
+		return result;
+	}
+
+	/**
+	 * For a phase that works on records rather than on a tree of nodes.
+	 */
+	public static <T> int noNodes(T value) {
+		return 0;
+	}
+
+	private static <T> int nodesOf(Result<T, CompileError> result, ToIntFunction<T> nodes) {
+		if (result instanceof Ok<T, CompileError>(T value)) return nodes.applyAsInt(value);
+		return 0;
+	}
+
+	private static void record(CompilePhaseEvent event, String phase, long elapsed, int nodes) {
+		String file = "?";
+		long bytes = 0;
+		if (CURRENT.get() instanceof Some<Unit>(Unit unit)) {
+			file = unit.file();
+			bytes = unit.bytes();
+		}
+		event.file = file;
+		event.phase = phase;
+		event.inputBytes = bytes;
+		event.nodes = nodes;
+		event.commit();
+		if (ENABLED) SAMPLES.add(new Sample(file, phase, elapsed, bytes, nodes));
+	}
+
+	/**
+	 * The summary of the phases recorded since the last report, one line per row, and forgets them.
+	 */
+	public static List<String> report() {
+		final List<Sample> samples = drain();
+		if (samples.isEmpty()) return List.of("No file was compiled, so no phase was recorded");
+		final List<FileTotal> files = samples.stream()
+																				 .collect(Collectors.groupingBy(Sample::file))
+																				 .entrySet()
+																				 .stream()
+																				 .map(PhaseMetrics::total)
+																				 .sorted(Comparator.comparingLong(FileTotal::nanos).reversed())
+																				 .toList();
+		final Map<String, List<Sample>> phases = samples.stream().collect(Collectors.groupingBy(Sample::phase));
+		final List<String> lines = new ArrayList<String>();
+		lines.add("%-12s %8s %12s %10s %10s %10s %12s".formatted("phase",
+																																 "files",
+																																 "total ms",
+																																 "p50 ms",
+																																 "p95 ms",
+																																 "max ms",
+																																 "nodes"));
+		PHASES.stream().filter(phases::containsKey).map(phase -> phaseRow(phase, phases.get(phase))).forEach(lines::add);
+		lines.add(row(ALL, files.stream().map(FileTotal::nanos).toList(), 0));
+		lines.add("");
+		lines.add("%-64s %10s %10s  %s".formatted("slowest files", "total ms", "bytes", "slowest phase"));
+		files.stream().limit(REPORTED_FILES).map(FileTotal::row).forEach(lines::add);
+		return lines;
+	}
+
+	/**
+	 * Writes {@code lines}, as returned by {@link #report()}, to {@code path}.
+	 */
+	public static Option<IOException> write(Path path, List<String> lines) {
+		try {
+			Files.createDirectories(path.toAbsolutePath().getParent());
+			Files.write(path, lines);
+			return new None<IOException>();
+		} catch (IOException e) {
+			return Option.of(e);
+		}
+	}
+
+	private static List<Sample> drain() {
+		final List<Sample> samples = new ArrayList<Sample>();
+		Option<Sample> sample = Option.ofNullable(SAMPLES.poll());
+		while (sample instanceof Some<Sample>(Sample value)) {
+			samples.add(value);
+			sample = Option.ofNullable(SAMPLES.poll());
+		}
+		return samples;
+	}
+
+	private static FileTotal total(Map.Entry<String, List<Sample>> file) {
+		final List<Sample> samples = file.getValue();
+		final long nanos = samples.stream().mapToLong(Sample::nanos).sum();
+		final Sample slowest = Collections.max(samples, Comparator.comparingLong(Sample::nanos));
+		return new FileTotal(file.getKey(), nanos, slowest.inputBytes(), slowest);
+	}
+
+	private static String phaseRow(String phase, List<Sample> samples) {
+		final long nodes = samples.stream().mapToLong(Sample::nodes).sum();
+		return row(phase, samples.stream().map(Sample::nanos).toList(), nodes);
+	}
+
+	private static String row(String name, List<Long> times, long nodes) {
+		final List<Long> sorted = times.stream().sorted().toList();
+		final long total = sorted.stream().mapToLong(Long::longValue).sum();
+		return "%-12s %8d %12s %10s %10s %10s %12d".formatted(name,
+																													sorted.size(),
+																													millis(total),
+																													millis(percentile(sorted, 50)),
+																													millis(percentile(sorted, 95)),
+																													millis(percentile(sorted, 100)),
+																													nodes);
+	}
+
+	// The nearest-rank percentile of a sorted, non-empty list.
+	private static long percentile(List<Long> sorted, int percent) {
+		final int rank = Math.ceilDiv(Math.multiplyExact(sorted.size(), percent), 100);
+		return sorted.get(Math.max(0, rank - 1));
+	}
+
+	private static String millis(long nanos) {
+		return "%d.%03d".formatted(Math.floorDiv(nanos, NANOS_PER_MILLI),
+															 Math.floorDiv(Math.floorMod(nanos, NANOS_PER_MILLI), NANOS_PER_MICRO));
+	}
+}
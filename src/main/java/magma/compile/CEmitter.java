@@ -0,0 +1,266 @@
+package magma.compile;
+
+import magma.compile.context.InputContext;
+import magma.compile.error.CompileError;
+import magma.compile.rule.PlaceholderRule;
+import magma.compile.rule.Slice;
+import magma.list.List;
+import magma.list.NonEmptyList;
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
+import magma.result.Err;
+import magma.result.Ok;
+import magma.result.Result;
+
+import java.util.function.BiFunction;
+
+/**
+ * Writes a {@link Lang.CRoot} as C++ text in one pass over the records, without serializing them to {@link Node}s and
+ * generating through {@link CRules#CRoot()}. The output is the same, byte for byte, as what the rules generate when
+ * {@code OrRule} picks the first alternative that matches (the default). Every method below mirrors the rule it
+ * replaces, including the parts the rules drop: the rules write no function parameters, no call arguments, no string
+ * contents, no struct fields and no function template declarations.
+ * <p>
+ * A record that the rules cannot generate, such as a {@code CNodes.Cast}, is an error here as well.
+ */
+public final class CEmitter {
+	private static final String NEW_LINE = System.lineSeparator();
+
+	public static Result<String, CompileError> emit(Lang.CRoot root) {
+		return switch (NonEmptyList.fromList(root.children())) {
+			case None<NonEmptyList<Lang.CRootSegment>> _ -> error("Node list 'children' not present", "root");
+			case Some<NonEmptyList<Lang.CRootSegment>>(NonEmptyList<Lang.CRootSegment> children) ->
+					joined(children, "", new StringBuilder(), CEmitter::rootSegment).mapValue(StringBuilder::toString);
+		};
+	}
+
+	private static Result<StringBuilder, CompileError> rootSegment(Lang.CRootSegment segment, StringBuilder out) {
+		final Result<StringBuilder, CompileError> result = switch (segment) {
+			case Lang.CFunction function -> function(function, out);
+			case Lang.CStructure structure -> structure(structure, out);
+			case Lang.Invalid _ -> error("No root segment rule generates an invalid node", "invalid");
+		};
+		return result.mapValue(buffer -> buffer.append(text(segment.after())));
+	}
+
+	private static Result<StringBuilder, CompileError> function(Lang.CFunction function, StringBuilder out) {
+		return definition(function.definition(), out).flatMap(buffer -> joined(function.body(),
+																																						 "",
+																																						 buffer.append("() {"),
+																																						 CEmitter::segment))
+																									.mapValue(buffer -> buffer.append(NEW_LINE).append("}"));
+	}
+
+	private static Result<StringBuilder, CompileError> structure(Lang.CStructure structure, StringBuilder out) {
+		return template(structure.typeParameters(), out).mapValue(buffer -> buffer.append("struct ")
+																																			.append(structure.name().value())
+																																			.append(" {};"));
+	}
+
+	private static Result<StringBuilder, CompileError> template(Option<NonEmptyList<Lang.Identifier>> typeParameters,
+																															StringBuilder out) {
+		return switch (typeParameters) {
+			case None<NonEmptyList<Lang.Identifier>> _ -> new Ok<StringBuilder, CompileError>(out);
+			case Some<NonEmptyList<Lang.Identifier>>(NonEmptyList<Lang.Identifier> parameters) ->
+					joined(parameters, ", ", out.append("template<"), CEmitter::typeParameter).mapValue(buffer -> buffer.append(">")
+																																																							.append(NEW_LINE));
+		};
+	}
+
+	private static Result<StringBuilder, CompileError> typeParameter(Lang.Identifier identifier, StringBuilder out) {
+		return new Ok<StringBuilder, CompileError>(out.append("typename ").append(identifier.value().value()));
+	}
+
+	private static Result<StringBuilder, CompileError> definition(Lang.CDefinition definition, StringBuilder out) {
+		return type(definition.type(), out).mapValue(buffer -> buffer.append(" ").append(definition.name().value()));
+	}
+
+	private static Result<StringBuilder, CompileError> type(CNodes.CType type, StringBuilder out) {
+		return switch (type) {
+			case Lang.Invalid invalid -> invalid(invalid, out);
+			case Lang.CTemplate template -> joined(template.typeArguments(),
+																						 ", ",
+																						 out.append(template.base().value()).append("<"),
+																						 CEmitter::type).mapValue(buffer -> buffer.append(">"));
+			case Lang.Pointer pointer -> type(pointer.child(), out).mapValue(buffer -> buffer.append("*"));
+			case Lang.Identifier identifier -> new Ok<StringBuilder, CompileError>(out.append(identifier.value().value()));
+			case CNodes.CFunctionPointer pointer -> functionPointer(pointer, out);
+		};
+	}
+
+	private static Result<StringBuilder, CompileError> functionPointer(CNodes.CFunctionPointer pointer, StringBuilder out) {
+		return switch (NonEmptyList.fromList(pointer.paramTypes())) {
+			case None<NonEmptyList<CNodes.CType>> _ -> error("Node list 'paramTypes' not present", "functionPointer");
+			case Some<NonEmptyList<CNodes.CType>>(NonEmptyList<CNodes.CType> paramTypes) ->
+					type(pointer.returnType(), out).flatMap(buffer -> joined(paramTypes,
+																																	 ", ",
+																																	 buffer.append(" (*)("),
+																																	 CEmitter::type))
+																				 .mapValue(buffer -> buffer.append(")"));
+		};
+	}
+
+	// An invalid segment and whitespace are written as they are, every other segment on a new, indented line.
+	private static Result<StringBuilder, CompileError> segment(Lang.CFunctionSegment segment, StringBuilder out) {
+		return switch (segment) {
+			case Lang.Invalid invalid -> invalid(invalid, out);
+			case Lang.Whitespace _ -> new Ok<StringBuilder, CompileError>(out);
+			case Lang.CBlock block -> block(block, indent(out));
+			case Lang.CIf anIf -> conditional("if", anIf.condition(), anIf.body(), indent(out));
+			case Lang.CWhile aWhile -> loop(aWhile, indent(out));
+			case Lang.CElse anElse -> segment(anElse.child(), indent(out).append("else"));
+			case Lang.Break _ -> new Ok<StringBuilder, CompileError>(indent(out).append("break"));
+			case Lang.LineComment comment ->
+					new Ok<StringBuilder, CompileError>(indent(out).append("//").append(comment.value().value()));
+			case Lang.Placeholder _ -> error("No function segment rule generates a placeholder", "placeholder");
+			case Lang.CPostFix postFix -> statementLine(postFix, out);
+			case Lang.CDefinition definition -> statementLine(definition, out);
+			case Lang.CInitialization initialization -> statementLine(initialization, out);
+			case Lang.CAssignment assignment -> statementLine(assignment, out);
+			case Lang.CInvocation invocation -> statementLine(invocation, out);
+			case Lang.CReturn aReturn -> statementLine(aReturn, out);
+		};
+	}
+
+	private static StringBuilder indent(StringBuilder out) {
+		return out.append(NEW_LINE).append("\t");
+	}
+
+	private static Result<StringBuilder, CompileError> statementLine(Lang.CFunctionSegment segment, StringBuilder out) {
+		return statement(segment, indent(out)).mapValue(buffer -> buffer.append(";"));
+	}
+
+	private static Result<StringBuilder, CompileError> loop(Lang.CWhile aWhile, StringBuilder out) {
+		return condition("while", aWhile.condition(), out).flatMap(buffer -> segment(aWhile.body(), buffer));
+	}
+
+	private static Result<StringBuilder, CompileError> block(Lang.CBlock block, StringBuilder out) {
+		return switch (block.children()) {
+			case None<NonEmptyList<Lang.CFunctionSegment>> _ -> error("Node list 'children' not present", "block");
+			case Some<NonEmptyList<Lang.CFunctionSegment>>(NonEmptyList<Lang.CFunctionSegment> children) ->
+					joined(children, "", out.append("{"), CEmitter::segment).mapValue(buffer -> buffer.append("}"));
+		};
+	}
+
+	// The rules first try the body as a bare statement, and only then as a segment on a new line.
+	private static Result<StringBuilder, CompileError> conditional(String keyword,
+																																 Lang.CExpression condition,
+																																 Lang.CFunctionSegment body,
+																																 StringBuilder out) {
+		if (isStatement(body))
+			return condition(keyword, condition, out).flatMap(buffer -> bareStatement(body, buffer));
+		return condition(keyword, condition, out).flatMap(buffer -> segment(body, buffer));
+	}
+
+	private static Result<StringBuilder, CompileError> condition(String keyword,
+																															 Lang.CExpression condition,
+																															 StringBuilder out) {
+		return expression(condition, out.append(keyword).append(" (")).mapValue(buffer -> buffer.append(")"));
+	}
+
+	private static boolean isStatement(Lang.CFunctionSegment segment) {
+		return switch (segment) {
+			case Lang.CPostFix _ -> true;
+			case Lang.CDefinition _ -> true;
+			case Lang.CInitialization _ -> true;
+			case Lang.CAssignment _ -> true;
+			case Lang.CInvocation _ -> true;
+			case Lang.CReturn _ -> true;
+			case Lang.CIf anIf -> isStatement(anIf.body());
+			case Lang.Break _ -> false;
+			case Lang.CBlock _ -> false;
+			case Lang.CElse _ -> false;
+			case Lang.CWhile _ -> false;
+			case Lang.Invalid _ -> false;
+			case Lang.LineComment _ -> false;
+			case Lang.Placeholder _ -> false;
+			case Lang.Whitespace _ -> false;
+		};
+	}
+
+	private static Result<StringBuilder, CompileError> bareStatement(Lang.CFunctionSegment segment, StringBuilder out) {
+		if (segment instanceof Lang.CIf anIf) return conditional("if", anIf.condition(), anIf.body(), out);
+		return statement(segment, out).mapValue(buffer -> buffer.append(";"));
+	}
+
+	private static Result<StringBuilder, CompileError> statement(Lang.CFunctionSegment segment, StringBuilder out) {
+		return switch (segment) {
+			case Lang.CPostFix postFix -> expression(postFix.value(), out).mapValue(buffer -> buffer.append("++"));
+			case Lang.CDefinition definition -> definition(definition, out);
+			case Lang.CInitialization initialization -> definition(initialization.definition(), out).flatMap(buffer -> expression(
+					initialization.value(),
+					buffer.append("=")));
+			case Lang.CAssignment assignment -> expression(assignment.location(), out).flatMap(buffer -> expression(
+					assignment.value(),
+					buffer.append("=")));
+			case Lang.CInvocation invocation -> invocation(invocation, out);
+			case Lang.CReturn aReturn -> expression(aReturn.value(), out.append("return "));
+			case Lang.Break _ -> notStatement(segment);
+			case Lang.CBlock _ -> notStatement(segment);
+			case Lang.CElse _ -> notStatement(segment);
+			case Lang.CIf _ -> notStatement(segment);
+			case Lang.CWhile _ -> notStatement(segment);
+			case Lang.Invalid _ -> notStatement(segment);
+			case Lang.LineComment _ -> notStatement(segment);
+			case Lang.Placeholder _ -> notStatement(segment);
+			case Lang.Whitespace _ -> notStatement(segment);
+		};
+	}
+
+	private static Result<StringBuilder, CompileError> notStatement(Lang.CFunctionSegment segment) {
+		return error("No statement rule generates '" + segment.getClass().getSimpleName() + "'", "statement");
+	}
+
+	private static Result<StringBuilder, CompileError> expression(Lang.CExpression expression, StringBuilder out) {
+		return switch (expression) {
+			case Lang.Invalid invalid -> invalid(invalid, out);
+			case Lang.CharNode charNode -> new Ok<StringBuilder, CompileError>(out.append("'")
+																																							.append(charNode.value().value())
+																																							.append("'"));
+			case Lang.Identifier identifier -> new Ok<StringBuilder, CompileError>(out.append(identifier.value().value()));
+			case Lang.CString _ -> new Ok<StringBuilder, CompileError>(out.append("\"\""));
+			case Lang.CEquals equals -> operator(equals.left(), "==", equals.right(), out);
+			case Lang.CAnd and -> operator(and.left(), "&&", and.right(), out);
+			case Lang.CAdd add -> operator(add.left(), "+", add.right(), out);
+			case Lang.CFieldAccess access -> expression(access.child(), out).mapValue(buffer -> buffer.append(".")
+																																																	.append(access.name()
+																																																								.value()));
+			case Lang.CInvocation invocation -> invocation(invocation, out);
+			case CNodes.Cast _ -> error("No expression rule generates a cast", "cast");
+		};
+	}
+
+	private static Result<StringBuilder, CompileError> operator(Lang.CExpression left,
+																															String operator,
+																															Lang.CExpression right,
+																															StringBuilder out) {
+		return expression(left, out).flatMap(buffer -> expression(right, buffer.append(operator)));
+	}
+
+	private static Result<StringBuilder, CompileError> invocation(Lang.CInvocation invocation, StringBuilder out) {
+		return expression(invocation.caller(), out).mapValue(buffer -> buffer.append("()"));
+	}
+
+	private static Result<StringBuilder, CompileError> invalid(Lang.Invalid invalid, StringBuilder out) {
+		return new Ok<StringBuilder, CompileError>(out.append(PlaceholderRule.wrap(invalid.value().value())));
+	}
+
+	private static <T> Result<StringBuilder, CompileError> joined(NonEmptyList<T> items,
+																																String delimiter,
+																																StringBuilder out,
+																																BiFunction<T, StringBuilder, Result<StringBuilder, CompileError>> emitter) {
+		return items.rest()
+								.stream()
+								.fold(emitter.apply(items.first(), out),
+											(result, item) -> result.flatMap(buffer -> emitter.apply(item, buffer.append(delimiter))));
+	}
+
+	private static String text(Option<Slice> slice) {
+		return slice.map(Slice::value).orElse("");
+	}
+
+	private static <T> Result<T, CompileError> error(String reason, String type) {
+		return new Err<T, CompileError>(new CompileError(reason, new InputContext(new Slice(type))));
+	}
+}
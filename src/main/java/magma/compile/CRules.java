@@ -14,15 +14,23 @@ import static magma.compile.rule.SuffixRule.Suffix;
 import static magma.compile.rule.TagRule.Tag;
 
 public class CRules {
+	private static final Rule EXPRESSION = BuildExpression();
+	private static final Rule FUNCTION_SEGMENT = BuildFunctionSegment();
+	private static final Rule ROOT = BuildRoot();
+
 	public static Rule CRoot() {
-		return Statements("children", Strip("", Or(Lang.CStructure(), CFunction()), "after"));
+		return ROOT;
+	}
+
+	private static Rule BuildRoot() {
+		return Statements("children", Strip("", Or(CFunction(), Lang.CStructure()), "after"));
 	}
 
 	public static Rule CFunction() {
 		final NodeRule definition = new NodeRule("definition", Lang.CDefinition());
-		final Rule params = Expressions("params", Or(Lang.CFunctionPointerDefinition(), Lang.CDefinition()));
+		final Rule params = Expressions("params", Or(Lang.CDefinition(), Lang.CFunctionPointerDefinition()));
 		final Rule body = Statements("body", CFunctionSegment());
-		final Rule first = First(definition, "(", Or(params, Empty));
+		final Rule first = First(definition, "(", Or(Empty, params));
 		final Rule suffix = Suffix(first, ")");
 		final Rule suffix1 = Suffix(body, System.lineSeparator() + "}");
 		final Rule functionDecl = First(suffix, " {", suffix1);
@@ -31,54 +39,62 @@ public class CRules {
 		final Rule templateParams = Expressions("typeParameters", Prefix("typename ", CommonRules.Identifier()));
 		final Rule templateDecl = NonEmptyList("typeParameters",
 				Prefix("template<", Suffix(templateParams, ">" + System.lineSeparator())));
-		final Rule maybeTemplate = Or(templateDecl, Empty);
+		final Rule maybeTemplate = Or(Empty, templateDecl);
 
 		return Tag("function", First(maybeTemplate, "", functionDecl));
 	}
 
 	private static Rule CExpression() {
+		return EXPRESSION;
+	}
+
+	private static Rule BuildExpression() {
 		LazyRule expression = new LazyRule();
-		expression.set(Or(Lang.Invocation(expression),
-				Lang.FieldAccess(expression),
-				Lang.Operator("add", "+", expression),
-				Lang.Operator("and", "&&", expression),
-				Lang.Operator("equals", "==", expression),
-				Lang.StringExpr(),
-				CommonRules.Identifier(),
+		expression.set(Or(Lang.Invalid(),
 				Lang.Char(),
-				Lang.Invalid()));
+				CommonRules.Identifier(),
+				Lang.StringExpr(),
+				Lang.Operator("equals", "==", expression),
+				Lang.Operator("and", "&&", expression),
+				Lang.Operator("add", "+", expression),
+				Lang.FieldAccess(expression),
+				Lang.Invocation(expression)));
 		return expression;
 	}
 
 	public static Rule CFunctionSegment() {
+		return FUNCTION_SEGMENT;
+	}
+
+	private static Rule BuildFunctionSegment() {
 		final LazyRule rule = new LazyRule();
-		rule.set(Or(Lang.Whitespace(), Prefix(System.lineSeparator() + "\t", CFunctionSegmentValue(rule)), Lang.Invalid()));
+		rule.set(Or(Lang.Invalid(), Prefix(System.lineSeparator() + "\t", CFunctionSegmentValue(rule)), Lang.Whitespace()));
 		return rule;
 	}
 
 	private static Rule CFunctionSegmentValue(LazyRule rule) {
-		return Or(Lang.LineComment(),
-				Lang.Conditional("if", CExpression(), rule),
-				Lang.Conditional("while", CExpression(), rule),
-				Lang.Break(),
-				Lang.Else(rule),
+		return Or(Lang.Block(rule),
 				CFunctionStatement(),
-				Lang.Block(rule));
+				Lang.Else(rule),
+				Lang.Break(),
+				Lang.Conditional("while", CExpression(), rule),
+				Lang.Conditional("if", CExpression(), rule),
+				Lang.LineComment());
 	}
 
 	private static Rule CFunctionStatement() {
 		LazyRule functionStatement = new LazyRule();
-		functionStatement.set(Or(Lang.Conditional("if", CExpression(), functionStatement),
-				Suffix(CFunctionStatementValue(), ";")));
+		functionStatement.set(Or(Suffix(CFunctionStatementValue(), ";"),
+				Lang.Conditional("if", CExpression(), functionStatement)));
 		return functionStatement;
 	}
 
 	private static Rule CFunctionStatementValue() {
 		final Rule expression = CExpression();
-		return Or(Lang.Return(expression),
-				Lang.Invocation(expression),
-				Lang.Initialization(Lang.CDefinition(), expression),
+		return Or(Lang.PostFix(expression),
 				Lang.CDefinition(),
-				Lang.PostFix(expression));
+				Lang.Initialization(Lang.CDefinition(), expression),
+				Lang.Invocation(expression),
+				Lang.Return(expression));
 	}
 }
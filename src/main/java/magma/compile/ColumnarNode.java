@@ -0,0 +1,52 @@
+package magma.compile;
+
+import magma.compile.rule.Slice;
+import magma.list.NonEmptyList;
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
+
+/**
+ * A row of a {@link ColumnarTree} that is a node, queried like a {@link Node}. It holds only the tree and the row, so
+ * walking a tree allocates nothing but these views.
+ */
+public record ColumnarNode(ColumnarTree tree, int row) {
+	public Option<String> maybeType() {
+		return tree.type(row);
+	}
+
+	public boolean is(String type) {
+		return tree.is(row, type);
+	}
+
+	public Option<Slice> findSlice(String key) {
+		return tree.findSlice(row, key);
+	}
+
+	public Option<ColumnarNode> findNode(String key) {
+		final int child = tree.findChild(row, key, Node.NODE);
+		if (child == ColumnarTree.ABSENT) return new None<ColumnarNode>();
+		return new Some<ColumnarNode>(new ColumnarNode(tree, child));
+	}
+
+	public Option<NonEmptyList<ColumnarNode>> findNodeList(String key) {
+		return tree.findNodeList(row, key);
+	}
+
+	public boolean hasNodeList(String key) {
+		return tree.findChild(row, key, Node.LIST) != ColumnarTree.ABSENT;
+	}
+
+	public Option<ColumnarNode> parent() {
+		final int parent = tree.parent(row);
+		if (parent == ColumnarTree.ABSENT) return new None<ColumnarNode>();
+		return new Some<ColumnarNode>(new ColumnarNode(tree, parent));
+	}
+
+	/**
+	 * This node and its subtree as a {@link Node}, for the serializer.
+	 */
+	public Node toNode() {
+		return tree.toNode(row);
+	}
+}
@@ -0,0 +1,322 @@
+package magma.compile;
+
+import magma.compile.rule.Slice;
+import magma.list.NonEmptyList;
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * A lexed tree stored column-wise, for analyses that keep the trees of many files alive at once. Every node, and every
+ * slice field of a node, is a row, numbered in preorder from the root at row 0. Each column holds one primitive per
+ * row:
+ * <ul>
+ * <li>{@code kinds}: how the row hangs off its parent, as a slice field, a node field or an element of a node list;</li>
+ * <li>{@code fields}: the {@link FieldNames} ID of the field the row is stored under;</li>
+ * <li>{@code types}: the {@link FieldNames} ID of the node's type, or {@link #ABSENT};</li>
+ * <li>{@code parents}, {@code firstChildren} and {@code nextSiblings}: the shape of the tree;</li>
+ * <li>{@code starts} and {@code ends}: the span of a slice, relative to the source the tree was built from.</li>
+ * </ul>
+ * The elements of a node list are consecutive siblings with the same field. A slice that does not view the source,
+ * which lexing never produces, is kept aside and its row holds its index in {@code starts}.
+ * <p>
+ * The columns are {@code int[]}s on the heap, or, for {@link #offHeap}, segments of a confined {@link Arena} that the
+ * tree owns and frees when it is closed, so that the trees of a compilation unit cost the garbage collector nothing.
+ * {@link ColumnarNode} exposes a row through the same queries as {@link Node}.
+ */
+public final class ColumnarTree implements AutoCloseable {
+	public static final int ABSENT = -1;
+	private static final int SLICE = Node.SLICE;
+	private static final int NODE = Node.NODE;
+	private static final int ELEMENT = Node.LIST;
+	private static final int FOREIGN = 3;
+	private final Slice source;
+	private final java.util.List<Slice> foreign;
+	private final Option<Arena> arena;
+	private final int size;
+	private final Column kinds;
+	private final Column fields;
+	private final Column types;
+	private final Column parents;
+	private final Column firstChildren;
+	private final Column nextSiblings;
+	private final Column starts;
+	private final Column ends;
+
+	private sealed interface Column permits HeapColumn, SegmentColumn {
+		int get(int row);
+	}
+
+	private record HeapColumn(int[] values) implements Column {
+		@Override
+		public int get(int row) {
+			return values[row];
+		}
+	}
+
+	private record SegmentColumn(MemorySegment segment) implements Column {
+		@Override
+		public int get(int row) {
+			return segment.getAtIndex(ValueLayout.JAVA_INT, row);
+		}
+	}
+
+	// Appends rows to growable arrays, then hands them over as columns.
+	private static final class Builder {
+		private final Slice source;
+		private final java.util.List<Slice> foreign = new java.util.ArrayList<Slice>();
+		private int size = 0;
+		private int[] kinds = new int[64];
+		private int[] fields = new int[64];
+		private int[] types = new int[64];
+		private int[] parents = new int[64];
+		private int[] firstChildren = new int[64];
+		private int[] nextSiblings = new int[64];
+		private int[] starts = new int[64];
+		private int[] ends = new int[64];
+		// The last child of each row so far, to link the next one in constant time.
+		private int[] lastChildren = new int[64];
+
+		private Builder(Slice source) {
+			this.source = source;
+		}
+
+		private int add(int kind, int field, int type, int parent, int start, int end) {
+			if (size == kinds.length) grow();
+			kinds[size] = kind;
+			fields[size] = field;
+			types[size] = type;
+			parents[size] = parent;
+			firstChildren[size] = ABSENT;
+			nextSiblings[size] = ABSENT;
+			lastChildren[size] = ABSENT;
+			starts[size] = start;
+			ends[size] = end;
+			if (parent != ABSENT) link(parent, size);
+			size++;
+			return size - 1;
+		}
+
+		private void link(int parent, int row) {
+			final int last = lastChildren[parent];
+			if (last == ABSENT) firstChildren[parent] = row;
+			else nextSiblings[last] = row;
+			lastChildren[parent] = row;
+		}
+
+		private void grow() {
+			final int capacity = size + size;
+			kinds = Arrays.copyOf(kinds, capacity);
+			fields = Arrays.copyOf(fields, capacity);
+			types = Arrays.copyOf(types, capacity);
+			parents = Arrays.copyOf(parents, capacity);
+			firstChildren = Arrays.copyOf(firstChildren, capacity);
+			nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			lastChildren = Arrays.copyOf(lastChildren, capacity);
+		}
+
+		private void addNode(Node node, int row) {
+			node.forEachField((field, kind, value) -> addField(row, field, kind, value));
+		}
+
+		private void addField(int parent, int field, int kind, Object value) {
+			if (kind == Node.SLICE) addSlice(parent, field, (Slice) value);
+			else if (kind == Node.NODE) addChild(parent, field, NODE, (Node) value);
+			else addElements(parent, field, value);
+		}
+
+		@SuppressWarnings("unchecked")
+		private void addElements(int parent, int field, Object value) {
+			((NonEmptyList<Node>) value).stream().forEach(element -> addChild(parent, field, ELEMENT, element));
+		}
+
+		private void addChild(int parent, int field, int kind, Node node) {
+			addNode(node, add(kind, field, typeOf(node), parent, 0, 0));
+		}
+
+		private void addSlice(int parent, int field, Slice slice) {
+			if (slice.offsetIn(source) instanceof Some<Integer>(Integer start))
+				add(SLICE, field, ABSENT, parent, start, start + slice.length());
+			else {
+				add(FOREIGN, field, ABSENT, parent, foreign.size(), 0);
+				foreign.add(slice);
+			}
+		}
+
+		private static int typeOf(Node node) {
+			return switch (node.maybeType) {
+				case Some<String>(String type) -> FieldNames.idOf(type);
+				case None<String> _ -> ABSENT;
+			};
+		}
+	}
+
+	private ColumnarTree(Builder builder, Option<Arena> arena) {
+		this.source = builder.source;
+		this.foreign = builder.foreign;
+		this.arena = arena;
+		this.size = builder.size;
+		this.kinds = column(arena, builder.kinds, size);
+		this.fields = column(arena, builder.fields, size);
+		this.types = column(arena, builder.types, size);
+		this.parents = column(arena, builder.parents, size);
+		this.firstChildren = column(arena, builder.firstChildren, size);
+		this.nextSiblings = column(arena, builder.nextSiblings, size);
+		this.starts = column(arena, builder.starts, size);
+		this.ends = column(arena, builder.ends, size);
+	}
+
+	/**
+	 * The tree of {@code root}, lexed from {@code source}, with its columns on the heap.
+	 */
+	public static ColumnarTree onHeap(Slice source, Node root) {
+		return new ColumnarTree(build(source, root), new None<Arena>());
+	}
+
+	/**
+	 * The tree of {@code root}, lexed from {@code source}, with its columns in a confined arena. Only the calling thread
+	 * may read the tree, and closing it frees the columns.
+	 */
+	public static ColumnarTree offHeap(Slice source, Node root) {
+		return new ColumnarTree(build(source, root), Option.of(Arena.ofConfined()));
+	}
+
+	private static Builder build(Slice source, Node root) {
+		final Builder builder = new Builder(source);
+		builder.addNode(root, builder.add(NODE, ABSENT, Builder.typeOf(root), ABSENT, 0, 0));
+		return builder;
+	}
+
+	private static Column column(Option<Arena> arena, int[] values, int size) {
+		return switch (arena) {
+			case None<Arena> _ -> new HeapColumn(Arrays.copyOf(values, size));
+			case Some<Arena>(Arena owner) -> segment(owner, values, size);
+		};
+	}
+
+	private static Column segment(Arena owner, int[] values, int size) {
+		final long rows = size;
+		final long bytes = rows << 2;
+		final MemorySegment segment = owner.allocate(bytes, ValueLayout.JAVA_INT.byteAlignment());
+		MemorySegment.copy(values, 0, segment, ValueLayout.JAVA_INT, 0, size);
+		return new SegmentColumn(segment);
+	}
+
+	@Override
+	public void close() {
+		if (arena instanceof Some<Arena>(Arena owner)) owner.close();
+	}
+
+	public ColumnarNode root() {
+		return new ColumnarNode(this, 0);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int parent(int row) {
+		return parents.get(row);
+	}
+
+	public int firstChild(int row) {
+		return firstChildren.get(row);
+	}
+
+	public int nextSibling(int row) {
+		return nextSiblings.get(row);
+	}
+
+	public Option<String> type(int row) {
+		final int type = types.get(row);
+		if (type == ABSENT) return new None<String>();
+		return new Some<String>(FieldNames.nameOf(type));
+	}
+
+	public boolean is(int row, String type) {
+		return FieldNames.find(type) instanceof Some<Integer>(Integer id) && types.get(row) == id;
+	}
+
+	/**
+	 * The first child of {@code row} stored under {@code key} with the given kind, or {@link #ABSENT}.
+	 */
+	int findChild(int row, String key, int kind) {
+		if (!(FieldNames.find(key) instanceof Some<Integer>(Integer id))) return ABSENT;
+		return findFrom(firstChildren.get(row), id, kind);
+	}
+
+	private int findFrom(int first, int field, int kind) {
+		int child = first;
+		while (child != ABSENT && !isField(child, field, kind)) child = nextSiblings.get(child);
+		return child;
+	}
+
+	private boolean isField(int row, int field, int kind) {
+		final int rowKind = kinds.get(row);
+		final boolean sameKind = rowKind == kind || (kind == SLICE && rowKind == FOREIGN);
+		return sameKind && fields.get(row) == field;
+	}
+
+	Option<Slice> findSlice(int row, String key) {
+		final int child = findChild(row, key, SLICE);
+		if (child == ABSENT) return new None<Slice>();
+		return new Some<Slice>(sliceAt(child));
+	}
+
+	Option<NonEmptyList<ColumnarNode>> findNodeList(int row, String key) {
+		final int first = findChild(row, key, ELEMENT);
+		if (first == ABSENT) return new None<NonEmptyList<ColumnarNode>>();
+		return new Some<NonEmptyList<ColumnarNode>>(elements(first, element -> new ColumnarNode(this, element)));
+	}
+
+	// The element at "first" and the following siblings with the same field.
+	private <T> NonEmptyList<T> elements(int first, IntFunction<T> read) {
+		NonEmptyList<T> elements = NonEmptyList.of(read.apply(first));
+		int element = findFrom(nextSiblings.get(first), fields.get(first), ELEMENT);
+		while (element != ABSENT) {
+			elements = elements.addLast(read.apply(element));
+			element = findFrom(nextSiblings.get(element), fields.get(first), ELEMENT);
+		}
+		return elements;
+	}
+
+	private Slice sliceAt(int row) {
+		if (kinds.get(row) == FOREIGN) return foreign.get(starts.get(row));
+		return source.substring(starts.get(row), ends.get(row));
+	}
+
+	/**
+	 * Rebuilds the subtree at {@code row} as a {@link Node}, for code that needs one, such as the serializer.
+	 */
+	Node toNode(int row) {
+		final Node node = new Node();
+		if (type(row) instanceof Some<String>(String type)) node.retype(type);
+		addFields(node, firstChildren.get(row));
+		return node;
+	}
+
+	private void addFields(Node node, int first) {
+		int child = first;
+		while (child != ABSENT) {
+			addField(node, child);
+			child = nextSiblings.get(child);
+		}
+	}
+
+	// The elements of a list are set as a whole with the first of them, so the following ones are skipped.
+	private void addField(Node node, int child) {
+		final String key = FieldNames.nameOf(fields.get(child));
+		final int kind = kinds.get(child);
+		if (kind == NODE) node.withNode(key, toNode(child));
+		else if (kind == ELEMENT && !node.hasNodeList(key)) node.withNodeList(key, elements(child, this::toNode));
+		else if (kind != ELEMENT) node.withSlice(key, sliceAt(child));
+	}
+}
@@ -0,0 +1,42 @@
+package magma.compile;
+
+import magma.option.Option;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Interns the field names and type tags of lexed trees to small integer IDs, shared by every {@link Node} and
+ * {@link ColumnarTree}. The grammar only ever uses a few hundred names, so the table is never cleared.
+ */
+public final class FieldNames {
+	private static final Map<String, Integer> IDS = new ConcurrentHashMap<String, Integer>();
+	private static final List<String> NAMES = new CopyOnWriteArrayList<String>();
+
+	private FieldNames() {}
+
+	/**
+	 * The ID of {@code name}, interning it first if needed.
+	 */
+	public static int idOf(String name) {
+		return IDS.computeIfAbsent(name, FieldNames::register);
+	}
+
+	/**
+	 * The ID of {@code name}, if it was ever interned. Looking a name up never interns it.
+	 */
+	public static Option<Integer> find(String name) {
+		return Option.ofNullable(IDS.get(name));
+	}
+
+	public static String nameOf(int id) {
+		return NAMES.get(id);
+	}
+
+	private static synchronized int register(String name) {
+		NAMES.add(name);
+		return NAMES.size() - 1;
+	}
+}
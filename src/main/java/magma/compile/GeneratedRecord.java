@@ -0,0 +1,15 @@
+package magma.compile;
+
+import magma.option.Option;
+
+/**
+ * A record class as {@code RecordProcessor} described it when the compiler was built: its tag and its components. The
+ * {@code index} identifies the record to {@link GeneratedRecords#construct} and {@link GeneratedRecords#read}.
+ */
+public record GeneratedRecord(int index, String tag, java.util.List<Component> components) {
+	/**
+	 * For {@code Option<List<Node>>}, {@code elementClass} is {@code List} and {@code innerClass} is {@code Node}. A type
+	 * without generic arguments has neither.
+	 */
+	public record Component(String name, Class<?> type, Option<Class<?>> elementClass, Option<Class<?>> innerClass) {}
+}
@@ -0,0 +1,42 @@
+package magma.compile;
+
+import magma.compile.error.CompileError;
+import magma.option.Option;
+import magma.result.Result;
+
+import java.util.Map;
+
+/**
+ * The records that {@code RecordProcessor} generated plain Java code for, loaded with a {@link java.util.ServiceLoader}.
+ * The generated code calls the canonical constructors and the accessors directly, selected with a {@code switch} on
+ * the record's {@link GeneratedRecord#index()}. Each record also gets its own deserializer and serializer, which read
+ * and write its components with the {@link JavaSerializer} method for their kind, chosen when the code was generated.
+ * When the compiler was built without the processor, there is no provider, and every record is accessed through
+ * reflection.
+ */
+public interface GeneratedRecords {
+	Map<Class<?>, GeneratedRecord> records();
+
+	/**
+	 * A new instance of the record, or nothing if there is no record with this index.
+	 */
+	Option<Object> construct(int record, Object[] arguments);
+
+	/**
+	 * The value of a component of {@code value}, which must be an instance of the record, or nothing if there is no such
+	 * component.
+	 */
+	Option<Object> read(int record, int component, Object value);
+
+	/**
+	 * The record deserialized from {@code node} by the code generated for the record with this index, or nothing if
+	 * none was generated.
+	 */
+	Option<Result<Object, CompileError>> deserialize(int record, Node node);
+
+	/**
+	 * The node serialized from {@code value}, which must be an instance of the record, by the code generated for it, or
+	 * nothing if none was generated.
+	 */
+	Option<Result<Node, CompileError>> serialize(int record, Object value);
+}
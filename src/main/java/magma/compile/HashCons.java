@@ -0,0 +1,170 @@
+package magma.compile;
+
+import magma.list.List;
+import magma.list.NonEmptyList;
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
+import magma.result.Ok;
+import magma.result.Result;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Hash-consing of type records for one compilation unit. Inside {@link #within(Supplier)}, every {@link Lang.JType}
+ * or {@link CNodes.CType} record passed to {@link #intern(Object)} is replaced by the first equal record of the unit,
+ * so the many occurrences of {@code String} or {@code Option<Slice>} in a file share one instance, and two of them are
+ * equal exactly when they are the same instance.
+ * <p>
+ * Records are built bottom-up, so the components of a record are interned before the record itself. A record is
+ * therefore looked up by its shape: its class and its components, where an interned component is compared by identity
+ * and hashed by {@link System#identityHashCode(Object)}, and a slice, a string, an option or a list is compared by
+ * value. Looking a record up costs the same whatever the size of its subtree.
+ * <p>
+ * {@link Memo} caches a function of interned keys by identity, for the same unit. Outside of
+ * {@link #within(Supplier)}, nothing is interned or cached.
+ */
+public final class HashCons {
+	private static final ThreadLocal<Option<HashCons>> CURRENT = ThreadLocal.withInitial(None::new);
+	private final Map<Shape, Object> table = new HashMap<Shape, Object>();
+	private final Map<Memo<?, ?>, Map<Object, Object>> memos = new IdentityHashMap<Memo<?, ?>, Map<Object, Object>>();
+
+	private record Shape(Class<?> type, Object[] parts, int hash) {
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Shape shape && shape.type == type && sameAll(shape.parts, parts);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	/**
+	 * A function of interned records, evaluated once per record and compilation unit. The function must not depend on
+	 * anything but its argument.
+	 */
+	public static final class Memo<K, V> {
+		private final Class<V> type;
+		private final Function<K, V> function;
+
+		private Memo(Class<V> type, Function<K, V> function) {
+			this.type = type;
+			this.function = function;
+		}
+
+		public V apply(K key) {
+			return switch (CURRENT.get()) {
+				case None<HashCons> _ -> function.apply(key);
+				case Some<HashCons>(HashCons table) -> table.lookup(this, key);
+			};
+		}
+	}
+
+	private HashCons() {}
+
+	public static <T> T within(Supplier<T> action) {
+		final Option<HashCons> previous = CURRENT.get();
+		CURRENT.set(new Some<HashCons>(new HashCons()));
+		final T result = action.get();
+		CURRENT.set(previous);
+		return result;
+	}
+
+	public static <K, V> Memo<K, V> memo(Class<V> type, Function<K, V> function) {
+		return new Memo<K, V>(type, function);
+	}
+
+	/**
+	 * The canonical instance of {@code value} in the current compilation unit. Any value that is not a type record is
+	 * returned as it is.
+	 */
+	public static Object intern(Object value) {
+		if (!isShared(value.getClass())) return value;
+		return switch (CURRENT.get()) {
+			case None<HashCons> _ -> value;
+			case Some<HashCons>(HashCons table) -> table.canonical(value);
+		};
+	}
+
+	private static boolean isShared(Class<?> type) {
+		return type.isRecord() &&
+					 (Lang.JType.class.isAssignableFrom(type) || CNodes.CType.class.isAssignableFrom(type));
+	}
+
+	private Object canonical(Object value) {
+		final RecordCodec codec = RecordCodec.of(value.getClass());
+		final Object[] parts = new Object[codec.components().length];
+		if (!readAll(codec, value, parts)) return value;
+
+		final Shape shape = new Shape(value.getClass(), parts, Objects.hash(value.getClass(), hashAll(parts)));
+		return table.computeIfAbsent(shape, key -> value);
+	}
+
+	private static boolean readAll(RecordCodec codec, Object value, Object[] parts) {
+		int i = 0;
+		while (i < parts.length && store(codec.read(i, value), parts, i)) i++;
+		return i == parts.length;
+	}
+
+	private static boolean store(Result<Object, String> read, Object[] parts, int index) {
+		if (!(read instanceof Ok<Object, String>(Object part))) return false;
+		parts[index] = part;
+		return true;
+	}
+
+	private <K, V> V lookup(Memo<K, V> memo, K key) {
+		final Map<Object, Object> cache = memos.computeIfAbsent(memo, unused -> new IdentityHashMap<Object, Object>());
+		if (Option.ofNullable(cache.get(key)) instanceof Some<Object>(Object cached)) return memo.type.cast(cached);
+		final V computed = memo.function.apply(key);
+		cache.put(key, computed);
+		return computed;
+	}
+
+	private static int hashAll(Object[] parts) {
+		return Arrays.stream(parts).mapToInt(HashCons::hashOf).reduce(1, (hash, part) -> (hash << 5) - hash + part);
+	}
+
+	private static int hashOf(Object part) {
+		if (part instanceof Some<?> some) return 1 + hashOf(some.value());
+		if (elementsOf(part) instanceof Some<Object[]>(Object[] elements)) return hashAll(elements);
+		if (isShared(part.getClass())) return System.identityHashCode(part);
+		return part.hashCode();
+	}
+
+	private static boolean sameAll(Object[] left, Object[] right) {
+		int i = 0;
+		while (i < left.length && i < right.length && same(left[i], right[i])) i++;
+		return i == left.length && i == right.length;
+	}
+
+	// Type records that are not interned are only ever the same by identity, which only loses some sharing.
+	private static boolean same(Object left, Object right) {
+		if (left == right) return true;
+		if (left instanceof Some<?> some && right instanceof Some<?> other) return same(some.value(), other.value());
+		if (elementsOf(left) instanceof Some<Object[]>(Object[] elements) &&
+				elementsOf(right) instanceof Some<Object[]>(Object[] others)) return sameAll(elements, others);
+		if (isShared(left.getClass())) return false;
+		return left.equals(right);
+	}
+
+	private static Option<Object[]> elementsOf(Object part) {
+		if (part instanceof List<?> list)
+			return Option.of(list.stream().fold(new java.util.ArrayList<Object>(), HashCons::add).toArray());
+		if (part instanceof NonEmptyList<?> list)
+			return Option.of(list.stream().fold(new java.util.ArrayList<Object>(), HashCons::add).toArray());
+		return new None<Object[]>();
+	}
+
+	private static java.util.ArrayList<Object> add(java.util.ArrayList<Object> elements, Object element) {
+		elements.add(element);
+		return elements;
+	}
+}
@@ -21,7 +21,18 @@ import static magma.compile.rule.SuffixRule.Suffix;
 import static magma.compile.rule.TagRule.Tag;
 
 public class JRules {
+	private static final Rule TYPE = BuildType();
+	private static final Rule DEFINITION = BuildDefinition();
+
 	static Rule JDefinition() {
+		return DEFINITION;
+	}
+
+	static Rule JType() {
+		return TYPE;
+	}
+
+	private static Rule BuildDefinition() {
 		// Use TypeFolder to properly parse generic types like Function<T, R>
 		// Split into modifiers+type and name using type-aware splitting
 		final Rule type = Node("type", JType());
@@ -31,18 +42,18 @@ public class JRules {
 		final Rule modifiers = Delimited("modifiers", Tag("modifier", String("value")), " ");
 		final Rule withModifiers = Split(modifiers, KeepLast(new FoldingDivider(new TypeFolder())), type);
 
-		Rule beforeName = Or(withModifiers, type);
+		Rule beforeName = Or(type, withModifiers);
 		return Tag("definition", Strip(Last(beforeName, " ", name)));
 	}
 
-	static Rule JType() {
+	private static Rule BuildType() {
 		final LazyRule type = new LazyRule();
-		type.set(Or(Parameterized("generic", type, Node("base", JQualifiedName())),
-								JArray(type),
-								CommonRules.Identifier(),
-								JWildCard(),
+		type.set(Or(JQualifiedName(),
 								Tag("variadic", Strip(Suffix(Node("child", type), "..."))),
-								JQualifiedName()));
+								JWildCard(),
+								CommonRules.Identifier(),
+								JArray(type),
+								Parameterized("generic", type, Node("base", JQualifiedName()))));
 		return type;
 	}
 
@@ -60,7 +71,7 @@ public class JRules {
 	}
 
 	static Rule Parameterized(String tag, Rule type, Rule base) {
-		final Rule arguments = Or(Expressions("typeArguments", type), Strip(Empty));
+		final Rule arguments = Or(Strip(Empty), Expressions("typeArguments", type));
 		return Tag(tag, Strip(Suffix(First(base, "<", arguments), ">")));
 	}
 }
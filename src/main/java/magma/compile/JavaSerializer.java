@@ -16,15 +16,12 @@ import magma.result.Err;
 import magma.result.Ok;
 import magma.result.Result;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.RecordComponent;
-import java.lang.reflect.Type;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
 
 @Actual
 public class JavaSerializer {
@@ -66,28 +63,41 @@ public class JavaSerializer {
 	}
 
 	private static Result<Node, CompileError> serializeRecord(Class<?> type, Object value) {
-		Node result = createNodeWithType(type);
+		RecordCodec codec = RecordCodec.of(type);
+		if (codec.serialize(value) instanceof Some<Result<Node, CompileError>>(Result<Node, CompileError> generated))
+			return generated;
+
+		Node result = createNodeWithType(codec.tag());
 		List<CompileError> errors = new ArrayList<CompileError>();
 
-		RecordComponent[] recordComponents = type.getRecordComponents();
+		RecordCodec.Component[] components = codec.components();
 		int i = 0;
-		while (i < recordComponents.length) {
-			RecordComponent component = recordComponents[i];
-			try {
-				Object fieldValue = component.getAccessor().invoke(value);
-				Result<Node, CompileError> fieldResult = serializeField(component, fieldValue);
-				switch (fieldResult) {
-					case Ok<Node, CompileError>(Node fieldNode) -> result = mergeNodes(result, fieldNode);
-					case Err<Node, CompileError>(CompileError error) -> errors.addLast(error);
-				}
-			} catch (Exception e) {
-				errors.addLast(new CompileError("Failed to read component '" + component.getName() + "'",
-																				createContext(type.getName()),
-																				List.of(new CompileError(e.getMessage(), createContext(component.getName())))));
-			}
+		while (i < components.length) {
+			RecordCodec.Component component = components[i];
+			Result<Node, CompileError> fieldResult = switch (codec.read(i, value)) {
+				case Ok<Object, String>(Object fieldValue) -> serializeField(component, fieldValue);
+				case Err<Object, String>(String message) -> new Err<Node, CompileError>(new CompileError(
+						"Failed to read component '" + component.name() + "'",
+						createContext(type.getName()),
+						List.of(new CompileError(message, createContext(component.name())))));
+			};
+			result = merge(result, fieldResult, errors);
 			i++;
 		}
 
+		return serialized(type, result, errors);
+	}
+
+	// The serializer that RecordProcessor generates for a record calls the methods from here to serialized(...) with
+	// the kind of each component, so both paths build the same nodes and report the same errors.
+
+	static Node merge(Node result, Result<Node, CompileError> fieldResult, List<CompileError> errors) {
+		if (fieldResult instanceof Ok<Node, CompileError>(Node fieldNode)) return mergeNodes(result, fieldNode);
+		if (fieldResult instanceof Err<Node, CompileError>(CompileError error)) errors.addLast(error);
+		return result;
+	}
+
+	static Result<Node, CompileError> serialized(Class<?> type, Node result, List<CompileError> errors) {
 		if (errors.isEmpty()) return new Ok<Node, CompileError>(result);
 		return new Err<Node, CompileError>(new CompileError("Failed to serialize '" + type.getSimpleName() + "'",
 																												createContext(type.getName()),
@@ -98,70 +108,115 @@ public class JavaSerializer {
 		return new InputContext(new Slice(type));
 	}
 
-	private static Result<Node, CompileError> serializeField(RecordComponent component, Object value) {
-		String fieldName = component.getName();
-		Class<?> fieldType = component.getType();
+	private static Result<Node, CompileError> serializeField(RecordCodec.Component component, Object value) {
+		String fieldName = component.name();
+		Class<?> fieldType = component.type();
 
-		if (Objects.isNull(value))
-			return new Err<Node, CompileError>(new CompileError("Component '" + fieldName + "' was absent",
-																													createContext(fieldName)));
+		if (Objects.isNull(value)) return absent(fieldName);
 
-		if (fieldType == Slice.class) return new Ok<Node, CompileError>(new Node().withSlice(fieldName, (Slice) value));
+		if (fieldType == Slice.class) return serializeSliceField(fieldName, value);
 		if (Option.class.isAssignableFrom(fieldType)) return serializeOptionField(component, value);
-		if (NonEmptyList.class.isAssignableFrom(fieldType)) return serializeNonEmptyListField(component, value);
-		if (List.class.isAssignableFrom(fieldType)) return serializeListField(component, value);
-		return serializeValue(fieldType, value).mapValue(childNode -> new Node().withNode(fieldName, childNode));
+		if (NonEmptyList.class.isAssignableFrom(fieldType)) return component.elementClass()
+																																				.flatMap(elementClass -> serializeNonEmptyListField(
+																																						fieldName,
+																																						elementClass,
+																																						value));
+		if (List.class.isAssignableFrom(fieldType)) return component.elementClass()
+																																.flatMap(elementClass -> serializeListField(fieldName,
+																																																						elementClass,
+																																																						value));
+		return serializeNodeField(fieldName, fieldType, value);
 	}
 
-	private static Result<Node, CompileError> serializeOptionField(RecordComponent component, Object value) {
-		String fieldName = component.getName();
+	private static Result<Node, CompileError> absent(String fieldName) {
+		return new Err<Node, CompileError>(new CompileError("Component '" + fieldName + "' was absent",
+																												createContext(fieldName)));
+	}
 
-		if (!(value instanceof Option<?> option))
-			return new Err<Node, CompileError>(new CompileError("Component '" + fieldName + "' is not an Optional instance",
-																													createContext(fieldName)));
+	static Result<Node, CompileError> serializeSliceField(String fieldName, Object value) {
+		if (Objects.isNull(value)) return absent(fieldName);
+		return serializeSlice(fieldName, value);
+	}
 
-		if (option instanceof None<?>) return new Ok<Node, CompileError>(new Node()); // Empty node for None
+	static Result<Node, CompileError> serializeNodeField(String fieldName, Class<?> fieldType, Object value) {
+		if (Objects.isNull(value)) return absent(fieldName);
+		return serializeChild(fieldName, fieldType, value);
+	}
 
-		if (option instanceof Some<?>(Object value1)) {
-			Result<Type, CompileError> elementTypeResult = getGenericArgument(component.getGenericType());
-			if (elementTypeResult instanceof Err<Type, CompileError>(CompileError error))
-				return new Err<Node, CompileError>(error);
-			Type elementType = ((Ok<Type, CompileError>) elementTypeResult).value();
+	private static Result<Node, CompileError> serializeSlice(String fieldName, Object value) {
+		return new Ok<Node, CompileError>(new Node().withSlice(fieldName, (Slice) value));
+	}
 
-			Result<Class<?>, CompileError> elementClassResult = erase(elementType);
-			if (elementClassResult instanceof Err<Class<?>, CompileError>(CompileError error))
-				return new Err<Node, CompileError>(error);
-			Class<?> elementClass = ((Ok<Class<?>, CompileError>) elementClassResult).value();
+	private static Result<Node, CompileError> serializeChild(String fieldName, Class<?> type, Object value) {
+		return serializeValue(type, value).mapValue(childNode -> new Node().withNode(fieldName, childNode));
+	}
 
-			if (elementClass == Slice.class)
-				return new Ok<Node, CompileError>(new Node().withSlice(fieldName, (Slice) value1));
+	private static Result<Node, CompileError> serializeOptionField(RecordCodec.Component component, Object value) {
+		return serializeOption(component.name(),
+													 value,
+													 content -> component.elementClass()
+																							 .flatMap(elementClass -> serializeOptionContent(component,
+																																															 elementClass,
+																																															 content)));
+	}
 
-			if (NonEmptyList.class.isAssignableFrom(elementClass))
-				return serializeOptionNonEmptyListField(fieldName, elementType, value1);
+	private static Result<Node, CompileError> serializeOptionContent(RecordCodec.Component component,
+																																	 Class<?> elementClass,
+																																	 Object content) {
+		String fieldName = component.name();
+		if (elementClass == Slice.class) return serializeSlice(fieldName, content);
 
-			if (List.class.isAssignableFrom(elementClass)) return serializeOptionListField(fieldName, elementType, value1);
+		if (NonEmptyList.class.isAssignableFrom(elementClass)) return component.innerClass()
+																																					 .flatMap(innerClass -> serializeOptionNonEmptyList(
+																																							 fieldName,
+																																							 innerClass,
+																																							 content));
 
-			return serializeValue(elementClass, value1).mapValue(childNode -> new Node().withNode(fieldName, childNode));
-		}
+		if (List.class.isAssignableFrom(elementClass)) return component.innerClass()
+																																	 .flatMap(innerClass -> serializeOptionList(fieldName,
+																																																							innerClass,
+																																																							content));
 
+		return serializeChild(fieldName, elementClass, content);
+	}
+
+	// An empty node for None; the content of Some is serialized by present.
+	private static Result<Node, CompileError> serializeOption(String fieldName,
+																													 Object value,
+																													 Function<Object, Result<Node, CompileError>> present) {
+		if (Objects.isNull(value)) return absent(fieldName);
+
+		if (!(value instanceof Option<?> option))
+			return new Err<Node, CompileError>(new CompileError("Component '" + fieldName + "' is not an Optional instance",
+																													createContext(fieldName)));
+
+		if (option instanceof Some<?>(Object content)) return present.apply(content);
 		return new Ok<Node, CompileError>(new Node());
 	}
 
-	private static Result<Node, CompileError> serializeOptionListField(String fieldName, Type listType, Object content) {
+	static Result<Node, CompileError> serializeOptionSliceField(String fieldName, Object value) {
+		return serializeOption(fieldName, value, content -> serializeSlice(fieldName, content));
+	}
+
+	static Result<Node, CompileError> serializeOptionNodeField(String fieldName, Class<?> elementClass, Object value) {
+		return serializeOption(fieldName, value, content -> serializeChild(fieldName, elementClass, content));
+	}
+
+	static Result<Node, CompileError> serializeOptionListField(String fieldName, Class<?> innerClass, Object value) {
+		return serializeOption(fieldName, value, content -> serializeOptionList(fieldName, innerClass, content));
+	}
+
+	static Result<Node, CompileError> serializeOptionNonEmptyListField(String fieldName,
+																																		 Class<?> innerClass,
+																																		 Object value) {
+		return serializeOption(fieldName, value, content -> serializeOptionNonEmptyList(fieldName, innerClass, content));
+	}
+
+	private static Result<Node, CompileError> serializeOptionList(String fieldName, Class<?> elementClass, Object content) {
 		if (!(content instanceof List<?> list)) return new Err<Node, CompileError>(new CompileError(
 				"Optional List component '" + fieldName + "' is not a List instance",
 				createContext(fieldName)));
 
-		Result<Type, CompileError> elementTypeResult = getGenericArgument(listType);
-		if (elementTypeResult instanceof Err<Type, CompileError>(CompileError error))
-			return new Err<Node, CompileError>(error);
-		Type elementType = ((Ok<Type, CompileError>) elementTypeResult).value();
-
-		Result<Class<?>, CompileError> elementClassResult = erase(elementType);
-		if (elementClassResult instanceof Err<Class<?>, CompileError>(CompileError error))
-			return new Err<Node, CompileError>(error);
-		Class<?> elementClass = ((Ok<Class<?>, CompileError>) elementClassResult).value();
-
 		return serializeListElements(elementClass, list).mapValue(nodes -> {
 			if (nodes.isEmpty()) return new Node();
 			// Convert to NonEmptyList since we know it's non-empty
@@ -171,23 +226,13 @@ public class JavaSerializer {
 		});
 	}
 
-	private static Result<Node, CompileError> serializeOptionNonEmptyListField(String fieldName,
-																																						 Type nonEmptyListType,
-																																						 Object content) {
+	private static Result<Node, CompileError> serializeOptionNonEmptyList(String fieldName,
+																																				Class<?> elementClass,
+																																				Object content) {
 		if (!(content instanceof NonEmptyList<?> nonEmptyList)) return new Err<Node, CompileError>(new CompileError(
 				"Optional NonEmptyList component '" + fieldName + "' is not a NonEmptyList instance",
 				createContext(fieldName)));
 
-		Result<Type, CompileError> elementTypeResult = getGenericArgument(nonEmptyListType);
-		if (elementTypeResult instanceof Err<Type, CompileError>(CompileError error))
-			return new Err<Node, CompileError>(error);
-		Type elementType = ((Ok<Type, CompileError>) elementTypeResult).value();
-
-		Result<Class<?>, CompileError> elementClassResult = erase(elementType);
-		if (elementClassResult instanceof Err<Class<?>, CompileError>(CompileError error))
-			return new Err<Node, CompileError>(error);
-		Class<?> elementClass = ((Ok<Class<?>, CompileError>) elementClassResult).value();
-
 		return serializeListElements(elementClass, nonEmptyList.toList()).mapValue(nodes -> NonEmptyList.fromList(nodes)
 																																																		.map(nonEmptyNodes -> new Node().withNodeList(
 																																																				fieldName,
@@ -195,23 +240,13 @@ public class JavaSerializer {
 																																																		.orElse(new Node()));
 	}
 
-	private static Result<Node, CompileError> serializeNonEmptyListField(RecordComponent component, Object value) {
-		String fieldName = component.getName();
+	static Result<Node, CompileError> serializeNonEmptyListField(String fieldName, Class<?> elementClass, Object value) {
+		if (Objects.isNull(value)) return absent(fieldName);
 
 		if (!(value instanceof NonEmptyList<?> nonEmptyList)) return new Err<Node, CompileError>(new CompileError(
 				"Component '" + fieldName + "' is not a NonEmptyList instance",
 				createContext(fieldName)));
 
-		Result<Type, CompileError> elementTypeResult = getGenericArgument(component.getGenericType());
-		if (elementTypeResult instanceof Err<Type, CompileError>(CompileError error))
-			return new Err<Node, CompileError>(error);
-		Type elementType = ((Ok<Type, CompileError>) elementTypeResult).value();
-
-		Result<Class<?>, CompileError> elementClassResult = erase(elementType);
-		if (elementClassResult instanceof Err<Class<?>, CompileError>(CompileError error))
-			return new Err<Node, CompileError>(error);
-		Class<?> elementClass = ((Ok<Class<?>, CompileError>) elementClassResult).value();
-
 		// Convert NonEmptyList to List for serialization
 		final List<?> list = nonEmptyList.toList();
 		return serializeListElements(elementClass, list).mapValue(nodes -> {
@@ -222,23 +257,13 @@ public class JavaSerializer {
 		});
 	}
 
-	private static Result<Node, CompileError> serializeListField(RecordComponent component, Object value) {
-		String fieldName = component.getName();
+	static Result<Node, CompileError> serializeListField(String fieldName, Class<?> elementClass, Object value) {
+		if (Objects.isNull(value)) return absent(fieldName);
 
 		if (!(value instanceof List<?> list))
 			return new Err<Node, CompileError>(new CompileError("Component '" + fieldName + "' is not a List instance",
 																													createContext(fieldName)));
 
-		Result<Type, CompileError> elementTypeResult = getGenericArgument(component.getGenericType());
-		if (elementTypeResult instanceof Err<Type, CompileError>(CompileError error))
-			return new Err<Node, CompileError>(error);
-		Type elementType = ((Ok<Type, CompileError>) elementTypeResult).value();
-
-		Result<Class<?>, CompileError> elementClassResult = erase(elementType);
-		if (elementClassResult instanceof Err<Class<?>, CompileError>(CompileError error))
-			return new Err<Node, CompileError>(error);
-		Class<?> elementClass = ((Ok<Class<?>, CompileError>) elementClassResult).value();
-
 		return serializeListElements(elementClass, list).mapValue(nodes -> {
 			if (nodes.isEmpty()) return new Node();
 			// NonEmptyList should never serialize to empty, but handle defensively
@@ -265,6 +290,8 @@ public class JavaSerializer {
 
 	// Pure recursive deserialization
 	private static Result<Object, CompileError> deserializeValue(Class<?> type, Node node) {
+		if (RecordFusion.attached(type, node) instanceof Some<Object>(Object value))
+			return new Ok<Object, CompileError>(value);
 		if (type.isSealed() && !type.isRecord()) return deserializeSealed(type, node);
 		if (!type.isRecord()) return new Err<Object, CompileError>(new CompileError(
 				"Unsupported deserialization target '" + type.getName() + "'", new NodeContext(node)));
@@ -276,33 +303,23 @@ public class JavaSerializer {
 			return new Err<Object, CompileError>(new CompileError(
 					"Missing node type for sealed type '" + type.getName() + "'", new NodeContext(node)));
 
-		// Try direct permitted subclasses
-		Option<Result<Object, CompileError>> directResult = tryDirectPermittedSubclasses(type, node, nodeType);
-		if (directResult instanceof Some<Result<Object, CompileError>>(Result<Object, CompileError> result)) return result;
+		final TagIndex index = TagIndex.of(type);
+		if (index.ambiguity(nodeType) instanceof Some<String>(String candidates))
+			return new Err<Object, CompileError>(new CompileError(
+					"Tag '" + nodeType + "' is carried by several subtypes of '" + type.getSimpleName() + "': [" + candidates +
+					"]. Give each of them its own @Tag.", new NodeContext(node)));
 
-		// Try nested sealed interfaces
-		return tryNestedSealedInterfaces(type, node, nodeType);
+		return dispatch(index, type, node, nodeType);
 	}
 
-	private static Option<Result<Object, CompileError>> tryDirectPermittedSubclasses(Class<?> type,
-																																									 Node node,
-																																									 String nodeType) {
-		Class<?>[] permittedSubclasses = type.getPermittedSubclasses();
-		int i = 0;
-		while (i < permittedSubclasses.length) {
-			Class<?> permitted = permittedSubclasses[i];
-			Option<String> maybeIdentifier = resolveTypeIdentifier(permitted);
-			if (maybeIdentifier instanceof Some<String>(String identifier) && identifier.equals(nodeType))
-				return new Some<Result<Object, CompileError>>(deserializeValue(permitted, node));
-			i++;
-		}
-		return new None<Result<Object, CompileError>>();
+	private static Result<Object, CompileError> dispatch(TagIndex index, Class<?> type, Node node, String nodeType) {
+		return switch (index.target(nodeType)) {
+			case Some<Class<?>>(Class<?> target) -> deserializeValue(target, node);
+			case None<Class<?>> _ -> unknownTag(type, node, nodeType);
+		};
 	}
 
-	private static Result<Object, CompileError> tryNestedSealedInterfaces(Class<?> type, Node node, String nodeType) {
-		Option<Result<Object, CompileError>> recursiveResult = findNestedSealedDeserialization(type, node, nodeType);
-		if (recursiveResult instanceof Some<Result<Object, CompileError>>(Result<Object, CompileError> value)) return value;
-
+	private static Result<Object, CompileError> unknownTag(Class<?> type, Node node, String nodeType) {
 		// Collect all valid tags for better error message
 		List<String> validTags = collectAllValidTags(type);
 
@@ -316,40 +333,6 @@ public class JavaSerializer {
 				"Valid tags are: [" + validTagsList + "]. " + suggestion, new NodeContext(node)));
 	}
 
-	private static Option<Result<Object, CompileError>> findNestedSealedDeserialization(Class<?> type,
-																																											Node node,
-																																											String nodeType) {
-		Class<?>[] subclasses = type.getPermittedSubclasses();
-		int j = 0;
-		while (j < subclasses.length) {
-			Class<?> permitted = subclasses[j];
-			Option<Result<Object, CompileError>> recursiveResult =
-					tryDeserializeNestedSealed(type, node, nodeType, permitted);
-			if (recursiveResult instanceof Some<Result<Object, CompileError>> k) return k;
-			j++;
-		}
-
-		return new None<Result<Object, CompileError>>();
-	}
-
-	private static Option<Result<Object, CompileError>> tryDeserializeNestedSealed(Class<?> type,
-																																								 Node node,
-																																								 String nodeType,
-																																								 Class<?> permitted) {
-		if (!permitted.isSealed() || permitted.isRecord()) return new None<Result<Object, CompileError>>();
-
-		Result<Object, CompileError> recursiveResult = deserializeSealed(permitted, node);
-		if (recursiveResult instanceof Ok<?, ?>(Object value) && type.isAssignableFrom(value.getClass()))
-			return new Some<Result<Object, CompileError>>(recursiveResult);
-		// If recursiveResult is Err but would have matched (i.e., the tag was valid but
-		// deserialization failed
-		// for other reasons), propagate that error instead of generating a misleading
-		// "unknown tag" error
-		if (recursiveResult instanceof Err<?, ?> && canMatchType(permitted, nodeType))
-			return new Some<Result<Object, CompileError>>(recursiveResult);
-		return new None<Result<Object, CompileError>>();
-	}
-
 	private static String getSuggestionForUnknownTag(Class<?> type, String nodeType, List<String> validTags) {
 		// Provide helpful suggestions for unknown tags
 		if (validTags.isEmpty()) return "This sealed interface has no valid implementations with @Tag annotations.";
@@ -437,83 +420,106 @@ public class JavaSerializer {
 		return tags;
 	}
 
-	private static boolean canMatchType(Class<?> sealedType, String nodeType) {
-		// Check if this sealed type or any of its permitted subtypes could match the
-		// given node type
-		Class<?>[] permittedSubclasses = sealedType.getPermittedSubclasses();
-		int i = 0;
-		while (i < permittedSubclasses.length) {
-			Class<?> permitted = permittedSubclasses[i];
-			Option<String> maybeIdentifier = resolveTypeIdentifier(permitted);
-			if (maybeIdentifier instanceof Some<String>(String tag) && tag.equals(nodeType)) return true;
-			// Recursively check nested sealed interfaces
-			if (permitted.isSealed() && !permitted.isRecord()) if (canMatchType(permitted, nodeType)) return true;
-			i++;
-		}
-		return false;
-	}
-
 	private static Result<Object, CompileError> deserializeRecord(Class<?> type, Node node) {
+		RecordCodec codec = RecordCodec.of(type);
+		if (codec.deserialize(node) instanceof Some<Result<Object, CompileError>>(Result<Object, CompileError> generated))
+			return generated;
+
 		// Validate type annotation if present
-		Option<String> expectedType = resolveTypeIdentifier(type);
-		if (expectedType instanceof Some<String>(String expectedType0))
-			if (node.maybeType instanceof Some<String>(String nodeType)) {
-				if (!node.is(expectedType0)) return new Err<Object, CompileError>(new CompileError(
-						"Expected node type '" + expectedType0 + "' but found '" + nodeType + "'", new NodeContext(node)));
-			} else return new Err<Object, CompileError>(new CompileError(
-					"Node '@type' property missing for '" + type.getSimpleName() + "' (expected '@type': '" + expectedType0 +
-					"')", new NodeContext(node)));
-
-		RecordComponent[] components = type.getRecordComponents();
+		if (codec.tag() instanceof Some<String>(String expectedType) &&
+				checkTag(type, node, expectedType) instanceof Some<CompileError>(CompileError error))
+			return new Err<Object, CompileError>(error);
+
+		RecordCodec.Component[] components = codec.components();
 		Object[] arguments = new Object[components.length];
 		List<CompileError> errors = new ArrayList<CompileError>();
 		Set<String> consumedFields = new HashSet<String>();
 
-		Stream.range(0, components.length).forEach(i -> {
-			Result<Object, CompileError> componentResult = deserializeField(components[i], node, consumedFields);
-			switch (componentResult) {
-				case Ok<Object, CompileError>(Object value) -> arguments[i] = value;
-				case Err<Object, CompileError>(CompileError error) -> errors.addLast(error);
-			}
-		});
+		Stream.range(0, components.length)
+					.forEach(i -> collect(deserializeField(components[i], node, consumedFields), arguments, i, errors));
 
-		// Validate that all fields were consumed
+		if (incomplete(type, node, consumedFields, errors) instanceof Some<CompileError>(CompileError error))
+			return new Err<Object, CompileError>(error);
+
+		return codec.construct(arguments).mapErr(message -> new CompileError(
+				"Reflection failure while instantiating '" + type.getSimpleName() + "'",
+				new NodeContext(node),
+				List.of(new CompileError(message, createContext(type.getName()))))).mapValue(HashCons::intern);
+	}
+
+	// The deserializer that RecordProcessor generates for a record calls the methods from here to
+	// deserializeListField(...) with the kind of each component, so both paths read the same fields and report the same
+	// errors.
+
+	static Option<CompileError> checkTag(Class<?> type, Node node, String expectedType) {
+		if (!(node.maybeType instanceof Some<String>(String nodeType))) return Option.of(new CompileError(
+				"Node '@type' property missing for '" + type.getSimpleName() + "' (expected '@type': '" + expectedType + "')",
+				new NodeContext(node)));
+		if (node.is(expectedType)) return new None<CompileError>();
+		return Option.of(new CompileError("Expected node type '" + expectedType + "' but found '" + nodeType + "'",
+																			new NodeContext(node)));
+	}
+
+	static void collect(Result<Object, CompileError> componentResult,
+											Object[] arguments,
+											int index,
+											List<CompileError> errors) {
+		switch (componentResult) {
+			case Ok<Object, CompileError>(Object value) -> arguments[index] = value;
+			case Err<Object, CompileError>(CompileError error) -> errors.addLast(error);
+		}
+	}
+
+	// The error that stops the record from being built, if a component failed or a field was not consumed.
+	static Option<CompileError> incomplete(Class<?> type,
+																				 Node node,
+																				 Set<String> consumedFields,
+																				 List<CompileError> errors) {
 		Option<CompileError> validationError = validateAllFieldsConsumed(node, consumedFields, type);
 		if (validationError instanceof Some<CompileError>(CompileError error)) errors.addLast(error);
 
-		if (!errors.isEmpty())
-			return new Err<Object, CompileError>(new CompileError("Failed to deserialize '" + type.getSimpleName() + "'",
-																														new NodeContext(node),
-																														errors));
-
-		try {
-			Class<?>[] parameterTypes = Arrays.stream(components).map(RecordComponent::getType).toArray(Class[]::new);
-			Constructor<?> constructor = type.getDeclaredConstructor(parameterTypes);
-			constructor.setAccessible(true);
-			return new Ok<Object, CompileError>(constructor.newInstance(arguments));
-		} catch (Exception e) {
-			return new Err<Object, CompileError>(new CompileError(
-					"Reflection failure while instantiating '" + type.getSimpleName() + "'",
-					new NodeContext(node),
-					List.of(new CompileError(e.getMessage(), createContext(type.getName())))));
-		}
+		if (errors.isEmpty()) return new None<CompileError>();
+		return Option.of(new CompileError("Failed to deserialize '" + type.getSimpleName() + "'",
+																			new NodeContext(node),
+																			errors));
 	}
 
-	private static Result<Object, CompileError> deserializeField(RecordComponent component,
-																																												 Node node,
-																																												 Set<String> consumedFields) {
-		String fieldName = component.getName();
-		Class<?> fieldType = component.getType();
+	private static Result<Object, CompileError> deserializeField(RecordCodec.Component component,
+																															 Node node,
+																															 Set<String> consumedFields) {
+		String fieldName = component.name();
+		Class<?> fieldType = component.type();
 
 		if (fieldType == Slice.class) return deserializeSliceField(fieldName, node, consumedFields);
 
 		if (fieldType == String.class) return deserializeStringField(fieldName, node, consumedFields);
 
-		if (Option.class.isAssignableFrom(fieldType)) return deserializeOptionField(component, node, consumedFields);		if (NonEmptyList.class.isAssignableFrom(fieldType))
-			return deserializeNonEmptyListField(component, node, consumedFields);
+		if (Option.class.isAssignableFrom(fieldType)) return component.elementClass()
+																																	.flatMap(elementClass -> deserializeOptionField(component,
+																																																									elementClass,
+																																																									node,
+																																																									consumedFields));
+
+		if (NonEmptyList.class.isAssignableFrom(fieldType)) return component.elementClass()
+																																				.flatMap(elementClass -> deserializeNonEmptyListField(
+																																						fieldName,
+																																						elementClass,
+																																						node,
+																																						consumedFields));
 
-		if (List.class.isAssignableFrom(fieldType)) return deserializeListField(component, node, consumedFields);
+		if (List.class.isAssignableFrom(fieldType)) return component.elementClass()
+																																.flatMap(elementClass -> deserializeListField(fieldName,
+																																																							elementClass,
+																																																							node,
+																																																							consumedFields));
 
+		return deserializeNodeField(fieldName, fieldType, node, consumedFields);
+	}
+
+	static Result<Object, CompileError> deserializeNodeField(String fieldName,
+																													 Class<?> fieldType,
+																													 Node node,
+																													 Set<String> consumedFields) {
 		Option<Node> childNode = node.findNode(fieldName);
 		if (childNode instanceof Some<Node>(Node value)) {
 			consumedFields.add(fieldName);
@@ -523,9 +529,7 @@ public class JavaSerializer {
 				new NodeContext(node)));
 	}
 
-	private static Result<Object, CompileError> deserializeSliceField(String fieldName,
-																																		Node node,
-																																		Set<String> consumedFields) {
+	static Result<Object, CompileError> deserializeSliceField(String fieldName, Node node, Set<String> consumedFields) {
 		Option<Slice> direct = node.findSlice(fieldName);
 		if (direct instanceof Some<Slice>(Slice value)) {
 			consumedFields.add(fieldName);
@@ -541,9 +545,7 @@ public class JavaSerializer {
 				"Required component '" + fieldName + "' of type 'Slice' not present", new NodeContext(node)));
 	}
 
-	private static Result<Object, CompileError> deserializeStringField(String fieldName,
-																																		 Node node,
-																																		 Set<String> consumedFields) {
+	static Result<Object, CompileError> deserializeStringField(String fieldName, Node node, Set<String> consumedFields) {
 		Option<Slice> direct = node.findSlice(fieldName);
 		if (direct instanceof Some<Slice>(Slice value)) {
 			consumedFields.add(fieldName);
@@ -559,78 +561,93 @@ public class JavaSerializer {
 				"Required component '" + fieldName + "' of type 'String' not present", new NodeContext(node)));
 	}
 
-	private static Result<Object, CompileError> deserializeOptionField(RecordComponent component,
+	private static Result<Object, CompileError> deserializeOptionField(RecordCodec.Component component,
+																																		 Class<?> elementClass,
 																																		 Node node,
 																																		 Set<String> consumedFields) {
-		Result<Type, CompileError> elementTypeResult = getGenericArgument(component.getGenericType());
-		if (elementTypeResult instanceof Err<Type, CompileError>(CompileError error))
-			return new Err<Object, CompileError>(error);
-		Type elementType = ((Ok<Type, CompileError>) elementTypeResult).value();
+		String fieldName = component.name();
 
-		Result<Class<?>, CompileError> elementClassResult = erase(elementType);
-		if (elementClassResult instanceof Err<Class<?>, CompileError>(CompileError error))
-			return new Err<Object, CompileError>(error);
-		Class<?> elementClass = ((Ok<Class<?>, CompileError>) elementClassResult).value();
-		String fieldName = component.getName();
-
-		if (elementClass == Slice.class) {
-			Option<Slice> direct = node.findSlice(fieldName);
-			if (direct instanceof Some<Slice>(Slice value)) {
-				consumedFields.add(fieldName);
-				return new Ok<Object, CompileError>(direct);
-			}
-			Option<Slice> nested = findSliceInChildren(node, fieldName);
-			if (nested instanceof Some<Slice>(Slice value)) {
-				consumedFields.add(fieldName);
-				return new Ok<Object, CompileError>(nested);
-			}
+		if (elementClass == Slice.class) return deserializeOptionSliceField(fieldName, node, consumedFields);
 
-			// Check if field exists but is wrong type (e.g., list when expecting slice)
-			Option<Node> wrongTypeNode = node.findNode(fieldName);
-			if (wrongTypeNode instanceof Some<Node>) return new Err<Object, CompileError>(new CompileError(
-					"Field '" + fieldName + "' of type 'Option<Slice>' found a node instead of slice in '" +
-					node.maybeType.orElse("unknown") + "'", new NodeContext(node)));
-			Option<NonEmptyList<Node>> wrongTypeList = node.findNodeList(fieldName);
-			if (wrongTypeList instanceof Some<NonEmptyList<Node>>) return new Err<Object, CompileError>(new CompileError(
-					"Field '" + fieldName + "' of type 'Option<Slice>' found a list instead of slice in '" +
-					node.maybeType.orElse("unknown") + "'",
-					new NodeContext(node)));
+		if (elementClass == String.class) return deserializeOptionStringField(fieldName, node, consumedFields);
 
-			return new Ok<Object, CompileError>(Option.empty());
+		if (NonEmptyList.class.isAssignableFrom(elementClass)) return component.innerClass()
+																																					 .flatMap(innerClass -> deserializeOptionNonEmptyListField(
+																																							 fieldName,
+																																							 innerClass,
+																																							 node,
+																																							 consumedFields));
+
+		if (List.class.isAssignableFrom(elementClass)) return component.innerClass()
+																																	 .flatMap(innerClass -> deserializeOptionListField(
+																																			 fieldName,
+																																			 innerClass,
+																																			 node,
+																																			 consumedFields));
+
+		return deserializeOptionNodeField(fieldName, elementClass, node, consumedFields);
+	}
+
+	static Result<Object, CompileError> deserializeOptionSliceField(String fieldName,
+																																	Node node,
+																																	Set<String> consumedFields) {
+		Option<Slice> direct = node.findSlice(fieldName);
+		if (direct instanceof Some<Slice>(Slice value)) {
+			consumedFields.add(fieldName);
+			return new Ok<Object, CompileError>(direct);
+		}
+		Option<Slice> nested = findSliceInChildren(node, fieldName);
+		if (nested instanceof Some<Slice>(Slice value)) {
+			consumedFields.add(fieldName);
+			return new Ok<Object, CompileError>(nested);
 		}
 
-		if (elementClass == String.class) {
-			Option<Slice> direct = node.findSlice(fieldName);
-			if (direct instanceof Some<Slice>(Slice value)) {
-				consumedFields.add(fieldName);
-				return new Ok<Object, CompileError>(new Some<String>(value.value()));
-			}
-			Option<Slice> nested = findSliceInChildren(node, fieldName);
-			if (nested instanceof Some<Slice>(Slice value)) {
-				consumedFields.add(fieldName);
-				return new Ok<Object, CompileError>(new Some<String>(value.value()));
-			}
+		// Check if field exists but is wrong type (e.g., list when expecting slice)
+		Option<Node> wrongTypeNode = node.findNode(fieldName);
+		if (wrongTypeNode instanceof Some<Node>) return new Err<Object, CompileError>(new CompileError(
+				"Field '" + fieldName + "' of type 'Option<Slice>' found a node instead of slice in '" +
+				node.maybeType.orElse("unknown") + "'", new NodeContext(node)));
+		Option<NonEmptyList<Node>> wrongTypeList = node.findNodeList(fieldName);
+		if (wrongTypeList instanceof Some<NonEmptyList<Node>>) return new Err<Object, CompileError>(new CompileError(
+				"Field '" + fieldName + "' of type 'Option<Slice>' found a list instead of slice in '" +
+				node.maybeType.orElse("unknown") + "'",
+				new NodeContext(node)));
 
-			// Check if field exists but is wrong type (e.g., list when expecting string)
-			Option<Node> wrongTypeNode = node.findNode(fieldName);
-			if (wrongTypeNode instanceof Some<Node>) return new Err<Object, CompileError>(new CompileError(
-					"Field '" + fieldName + "' of type 'Option<String>' found a node instead of string in '" +
-					node.maybeType.orElse("unknown") + "'", new NodeContext(node)));
-			Option<NonEmptyList<Node>> wrongTypeList = node.findNodeList(fieldName);
-			if (wrongTypeList instanceof Some<NonEmptyList<Node>>) return new Err<Object, CompileError>(new CompileError(
-					"Field '" + fieldName + "' of type 'Option<String>' found a list instead of string in '" +
-					node.maybeType.orElse("unknown") + "'",
-					new NodeContext(node)));
+		return new Ok<Object, CompileError>(Option.empty());
+	}
 
-			return new Ok<Object, CompileError>(Option.empty());
+	static Result<Object, CompileError> deserializeOptionStringField(String fieldName,
+																																	 Node node,
+																																	 Set<String> consumedFields) {
+		Option<Slice> direct = node.findSlice(fieldName);
+		if (direct instanceof Some<Slice>(Slice value)) {
+			consumedFields.add(fieldName);
+			return new Ok<Object, CompileError>(new Some<String>(value.value()));
+		}
+		Option<Slice> nested = findSliceInChildren(node, fieldName);
+		if (nested instanceof Some<Slice>(Slice value)) {
+			consumedFields.add(fieldName);
+			return new Ok<Object, CompileError>(new Some<String>(value.value()));
 		}
 
-		if (NonEmptyList.class.isAssignableFrom(elementClass))
-			return deserializeOptionNonEmptyListField(fieldName, elementType, node, consumedFields);
+		// Check if field exists but is wrong type (e.g., list when expecting string)
+		Option<Node> wrongTypeNode = node.findNode(fieldName);
+		if (wrongTypeNode instanceof Some<Node>) return new Err<Object, CompileError>(new CompileError(
+				"Field '" + fieldName + "' of type 'Option<String>' found a node instead of string in '" +
+				node.maybeType.orElse("unknown") + "'", new NodeContext(node)));
+		Option<NonEmptyList<Node>> wrongTypeList = node.findNodeList(fieldName);
+		if (wrongTypeList instanceof Some<NonEmptyList<Node>>) return new Err<Object, CompileError>(new CompileError(
+				"Field '" + fieldName + "' of type 'Option<String>' found a list instead of string in '" +
+				node.maybeType.orElse("unknown") + "'",
+				new NodeContext(node)));
 
-		if (List.class.isAssignableFrom(elementClass))
-			return deserializeOptionListField(fieldName, elementType, node, consumedFields);
+		return new Ok<Object, CompileError>(Option.empty());
+	}
 
+	static Result<Object, CompileError> deserializeOptionNodeField(String fieldName,
+																																 Class<?> elementClass,
+																																 Node node,
+																																 Set<String> consumedFields) {
 		Option<Node> childNode = node.findNode(fieldName);
 		if (childNode instanceof Some<Node>(Node value)) {
 			consumedFields.add(fieldName);
@@ -638,20 +655,10 @@ public class JavaSerializer {
 		} else return new Ok<Object, CompileError>(Option.empty());
 	}
 
-	private static Result<Object, CompileError> deserializeOptionListField(String fieldName,
-																																				 Type listType,
-																																				 Node node,
-																																				 Set<String> consumedFields) {
-		Result<Type, CompileError> elementTypeResult = getGenericArgument(listType);
-		if (elementTypeResult instanceof Err<Type, CompileError>(CompileError error))
-			return new Err<Object, CompileError>(error);
-		Type elementType = ((Ok<Type, CompileError>) elementTypeResult).value();
-
-		Result<Class<?>, CompileError> elementClassResult = erase(elementType);
-		if (elementClassResult instanceof Err<Class<?>, CompileError>(CompileError error))
-			return new Err<Object, CompileError>(error);
-		Class<?> elementClass = ((Ok<Class<?>, CompileError>) elementClassResult).value();
-
+	static Result<Object, CompileError> deserializeOptionListField(String fieldName,
+																																 Class<?> elementClass,
+																																 Node node,
+																																 Set<String> consumedFields) {
 		Option<NonEmptyList<Node>> maybeList = node.findNodeList(fieldName);
 		if (maybeList instanceof Some<NonEmptyList<Node>>(NonEmptyList<Node> value)) {
 			consumedFields.add(fieldName);
@@ -660,20 +667,10 @@ public class JavaSerializer {
 		} else return new Ok<Object, CompileError>(Option.empty());
 	}
 
-	private static Result<Object, CompileError> deserializeOptionNonEmptyListField(String fieldName,
-																																								 Type nonEmptyListType,
-																																								 Node node,
-																																								 Set<String> consumedFields) {
-		Result<Type, CompileError> elementTypeResult = getGenericArgument(nonEmptyListType);
-		if (elementTypeResult instanceof Err<Type, CompileError>(CompileError error))
-			return new Err<Object, CompileError>(error);
-		Type elementType = ((Ok<Type, CompileError>) elementTypeResult).value();
-
-		Result<Class<?>, CompileError> elementClassResult = erase(elementType);
-		if (elementClassResult instanceof Err<Class<?>, CompileError>(CompileError error))
-			return new Err<Object, CompileError>(error);
-		Class<?> elementClass = ((Ok<Class<?>, CompileError>) elementClassResult).value();
-
+	static Result<Object, CompileError> deserializeOptionNonEmptyListField(String fieldName,
+																																				 Class<?> elementClass,
+																																				 Node node,
+																																				 Set<String> consumedFields) {
 		Option<NonEmptyList<Node>> maybeList = node.findNodeList(fieldName);
 		if (maybeList instanceof Some<NonEmptyList<Node>>(NonEmptyList<Node> value)) {
 			consumedFields.add(fieldName);
@@ -691,20 +688,10 @@ public class JavaSerializer {
 		return new Ok<Object, CompileError>(Option.empty());
 	}
 
-	private static Result<Object, CompileError> deserializeNonEmptyListField(RecordComponent component,
-																																					 Node node,
-																																					 Set<String> consumedFields) {
-		String fieldName = component.getName();
-		Result<Type, CompileError> elementTypeResult = getGenericArgument(component.getGenericType());
-		if (elementTypeResult instanceof Err<Type, CompileError>(CompileError error))
-			return new Err<Object, CompileError>(error);
-		Type elementType = ((Ok<Type, CompileError>) elementTypeResult).value();
-
-		Result<Class<?>, CompileError> elementClassResult = erase(elementType);
-		if (elementClassResult instanceof Err<Class<?>, CompileError>(CompileError error))
-			return new Err<Object, CompileError>(error);
-		Class<?> elementClass = ((Ok<Class<?>, CompileError>) elementClassResult).value();
-
+	static Result<Object, CompileError> deserializeNonEmptyListField(String fieldName,
+																																	 Class<?> elementClass,
+																																	 Node node,
+																																	 Set<String> consumedFields) {
 		Option<NonEmptyList<Node>> maybeList = node.findNodeList(fieldName);
 		if (maybeList instanceof Some<NonEmptyList<Node>>(NonEmptyList<Node> value)) {
 			consumedFields.add(fieldName);
@@ -728,20 +715,10 @@ public class JavaSerializer {
 				"Required component '" + fieldName + "' of type 'NonEmptyList' not present", new NodeContext(node)));
 	}
 
-	private static Result<Object, CompileError> deserializeListField(RecordComponent component,
-																																	 Node node,
-																																	 Set<String> consumedFields) {
-		String fieldName = component.getName();
-		Result<Type, CompileError> elementTypeResult = getGenericArgument(component.getGenericType());
-		if (elementTypeResult instanceof Err<Type, CompileError>(CompileError error))
-			return new Err<Object, CompileError>(error);
-		Type elementType = ((Ok<Type, CompileError>) elementTypeResult).value();
-
-		Result<Class<?>, CompileError> elementClassResult = erase(elementType);
-		if (elementClassResult instanceof Err<Class<?>, CompileError>(CompileError error))
-			return new Err<Object, CompileError>(error);
-		Class<?> elementClass = ((Ok<Class<?>, CompileError>) elementClassResult).value();
-
+	static Result<Object, CompileError> deserializeListField(String fieldName,
+																													 Class<?> elementClass,
+																													 Node node,
+																													 Set<String> consumedFields) {
 		Option<NonEmptyList<Node>> maybeList = node.findNodeList(fieldName);
 		if (maybeList instanceof Some<NonEmptyList<Node>>(NonEmptyList<Node> value)) {
 			consumedFields.add(fieldName);
@@ -786,9 +763,8 @@ public class JavaSerializer {
 	}
 
 	// Pure helper functions
-	private static Node createNodeWithType(Class<?> type) {
+	static Node createNodeWithType(Option<String> typeId) {
 		Node node = new Node();
-		Option<String> typeId = resolveTypeIdentifier(type);
 		if (typeId instanceof Some<String>(String value)) node.retype(value);
 		return node;
 	}
@@ -806,34 +782,15 @@ public class JavaSerializer {
 		return result;
 	}
 
-	private static Result<Type, CompileError> getGenericArgument(Type type) {
-		if (type instanceof ParameterizedType parameterized) {
-			Type[] args = parameterized.getActualTypeArguments();
-			if (args.length > 0) return new Ok<Type, CompileError>(args[0]);
-		}
-
-		return new Err<Type, CompileError>(new CompileError("Type " + type + " does not have generic argument at index 0",
-																												createContext(type.toString())));
-	}
-
-	private static Result<Class<?>, CompileError> erase(Type type) {
-		if (type instanceof Class<?> clazz) return new Ok<Class<?>, CompileError>(clazz);
-		if (type instanceof ParameterizedType parameterized && parameterized.getRawType() instanceof Class<?> raw)
-			return new Ok<Class<?>, CompileError>(raw);
-
-		return new Err<Class<?>, CompileError>(new CompileError("Cannot erase type '" + type + "'",
-																														createContext(type.toString())));
-	}
-
 	private static Option<String> resolveTypeIdentifier(Class<?> clazz) {
 		Tag annotation = clazz.getAnnotation(Tag.class);
 		if (Objects.isNull(annotation)) return Option.empty();
 		return Option.of(annotation.value());
 	}
 
-	private static Option<Slice> findSliceInChildren(Node node, String key) {
+	static Option<Slice> findSliceInChildren(Node node, String key) {
 		{
-			Iterator<Node> iterator = node.nodes.values().iterator();
+			Iterator<Node> iterator = node.getNodes().iterator();
 			while (iterator.hasNext()) {
 				Node child = iterator.next();
 				Option<Slice> result = child.findSlice(key);
@@ -846,7 +803,7 @@ public class JavaSerializer {
 	}
 
 	private static Option<Slice> findSliceInNodeLists(Node node, String key) {
-		Iterator<NonEmptyList<Node>> iterator = node.nodeLists.values().iterator();
+		Iterator<NonEmptyList<Node>> iterator = node.getNodeLists().iterator();
 		while (iterator.hasNext()) {
 			List<Node> children = iterator.next().toList();
 			Option<Slice> result = searchChildrenList(children, key);
@@ -888,8 +845,8 @@ public class JavaSerializer {
 		// Collect all field names from the Node
 		Set<String> allFields = new HashSet<String>();
 		allFields.addAll(getStringKeys(node));
-		allFields.addAll(node.nodes.keySet());
-		allFields.addAll(node.nodeLists.keySet());
+		allFields.addAll(node.getNodeKeys());
+		allFields.addAll(node.getNodeListKeys());
 
 		// Find fields that were not consumed
 		Set<String> leftoverFields = new HashSet<String>(allFields);
@@ -13,6 +13,8 @@ import magma.compile.rule.InfixSplitter;
 import magma.compile.rule.LastLocator;
 import magma.compile.rule.LazyRule;
 import magma.compile.rule.NodeRule;
+import magma.compile.rule.OperatorFolder;
+import magma.compile.rule.OperatorRule;
 import magma.compile.rule.OptionalNodeListRule;
 import magma.compile.rule.Rule;
 import magma.compile.rule.Slice;
@@ -32,6 +34,7 @@ import static magma.compile.rule.DividingSplitter.KeepLast;
 import static magma.compile.rule.EmptyRule.Empty;
 import static magma.compile.rule.NodeListRule.*;
 import static magma.compile.rule.NodeRule.Node;
+import static magma.compile.rule.OperatorRule.Operators;
 import static magma.compile.rule.OrRule.Or;
 import static magma.compile.rule.PlaceholderRule.Placeholder;
 import static magma.compile.rule.PrefixRule.Prefix;
@@ -42,6 +45,15 @@ import static magma.compile.rule.SuffixRule.Suffix;
 import static magma.compile.rule.TagRule.Tag;
 
 public class Lang {
+	// Built once, in this order, when the class is initialized; the JVM does that exactly once and publishes the rules
+	// to all threads. Rules are not modified after they are built, so every compilation shares them.
+	private static final Rule C_TYPE = BuildCType();
+	private static final Rule C_DEFINITION = Last(Node("type", C_TYPE), " ", new StringRule("name"));
+	private static final MethodRules METHOD_RULES = BuildMethodRules();
+	private static final Rule J_ROOT = BuildJRoot();
+
+	private record MethodRules(Rule segment, Rule expression) {}
+
 	sealed public interface JavaRootSegment permits Invalid, Import, JStructure, Package, Whitespace, BlockComment {}
 
 	sealed public interface CRootSegment permits Invalid, CStructure, CFunction {
@@ -277,8 +289,8 @@ public class Lang {
 
 	@Tag("class")
 	public record JClass(Option<Slice> modifiers, Slice name, List<JStructureSegment> children,
-											 Option<NonEmptyList<Identifier>> typeParameters, Option<List<JType>> interfaces)
-			implements JStructure {}
+											 Option<NonEmptyList<Identifier>> typeParameters, Option<List<JType>> interfaces,
+											 Option<List<JType>> superclasses) implements JStructure {}
 
 	@Tag("interface")
 	public record Interface(Option<Slice> modifiers, Slice name, List<JStructureSegment> children,
@@ -377,6 +389,11 @@ public class Lang {
 			return appended;
 		}
 
+		@Override
+		public Option<String> significantChars() {
+			return Option.of(String.valueOf(open) + close);
+		}
+
 		@Override
 		public String delimiter() {
 			return "";
@@ -425,6 +442,11 @@ public class Lang {
 			return state.append(c);
 		}
 
+		@Override
+		public Option<String> significantChars() {
+			return Option.of("()");
+		}
+
 		@Override
 		public String delimiter() {
 			return "";
@@ -452,28 +474,6 @@ public class Lang {
 	@Tag("number")
 	public record NumberNode(Slice number) implements JExpression {}
 
-	private record OperatorFolder(Slice operator) implements Folder {
-		@Override
-		public DivideState fold(DivideState state, char c) {
-			if (c == operator.value().charAt(0)) {
-				if (operator.value().length() > 1 && state.peek() instanceof Some<Character>(Character next) &&
-						next == operator.value().charAt(1)) {
-					state.pop();
-					return state.advance();
-				}
-
-				return state.advance();
-			}
-
-			return state.append(c);
-		}
-
-		@Override
-		public String delimiter() {
-			return operator.value();
-		}
-	}
-
 	@Tag("segment")
 	public record QualifiedSegment(Slice value) {}
 
@@ -505,19 +505,23 @@ public class Lang {
 	}
 
 	public static Rule CDefinition() {
-		return Last(Node("type", CType()), " ", new StringRule("name"));
+		return C_DEFINITION;
 	}
 
 	private static Rule CType() {
+		return C_TYPE;
+	}
+
+	private static Rule BuildCType() {
 		final LazyRule rule = new LazyRule();
 		// Function pointer: returnType (*)(paramType1, paramType2, ...)
 		final Rule funcPtr =
 				Tag("functionPointer", Suffix(First(Node("returnType", rule), " (*)(", Expressions("paramTypes", rule)), ")"));
-		rule.set(Or(funcPtr,
-								CommonRules.Identifier(),
-								Tag("pointer", Suffix(Node("child", rule), "*")),
+		rule.set(Or(Invalid(),
 								CTemplate(rule),
-								Invalid()));
+								Tag("pointer", Suffix(Node("child", rule), "*")),
+								CommonRules.Identifier(),
+								funcPtr));
 		return rule;
 	}
 
@@ -532,7 +536,7 @@ public class Lang {
 		// declaration
 		final Rule plainName = CommonRules.StrippedIdentifier("name");
 		final Rule structPrefix = Prefix("struct ", plainName);
-		final Rule fields = Or(Statements("fields", Suffix(CDefinition(), ";")), Empty);
+		final Rule fields = Or(Empty, Statements("fields", Suffix(CDefinition(), ";")));
 		final Rule structWithFields = Suffix(First(structPrefix, " {", fields), "}");
 		final Rule structComplete = Suffix(structWithFields, ";");
 
@@ -545,15 +549,19 @@ public class Lang {
 	}
 
 	public static Rule JRoot() {
+		return J_ROOT;
+	}
+
+	private static Rule BuildJRoot() {
 		final Rule segment =
-				Or(Namespace("package"), Namespace("import"), Structures(JStructureSegment()), BlockComment(), Whitespace());
+				Or(Whitespace(), BlockComment(), Structures(JStructureSegment()), Namespace("import"), Namespace("package"));
 		return Statements("children", segment);
 	}
 
 	private static Rule Structures(Rule structureMember) {
-		return Or(JStructure("class", structureMember),
+		return Or(JStructure("record", structureMember),
 							JStructure("interface", structureMember),
-							JStructure("record", structureMember));
+							JStructure("class", structureMember));
 	}
 
 	public static Rule Whitespace() {
@@ -570,20 +578,20 @@ public class Lang {
 		final Rule maybeWithTypeArguments = NameWithTypeParameters();
 
 		final Rule maybeWithParameters =
-				Strip(Or(Suffix(First(maybeWithTypeArguments, "(", Parameters()), ")"), maybeWithTypeArguments));
+				Strip(Or(maybeWithTypeArguments, Suffix(First(maybeWithTypeArguments, "(", Parameters()), ")")));
 
 		final Rule maybeWithParameters1 =
-				Or(Last(maybeWithParameters, "extends", Expressions("superclasses", JRules.JType())), maybeWithParameters);
+				Or(maybeWithParameters, Last(maybeWithParameters, "extends", Expressions("superclasses", JRules.JType())));
 
 		final Rule beforeContent =
-				Or(Last(maybeWithParameters1, "implements", Expressions("interfaces", JRules.JType())), maybeWithParameters1);
+				Or(maybeWithParameters1, Last(maybeWithParameters1, "implements", Expressions("interfaces", JRules.JType())));
 
 		final Rule children = Statements("children", rule);
 
 		final Rule beforeContent1 =
-				Or(Last(beforeContent, "permits", Delimited("variants", JRules.JType(), ",")), beforeContent);
+				Or(beforeContent, Last(beforeContent, "permits", Delimited("variants", JRules.JType(), ",")));
 
-		final Rule strip = Strip(Or(modifiers, Empty));
+		final Rule strip = Strip(Or(Empty, modifiers));
 		final Rule first = First(strip, type + " ", beforeContent1);
 		final Rule aClass = Split(first, new DividingSplitter(new FoldingDivider(new BraceStartFolder())), children);
 		return Tag(type, Strip(Suffix(aClass, "}")));
@@ -593,17 +601,17 @@ public class Lang {
 		final Rule name = CommonRules.StrippedIdentifier("name");
 		final Rule withTypeParameters =
 				Suffix(First(name, "<", Expressions("typeParameters", CommonRules.Identifier())), ">");
-		return Strip(Or(withTypeParameters, name));
+		return Strip(Or(name, withTypeParameters));
 	}
 
 	private static Rule JStructureSegment() {
 		final LazyRule structureMember = new LazyRule();
-		structureMember.set(Or(Structures(structureMember),
-													 Statement(),
-													 JMethod(),
-													 LineComment(),
+		structureMember.set(Or(Whitespace(),
 													 BlockComment(),
-													 Whitespace()));
+													 LineComment(),
+													 JMethod(),
+													 Statement(),
+													 Structures(structureMember)));
 		return structureMember;
 	}
 
@@ -616,39 +624,43 @@ public class Lang {
 	}
 
 	private static Rule Statement() {
-		final Rule initialization = Initialization(JRules.JDefinition(), JExpression(JMethodSegment()));
-		return Strip(Suffix(Or(initialization, JRules.JDefinition()), ";"));
+		final Rule initialization = Initialization(JRules.JDefinition(), METHOD_RULES.expression());
+		return Strip(Suffix(Or(JRules.JDefinition(), initialization), ";"));
 	}
 
 	private static Rule JMethod() {
 		Rule params = Parameters();
 		final Rule header = Strip(Suffix(Last(Node("definition", JRules.JDefinition()), "(", params), ")"));
 		final Rule withBody = Suffix(First(header, "{", Statements("body", JMethodSegment())), "}");
-		return Tag("method", Strip(Or(Suffix(header, ";"), withBody)));
+		return Tag("method", Strip(Or(withBody, Suffix(header, ";"))));
 	}
 
 	public static Rule JMethodSegment() {
+		return METHOD_RULES.segment();
+	}
+
+	// The statement and expression grammars refer to each other, so they are built together.
+	private static MethodRules BuildMethodRules() {
 		final LazyRule methodSegment = new LazyRule();
 		final Rule expression = JExpression(methodSegment);
 		Rule inner = JRules.JDefinition();
-		methodSegment.set(Strip(Or(LineComment(),
-															 Switch("statement", expression, methodSegment),
-															 Conditional("if", expression, methodSegment),
-															 Conditional("while", expression, methodSegment),
-															 Else(methodSegment),
-															 Try(methodSegment),
-															 QuantityBlock("catch", "definition", inner, methodSegment),
-															 Block(methodSegment),
+		methodSegment.set(Strip(Or(Whitespace(),
+															 Strip(Suffix(JMethodStatementValue(expression), ";")),
 															 BlockComment(),
-															 Strip(Suffix(JMethodStatementValue(methodSegment), ";")),
-															 Whitespace())));
-		return methodSegment;
+															 Block(methodSegment),
+															 QuantityBlock("catch", "definition", inner, methodSegment),
+															 Try(methodSegment, expression),
+															 Else(methodSegment),
+															 Conditional("while", expression, methodSegment),
+															 Conditional("if", expression, methodSegment),
+															 Switch("statement", expression, methodSegment),
+															 LineComment())));
+		return new MethodRules(methodSegment, expression);
 	}
 
-	private static Rule Try(LazyRule methodSegment) {
+	private static Rule Try(LazyRule methodSegment, Rule value) {
 		final Rule child = Node("child", methodSegment);
 		Rule definition = JRules.JDefinition();
-		Rule value = JExpression(methodSegment);
 		final Rule definition1 = Node("definition", definition);
 		final Rule value1 = Node("value", value);
 		final Rule resource = Node("resource", First(Or(Tag("initialization", definition1)), "=", value1));
@@ -656,22 +668,21 @@ public class Lang {
 		final Rule withResource =
 				new ContextRule("With resource", Strip(Prefix("(", new SplitRule(resource, child, splitter, new LeftFirst()))));
 		final ContextRule withoutResource = new ContextRule("Without resource", child);
-		return Tag("try", Prefix("try ", Or(withResource, withoutResource)));
+		return Tag("try", Prefix("try ", Or(withoutResource, withResource)));
 	}
 
 	public static Rule Block(LazyRule rule) {
 		return Tag("block", Strip(Prefix("{", Suffix(Statements("children", rule), "}"))));
 	}
 
-	private static Rule JMethodStatementValue(Rule statement) {
-		final Rule expression = JExpression(statement);
-		return Or(Break(),
-							PostFix(expression),
-							Return(expression),
-							Yield(expression),
-							Initialization(JRules.JDefinition(), expression),
+	private static Rule JMethodStatementValue(Rule expression) {
+		return Or(Invokable(expression),
 							JRules.JDefinition(),
-							Invokable(expression));
+							Initialization(JRules.JDefinition(), expression),
+							Yield(expression),
+							Return(expression),
+							PostFix(expression),
+							Break());
 	}
 
 	public static Rule Break() {
@@ -685,18 +696,18 @@ public class Lang {
 	public static Rule Initialization(Rule definition, Rule value) {
 		final Rule definition1 = Node("definition", definition);
 		final Rule value1 = Node("value", value);
-		return First(Or(Tag("initialization", definition1), Tag("assignment", Node("location", value))), "=", value1);
+		return First(Or(Tag("assignment", Node("location", value)), Tag("initialization", definition1)), "=", value1);
 	}
 
 	private static Rule Invokable(Rule expression) {
-		return Or(Invocation(expression),
-							Invokable("construction", Strip(Prefix("new ", Node("type", CType()))), expression));
+		return Or(Invokable("construction", Strip(Prefix("new ", Node("type", CType()))), expression),
+							Invocation(expression));
 	}
 
 	private static Rule Invokable(String type, Rule caller, Rule expression) {
-		final Rule arguments = Or(Expressions("arguments", expression), Empty);
+		final Rule arguments = Or(Empty, Expressions("arguments", expression));
 		FoldingDivider divider = new FoldingDivider(new EscapingFolder(new InvocationFolder('(', ')')));
-		final Rule suffix = Strip(Suffix(Or(arguments, Whitespace()), String.valueOf(')')));
+		final Rule suffix = Strip(Suffix(Or(Whitespace(), arguments), String.valueOf(')')));
 		return Tag(type, Split(Suffix(caller, String.valueOf('(')), KeepLast(divider), suffix));
 	}
 
@@ -728,33 +739,35 @@ public class Lang {
 
 	public static Rule JExpression(Rule statement) {
 		final LazyRule expression = new LazyRule();
-		expression.set(Or(JLambda(statement, expression),
-											Char(),
-											Tag("cast",
-													Strip(Prefix("(", First(Node("type", JRules.JType()), ")", Node("child", expression))))),
-											Tag("quantity", Strip(Prefix("(", Suffix(Node("child", expression), ")")))),
-											Tag("not", Strip(Prefix("!", Node("child", expression)))),
-											StringExpr(),
-											Switch("expr", expression, CaseExprValue(statement, expression)),
+		expression.set(Or(Number(),
+											CommonRules.Identifier(),
+											Operators(Node("left", expression),
+																Node("right", expression),
+																OperatorRule.Operator("greater-than-equals", ">="),
+																OperatorRule.Operator("greater-than", ">"),
+																OperatorRule.Operator("less-than-equals", "<="),
+																OperatorRule.Operator("less-than", "<"),
+																OperatorRule.Operator("not-equals", "!="),
+																OperatorRule.Operator("equals", "=="),
+																OperatorRule.Operator("or", "||"),
+																OperatorRule.Operator("and", "&&"),
+																OperatorRule.Operator("subtract", "-"),
+																OperatorRule.Operator("add", "+")),
+											InstanceOf(expression),
+											MethodAccess(expression),
+											FieldAccess(expression),
+											Invokable(expression),
 											Index(expression),
 											NewArray(expression),
 											Index(expression),
-											Invokable(expression),
-											FieldAccess(expression),
-											MethodAccess(expression),
-											InstanceOf(expression),
-											Operator("add", "+", expression),
-											Operator("subtract", "-", expression),
-											Operator("and", "&&", expression),
-											Operator("or", "||", expression),
-											Operator("equals", "==", expression),
-											Operator("not-equals", "!=", expression),
-											Operator("less-than", "<", expression),
-											Operator("less-than-equals", "<=", expression),
-											Operator("greater-than", ">", expression),
-											Operator("greater-than-equals", ">=", expression),
-											CommonRules.Identifier(),
-											Number()));
+											Switch("expr", expression, CaseExprValue(statement, expression)),
+											StringExpr(),
+											Tag("not", Strip(Prefix("!", Node("child", expression)))),
+											Tag("quantity", Strip(Prefix("(", Suffix(Node("child", expression), ")")))),
+											Tag("cast",
+													Strip(Prefix("(", First(Node("type", JRules.JType()), ")", Node("child", expression))))),
+											Char(),
+											JLambda(statement, expression)));
 		return expression;
 	}
 
@@ -771,19 +784,19 @@ public class Lang {
 		final Rule withoutArguments = Suffix(First(type, "[", Node("value", tag1)), "]");
 		final Rule withArguments = Strip(First(type, "[]{", Node("value", tag)));
 
-		return Tag("new-array", Strip(Prefix("new ", Or(withoutArguments, withArguments))));
+		return Tag("new-array", Strip(Prefix("new ", Or(withArguments, withoutArguments))));
 	}
 
 	private static Rule MethodAccess(LazyRule expression) {
 		final Rule exprSource = Tag("expr-method-access-source", Node("child", expression));
 		final Rule child = Tag("type-method-access-source", Node("child", JRules.JType()));
 		return Tag("method-access",
-							 Last(Node("source", Or(exprSource, child)), "::", CommonRules.StrippedIdentifier("name")));
+							 Last(Node("source", Or(child, exprSource)), "::", CommonRules.StrippedIdentifier("name")));
 	}
 
 	private static Rule CaseExprValue(Rule statement, LazyRule expression) {
-		return Or(Tag("expr-case-expr-value", Node("expression", Strip(Suffix(expression, ";")))),
-							Tag("statement-case-expr-value", Node("statement", statement)));
+		return Or(Tag("statement-case-expr-value", Node("statement", statement)),
+							Tag("expr-case-expr-value", Node("expression", Strip(Suffix(expression, ";")))));
 	}
 
 	public static Rule Char() {
@@ -795,17 +808,17 @@ public class Lang {
 		final Rule expressions = Tag("multiple", Expressions("params", CommonRules.StrippedIdentifier("param")));
 		final Rule tag = Tag("none", Empty);
 
-		final Rule strip = Or(Strip(Prefix("(", Suffix(Or(expressions, tag), ")"))), param);
+		final Rule strip = Or(param, Strip(Prefix("(", Suffix(Or(tag, expressions), ")"))));
 		final Rule child = Node("child",
-														Or(Tag("statement-lambda-value", Node("child", statement)),
-															 Tag("expr-lambda-value", Node("child", expression))));
+														Or(Tag("expr-lambda-value", Node("child", expression)),
+															 Tag("statement-lambda-value", Node("child", statement))));
 
 		return Tag("lambda", First(Node("params", strip), "->", child));
 	}
 
 	private static Rule InstanceOf(LazyRule expression) {
 		final Rule strip = Destruct();
-		Rule type = Node("target", Or(JRules.JDefinition(), JRules.JType(), strip));
+		Rule type = Node("target", Or(strip, JRules.JType(), JRules.JDefinition()));
 		return Tag("instanceof", Last(Node("child", expression), "instanceof", type));
 	}
 
@@ -826,7 +839,7 @@ public class Lang {
 	}
 
 	public static Rule StringExpr() {
-		return Tag("string", Strip(Prefix("\"", Suffix(Or(String("content"), Empty), "\""))));
+		return Tag("string", Strip(Prefix("\"", Suffix(Or(Empty, String("content")), "\""))));
 	}
 
 	public static Rule Operator(String type, String infix, LazyRule expression) {
@@ -838,16 +851,16 @@ public class Lang {
 	}
 
 	private static Rule Switch(String group, Rule expression, Rule rule) {
-		final Rule cases = Statements("cases", Strip(Or(Case(group, rule, expression), Empty)));
+		final Rule cases = Statements("cases", Strip(Or(Empty, Case(group, rule, expression))));
 		final Rule value = Prefix("(", Suffix(Node("value", expression), ")"));
 		return Tag("switch-" + group, Strip(Prefix("switch ", Suffix(First(Strip(value), "{", cases), "}"))));
 	}
 
 	private static Rule Case(String group, Rule rule, Rule expression) {
-		Rule target = Node("target", Or(JRules.JDefinition(), Destruct()));
+		Rule target = Node("target", Or(Destruct(), JRules.JDefinition()));
 		final Rule defaultCase = Strip(Prefix("default", Empty));
 		final Rule withWhen = Last(target, "when", Node("when", expression));
-		Rule value = First(Or(defaultCase, Prefix("case", Or(withWhen, target))), "->", Node("value", rule));
+		Rule value = First(Or(Prefix("case", Or(target, withWhen)), defaultCase), "->", Node("value", rule));
 		return Tag("case-" + group, value);
 	}
 
@@ -860,6 +873,6 @@ public class Lang {
 	}
 
 	private static Rule Parameters() {
-		return Expressions("params", Or(JRules.JDefinition(), Whitespace()));
+		return Expressions("params", Or(Whitespace(), JRules.JDefinition()));
 	}
 }
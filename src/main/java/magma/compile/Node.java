@@ -7,17 +7,39 @@ import magma.option.None;
 import magma.option.Option;
 import magma.option.Some;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+/**
+ * A lexed tree node: an optional type tag and named fields, each holding a slice, a child node or a non-empty list of
+ * child nodes. A slice and a child may share a name.
+ * <p>
+ * The fields are kept in two flat arrays rather than maps, since most nodes hold one to four fields. Field names are
+ * interned once to small integer IDs by {@link FieldNames}, and a slot stores the ID shifted left by two bits together
+ * with the kind of the field, so looking up a field compares integers. The arrays are allocated on the first field and
+ * grow by doubling.
+ */
 public final class Node {
 	private static final int MAX_FORMAT_LEVEL = 3;
-	public final Map<String, NonEmptyList<Node>> nodeLists = new HashMap<String, NonEmptyList<Node>>();
-	public final Map<String, Node> nodes = new HashMap<String, Node>();
-	private final Map<String, Slice> slices = new HashMap<String, Slice>();
-	public Option<String> maybeType = Option.empty();
+	static final int SLICE = 0;
+	static final int NODE = 1;
+	static final int LIST = 2;
+	private static final int KIND_MASK = 3;
+	private static final int[] NO_SLOTS = new int[0];
+	private static final Object[] NO_VALUES = new Object[0];
+	private static final Option<String> UNTYPED = new None<String>();
+	private static final Option<Object> NO_RECORD = new None<Object>();
+	public Option<String> maybeType = UNTYPED;
+	// The record built from this node while it was lexed, see RecordFusion. Any change to the node discards it.
+	private Option<Object> decoded = NO_RECORD;
+	private int[] slots = NO_SLOTS;
+	private Object[] values = NO_VALUES;
+	private int size = 0;
 
 	private static String escape(String value) {
 		return value.replace("\\", "\\\\")
@@ -27,60 +49,227 @@ public final class Node {
 								.replace("\t", "\\t");
 	}
 
+	private static int slotOf(String key, int kind) {
+		return (FieldNames.idOf(key) << 2) | kind;
+	}
+
+	private static String nameOf(int slot) {
+		return FieldNames.nameOf(idOf(slot));
+	}
+
+	private static int idOf(int slot) {
+		return slot >> 2;
+	}
+
+	private static int kindOf(int slot) {
+		return slot & KIND_MASK;
+	}
+
+	// The value is a Slice, a Node or a NonEmptyList<Node>, by kind.
+	interface FieldVisitor {
+		void visit(int name, int kind, Object value);
+	}
+
 	@Override
 	public String toString() {
 		return format(0);
 	}
 
 	public Node withSlice(String key, Slice value) {
-		slices.put(key, value);
-		return this;
+		return with(key, SLICE, value);
 	}
 
 	public Option<Slice> findSlice(String key) {
-		return Option.ofNullable(slices.get(key));
+		return find(key, SLICE);
 	}
 
 	public Node merge(Node node) {
+		// Merging into an empty node copies the other node, so its record is still valid.
+		if (isEmpty()) decoded = node.decoded;
+		else decoded = NO_RECORD;
 		maybeType = switch (maybeType) {
 			case None<String> _ -> node.maybeType;
 			case Some<String> _ -> maybeType;
 		};
-		this.slices.putAll(node.slices);
-		nodeLists.putAll(node.nodeLists);
-		nodes.putAll(node.nodes);
+		int i = 0;
+		while (i < node.size) {
+			store(node.slots[i], node.values[i]);
+			i++;
+		}
 		return this;
 	}
 
 	public Node withNodeList(String key, NonEmptyList<Node> values) {
-		nodeLists.put(key, values);
-		return this;
+		return with(key, LIST, values);
 	}
 
 	public Option<NonEmptyList<Node>> findNodeList(String key) {
-		return Option.ofNullable(nodeLists.get(key));
+		return find(key, LIST);
 	}
 
 	public Node withNode(String key, Node node) {
-		nodes.put(key, node);
-		return this;
+		return with(key, NODE, node);
 	}
 
 	public Option<Node> findNode(String key) {
-		return Option.ofNullable(nodes.get(key));
+		return find(key, NODE);
 	}
 
 	public Node retype(String type) {
+		decoded = NO_RECORD;
 		this.maybeType = Option.of(type);
 		return this;
 	}
 
+	public Node withRecord(Object value) {
+		decoded = Option.of(value);
+		return this;
+	}
+
+	public Option<Object> findRecord() {
+		return decoded;
+	}
+
+	private Node with(String key, int kind, Object value) {
+		decoded = NO_RECORD;
+		store(slotOf(key, kind), value);
+		return this;
+	}
+
+	private void store(int slot, Object value) {
+		final int index = indexOf(slot);
+		if (index < size) values[index] = value;
+		else append(slot, value);
+	}
+
+	private void append(int slot, Object value) {
+		if (size == slots.length) {
+			final int capacity = Math.max(2, size + size);
+			slots = Arrays.copyOf(slots, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		slots[size] = slot;
+		values[size] = value;
+		size++;
+	}
+
+	// The index of the slot, or size when the node does not have it.
+	private int indexOf(int slot) {
+		int i = 0;
+		while (i < size && slots[i] != slot) i++;
+		return i;
+	}
+
+	/**
+	 * Calls {@code visitor} with each field, in the order the fields were first set.
+	 */
+	void forEachField(FieldVisitor visitor) {
+		int i = 0;
+		while (i < size) {
+			visitor.visit(idOf(slots[i]), kindOf(slots[i]), values[i]);
+			i++;
+		}
+	}
+
+	/**
+	 * The number of nodes in the tree under this node, this node included.
+	 */
+	public int count() {
+		int count = 1;
+		int i = 0;
+		while (i < size) {
+			count = count + countIn(kindOf(slots[i]), values[i]);
+			i++;
+		}
+		return count;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static int countIn(int kind, Object value) {
+		if (kind == NODE) return ((Node) value).count();
+		if (kind == LIST) return ((NonEmptyList<Node>) value).stream().fold(0, (count, node) -> count + node.count());
+		return 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> Option<T> find(String key, int kind) {
+		if (!(FieldNames.find(key) instanceof Some<Integer>(Integer id))) return new None<T>();
+		final int index = indexOf((id << 2) | kind);
+		if (index == size) return new None<T>();
+		return new Some<T>((T) values[index]);
+	}
+
+	private boolean isEmpty() {
+		return maybeType instanceof None<String> && size == 0;
+	}
+
 	public boolean is(String type) {
 		return this.maybeType.map(inner -> inner.equals(type)).orElse(false);
 	}
 
 	public Set<String> getStringKeys() {
-		return slices.keySet();
+		return keys(SLICE);
+	}
+
+	public Set<String> getNodeKeys() {
+		return keys(NODE);
+	}
+
+	public Set<String> getNodeListKeys() {
+		return keys(LIST);
+	}
+
+	/**
+	 * The child nodes, in the order their fields were first set.
+	 */
+	public java.util.List<Node> getNodes() {
+		return nodeEntries().map(Entry::getValue).toList();
+	}
+
+	/**
+	 * The child node lists, in the order their fields were first set.
+	 */
+	public java.util.List<NonEmptyList<Node>> getNodeLists() {
+		return listEntries().map(Entry::getValue).toList();
+	}
+
+	/**
+	 * Whether every slice, child node and child node list of this node is named in the set for its kind.
+	 */
+	public boolean isWithin(Set<String> slices, Set<String> nodes, Set<String> lists) {
+		int i = 0;
+		while (i < size && isNamedIn(slots[i], slices, nodes, lists)) i++;
+		return i == size;
+	}
+
+	private static boolean isNamedIn(int slot, Set<String> slices, Set<String> nodes, Set<String> lists) {
+		final int kind = kindOf(slot);
+		if (kind == SLICE) return slices.contains(nameOf(slot));
+		if (kind == NODE) return nodes.contains(nameOf(slot));
+		return lists.contains(nameOf(slot));
+	}
+
+	private Set<String> keys(int kind) {
+		return entries(kind).map(Entry::getKey).collect(Collectors.toSet());
+	}
+
+	private Stream<Entry<String, Slice>> sliceEntries() {
+		return entries(SLICE);
+	}
+
+	private Stream<Entry<String, Node>> nodeEntries() {
+		return entries(NODE);
+	}
+
+	private Stream<Entry<String, NonEmptyList<Node>>> listEntries() {
+		return entries(LIST);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> Stream<Entry<String, T>> entries(int kind) {
+		return IntStream.range(0, size)
+										.filter(index -> kindOf(slots[index]) == kind)
+										.mapToObj(index -> Map.entry(nameOf(slots[index]), (T) values[index]));
 	}
 
 	public String format(int depth) {
@@ -106,20 +295,17 @@ public final class Node {
 			hasFields[0] = true;
 		}
 
-		slices.entrySet()
-					.stream()
-					.sorted(Entry.comparingByKey())
-					.forEach(entry -> appendSliceEntry(entry, hasFields, builder, childIndent));
+		sliceEntries()
+				.sorted(Entry.comparingByKey())
+				.forEach(entry -> appendSliceEntry(entry, hasFields, builder, childIndent));
 
-		nodes.entrySet()
-				 .stream()
-				 .sorted(Entry.comparingByKey())
-				 .forEach(entry -> extracted(indentDepth, level, maxLevel, entry, hasFields, builder, childIndent));
+		nodeEntries()
+				.sorted(Entry.comparingByKey())
+				.forEach(entry -> extracted(indentDepth, level, maxLevel, entry, hasFields, builder, childIndent));
 
-		nodeLists.entrySet()
-						 .stream()
-						 .sorted(Entry.comparingByKey())
-						 .forEach(entry -> extracted1(indentDepth, level, maxLevel, entry, hasFields, builder, childIndent));
+		listEntries()
+				.sorted(Entry.comparingByKey())
+				.forEach(entry -> extracted1(indentDepth, level, maxLevel, entry, hasFields, builder, childIndent));
 
 		if (hasFields[0]) builder.append("\n").append(indent);
 		builder.append("}");
@@ -196,6 +382,6 @@ public final class Node {
 	}
 
 	public boolean hasNodeList(String key) {
-		return nodeLists.containsKey(key);
+		return findNodeList(key) instanceof Some<NonEmptyList<Node>>;
 	}
 }
@@ -0,0 +1,302 @@
+package magma.compile;
+
+import magma.compile.context.InputContext;
+import magma.compile.error.CompileError;
+import magma.compile.rule.Slice;
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
+import magma.result.Err;
+import magma.result.Ok;
+import magma.result.Result;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandleProxies;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.function.Function;
+
+/**
+ * What {@link JavaSerializer} needs to know about a record class, worked out once per class and kept in a
+ * {@link ClassValue}: its {@link Tag}, its components in declaration order, and how to call its canonical constructor
+ * and its accessors.
+ * <p>
+ * When the compiler was built with {@code RecordProcessor}, a record it generated code for is described without
+ * reflection, its constructor and accessors are called by the generated code, and so are the serializer and
+ * deserializer generated for it. Any other record is reflected on
+ * once, and called through a {@link MethodHandle} for the constructor and each accessor, adapted to {@code Object}
+ * parameters so that {@code invokeExact} works without knowing the record. {@code -Dmagma.generated=false} ignores the
+ * generated code.
+ * <p>
+ * The generic arguments of a component are resolved and erased here as well. A component whose type cannot be erased
+ * keeps the error, which the serializer reports when it reaches that component, as it did before the codec.
+ */
+public final class RecordCodec {
+	private static final Option<GeneratedRecords> GENERATED = loadGenerated();
+	private static final Map<Class<?>, GeneratedRecord> GENERATED_RECORDS =
+			GENERATED.map(GeneratedRecords::records).orElse(Map.of());
+	private static final Codecs CODECS = new Codecs();
+	private final Option<String> tag;
+	private final Component[] components;
+	private final Access access;
+
+	/**
+	 * One record component. For {@code Option<List<Node>>}, {@code elementClass} is {@code List} and {@code innerClass}
+	 * is {@code Node}.
+	 */
+	public record Component(String name, Class<?> type, Result<Class<?>, CompileError> elementClass,
+													Result<Class<?>, CompileError> innerClass) {}
+
+	private sealed interface Access permits Reflected, Generated {
+		Result<Object, String> construct(Object[] arguments);
+
+		Result<Object, String> read(int component, Object value);
+
+		Option<Result<Object, CompileError>> deserialize(Node node);
+
+		Option<Result<Node, CompileError>> serialize(Object value);
+	}
+
+	// Each handle is wrapped in a Function once, when the codec is built. The constructor takes the arguments as an
+	// Object[]. An exception becomes an error message, and an Error such as StackOverflowError propagates.
+	private record Reflected(Result<Function<Object[], Object>, String> constructor,
+													 java.util.List<Function<Object, Object>> accessors) implements Access {
+		@Override
+		public Result<Object, String> construct(Object[] arguments) {
+			return switch (constructor) {
+				case Ok<Function<Object[], Object>, String>(Function<Object[], Object> function) -> apply(function, arguments);
+				case Err<Function<Object[], Object>, String>(String message) -> new Err<Object, String>(message);
+			};
+		}
+
+		@Override
+		public Result<Object, String> read(int component, Object value) {
+			return apply(accessors.get(component), value);
+		}
+
+		@Override
+		public Option<Result<Object, CompileError>> deserialize(Node node) {
+			return new None<Result<Object, CompileError>>();
+		}
+
+		@Override
+		public Option<Result<Node, CompileError>> serialize(Object value) {
+			return new None<Result<Node, CompileError>>();
+		}
+
+		private static <T> Result<Object, String> apply(Function<T, Object> function, T argument) {
+			try {
+				return new Ok<Object, String>(function.apply(argument));
+			} catch (Exception e) {
+				return new Err<Object, String>(message(e));
+			}
+		}
+
+		// A checked exception thrown through the Function is wrapped by its proxy.
+		private static String message(Exception e) {
+			if (e instanceof UndeclaredThrowableException undeclared)
+				return String.valueOf(undeclared.getUndeclaredThrowable().getMessage());
+			return String.valueOf(e.getMessage());
+		}
+	}
+
+	private record Generated(GeneratedRecords records, int index) implements Access {
+		@Override
+		public Result<Object, String> construct(Object[] arguments) {
+			return present(records.construct(index, arguments), "No generated constructor for record " + index);
+		}
+
+		@Override
+		public Result<Object, String> read(int component, Object value) {
+			return present(records.read(index, component, value), "No generated accessor for component " + component);
+		}
+
+		@Override
+		public Option<Result<Object, CompileError>> deserialize(Node node) {
+			return records.deserialize(index, node);
+		}
+
+		@Override
+		public Option<Result<Node, CompileError>> serialize(Object value) {
+			return records.serialize(index, value);
+		}
+
+		private static Result<Object, String> present(Option<Object> value, String message) {
+			return switch (value) {
+				case Some<Object>(Object found) -> new Ok<Object, String>(found);
+				case None<Object> _ -> new Err<Object, String>(message);
+			};
+		}
+	}
+
+	private static final class Codecs extends ClassValue<RecordCodec> {
+		@Override
+		protected RecordCodec computeValue(Class<?> type) {
+			if (GENERATED instanceof Some<GeneratedRecords>(GeneratedRecords records) &&
+					GENERATED_RECORDS.get(type) instanceof GeneratedRecord generated) return fromGenerated(records, generated);
+			return reflect(type);
+		}
+	}
+
+	private RecordCodec(Option<String> tag, Component[] components, Access access) {
+		this.tag = tag;
+		this.components = components;
+		this.access = access;
+	}
+
+	/**
+	 * The codec of a record class. {@code type} must be a record.
+	 */
+	public static RecordCodec of(Class<?> type) {
+		return CODECS.get(type);
+	}
+
+	public Option<String> tag() {
+		return tag;
+	}
+
+	public Component[] components() {
+		return components;
+	}
+
+	/**
+	 * A new instance from the values of all components, or the message of the failure.
+	 */
+	public Result<Object, String> construct(Object[] arguments) {
+		return access.construct(arguments);
+	}
+
+	/**
+	 * The value of the component at {@code index} in {@code value}, or the message of the failure.
+	 */
+	public Result<Object, String> read(int index, Object value) {
+		return access.read(index, value);
+	}
+
+	/**
+	 * The record that the deserializer generated for this record builds from {@code node}, or nothing if there is no
+	 * generated deserializer.
+	 */
+	public Option<Result<Object, CompileError>> deserialize(Node node) {
+		return access.deserialize(node);
+	}
+
+	/**
+	 * The node that the serializer generated for this record builds from {@code value}, or nothing if there is no
+	 * generated serializer.
+	 */
+	public Option<Result<Node, CompileError>> serialize(Object value) {
+		return access.serialize(value);
+	}
+
+	private static RecordCodec fromGenerated(GeneratedRecords records, GeneratedRecord generated) {
+		final Component[] components =
+				generated.components().stream().map(RecordCodec::generatedComponent).toArray(Component[]::new);
+		return new RecordCodec(Option.of(generated.tag()), components, new Generated(records, generated.index()));
+	}
+
+	private static Component generatedComponent(GeneratedRecord.Component component) {
+		return new Component(component.name(),
+												 component.type(),
+												 generatedClass(component.elementClass(), component.type()),
+												 generatedClass(component.innerClass(), component.type()));
+	}
+
+	private static Result<Class<?>, CompileError> generatedClass(Option<Class<?>> generated, Class<?> type) {
+		return switch (generated) {
+			case Some<Class<?>>(Class<?> value) -> new Ok<Class<?>, CompileError>(value);
+			case None<Class<?>> _ -> new Err<Class<?>, CompileError>(new CompileError(
+					"Type " + type.getName() + " does not have generic argument at index 0", createContext(type.getName())));
+		};
+	}
+
+	private static Option<GeneratedRecords> loadGenerated() {
+		if (System.getProperty("magma.generated", "true").equals("false")) return new None<GeneratedRecords>();
+		return ServiceLoader.load(GeneratedRecords.class)
+												.findFirst()
+												.map(Option::of)
+												.orElse(new None<GeneratedRecords>());
+	}
+
+	private static RecordCodec reflect(Class<?> type) {
+		final RecordComponent[] recordComponents = type.getRecordComponents();
+		final Component[] components =
+				Arrays.stream(recordComponents).map(RecordCodec::component).toArray(Component[]::new);
+		final java.util.List<Function<Object, Object>> accessors =
+				Arrays.stream(recordComponents).map(RecordCodec::accessor).toList();
+		return new RecordCodec(Option.ofNullable(type.getAnnotation(Tag.class)).map(Tag::value),
+													 components,
+													 new Reflected(constructor(type, recordComponents), accessors));
+	}
+
+	private static Component component(RecordComponent component) {
+		final Result<Type, CompileError> element = argument(component.getGenericType());
+		final Result<Class<?>, CompileError> elementClass = element.flatMap(RecordCodec::erase);
+		final Result<Class<?>, CompileError> innerClass = element.flatMap(RecordCodec::argument).flatMap(RecordCodec::erase);
+		return new Component(component.getName(), component.getType(), elementClass, innerClass);
+	}
+
+	// A failed lookup yields a function that throws, so the failure is reported when the component is read.
+	@SuppressWarnings("unchecked")
+	private static Function<Object, Object> accessor(RecordComponent component) {
+		return MethodHandleProxies.asInterfaceInstance(Function.class, accessorHandle(component));
+	}
+
+	private static MethodHandle accessorHandle(RecordComponent component) {
+		final MethodType type = MethodType.methodType(Object.class, Object.class);
+		try {
+			component.getAccessor().setAccessible(true);
+			return MethodHandles.lookup().unreflect(component.getAccessor()).asType(type);
+		} catch (Exception e) {
+			final MethodHandle thrower = MethodHandles.throwException(Object.class, Exception.class);
+			return MethodHandles.dropArguments(MethodHandles.insertArguments(thrower, 0, e), 0, Object.class);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Result<Function<Object[], Object>, String> constructor(Class<?> type, RecordComponent[] components) {
+		final Class<?>[] parameterTypes = Arrays.stream(components).map(RecordComponent::getType).toArray(Class[]::new);
+		try {
+			final Constructor<?> constructor = type.getDeclaredConstructor(parameterTypes);
+			constructor.setAccessible(true);
+			final MethodHandle handle = MethodHandles.lookup().unreflectConstructor(constructor);
+			final Class<?> arguments = Object.class.arrayType();
+			final MethodHandle spread =
+					handle.asSpreader(arguments, parameterTypes.length).asType(MethodType.methodType(Object.class, arguments));
+			return new Ok<Function<Object[], Object>, String>(MethodHandleProxies.asInterfaceInstance(Function.class, spread));
+		} catch (Exception e) {
+			return new Err<Function<Object[], Object>, String>(String.valueOf(e.getMessage()));
+		}
+	}
+
+	private static Result<Type, CompileError> argument(Type type) {
+		if (type instanceof ParameterizedType parameterized) {
+			Type[] args = parameterized.getActualTypeArguments();
+			if (args.length > 0) return new Ok<Type, CompileError>(args[0]);
+		}
+
+		return new Err<Type, CompileError>(new CompileError("Type " + type + " does not have generic argument at index 0",
+																												createContext(type.toString())));
+	}
+
+	private static Result<Class<?>, CompileError> erase(Type type) {
+		if (type instanceof Class<?> clazz) return new Ok<Class<?>, CompileError>(clazz);
+		if (type instanceof ParameterizedType parameterized && parameterized.getRawType() instanceof Class<?> raw)
+			return new Ok<Class<?>, CompileError>(raw);
+
+		return new Err<Class<?>, CompileError>(new CompileError("Cannot erase type '" + type + "'",
+																														createContext(type.toString())));
+	}
+
+	private static InputContext createContext(String type) {
+		return new InputContext(new Slice(type));
+	}
+}
@@ -0,0 +1,329 @@
+package magma.compile;
+
+import magma.compile.rule.Slice;
+import magma.list.ArrayList;
+import magma.list.List;
+import magma.list.NonEmptyList;
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
+import magma.result.Err;
+import magma.result.Ok;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Builds the {@link Lang} records of a Java source while it is lexed, instead of walking the finished {@link Node}
+ * tree afterwards. Inside {@link #within(Supplier)}, every {@code TagRule} that matches hands its node to
+ * {@link #attach(Node)}, which builds the record with the same {@link Tag} that {@link JavaSerializer} would choose and
+ * keeps it on the node. The children were tagged before their parent, so a parent is built from the records of its
+ * children.
+ * <p>
+ * A record is only built when {@link JavaSerializer#deserialize(Class, Node)} would build an equal one. When that is
+ * not certain (an ambiguous tag, a field the node does not have, a node that is changed after it was tagged), nothing
+ * is attached, and the serializer deserializes that node itself. The serializer takes an attached record as it is,
+ * so compiling with {@code -Dmagma.fused=false} gives the same output through the plain {@link Node} path.
+ */
+public final class RecordFusion {
+	private static final ThreadLocal<Boolean> ACTIVE = ThreadLocal.withInitial(() -> false);
+	private static final RecordFusion JAVA = new RecordFusion(Lang.JRoot.class);
+	private final Map<Class<?>, Plan> plans = new HashMap<Class<?>, Plan>();
+	private final Set<Class<?>> visited = new HashSet<Class<?>>();
+	private final Map<String, java.util.List<Plan>> tagged = new HashMap<String, java.util.List<Plan>>();
+
+	private sealed interface Field permits SliceField, NodeField, ListField {
+		String name();
+	}
+
+	private record SliceField(String name, boolean text, boolean optional) implements Field {
+		private Object present(Slice slice) {
+			final Object value;
+			if (text) value = slice.value();
+			else value = slice;
+			if (optional) return Option.of(value);
+			return value;
+		}
+	}
+
+	private record NodeField(String name, Class<?> type, boolean optional) implements Field {
+		private Object present(Object value) {
+			if (optional) return Option.of(value);
+			return value;
+		}
+
+		private Option<Object> absent() {
+			if (optional) return Option.of(Option.empty());
+			return new None<Object>();
+		}
+	}
+
+	private record ListField(String name, Class<?> element, boolean nonEmpty, boolean optional) implements Field {
+		private Option<Object> present(List<Object> elements) {
+			if (!nonEmpty && optional) return Option.of(Option.of(elements.copy()));
+			if (!nonEmpty) return Option.of(elements.copy());
+			final Option<NonEmptyList<Object>> maybeNonEmpty = NonEmptyList.fromList(elements);
+			if (optional) return Option.of(maybeNonEmpty);
+			return maybeNonEmpty.map(list -> list);
+		}
+
+		private Option<Object> absent() {
+			if (optional) return Option.of(Option.empty());
+			return new None<Object>();
+		}
+	}
+
+	// "ambiguous" holds the expected types for which another record with the same tag could also be chosen.
+	private record Plan(Class<?> type, Option<String> tag, RecordCodec codec, Field[] fields,
+											Set<String> slices, Set<String> nodes, Set<String> lists, Set<Class<?>> ambiguous) {
+		// A node with a field the record does not declare would fail the serializer's check for unconsumed fields.
+		private boolean matches(Node node) {
+			final boolean tagged = switch (tag) {
+				case None<String> _ -> true;
+				case Some<String>(String expected) -> node.is(expected);
+			};
+			return tagged && node.isWithin(slices, nodes, lists);
+		}
+
+		private Option<Object> construct(Object[] arguments) {
+			return switch (codec.construct(arguments)) {
+				case Ok<Object, String>(Object value) -> Option.of(HashCons.intern(value));
+				case Err<Object, String> _ -> new None<Object>();
+			};
+		}
+	}
+
+	private RecordFusion(Class<?> root) {
+		visit(root);
+		tagged.values().forEach(this::findAmbiguous);
+	}
+
+	public static <T> T within(Supplier<T> action) {
+		final boolean previous = ACTIVE.get();
+		ACTIVE.set(true);
+		final T result = action.get();
+		ACTIVE.set(previous);
+		return result;
+	}
+
+	/**
+	 * Builds the record of a node that was just tagged, if its tag names exactly one Java record.
+	 */
+	public static void attach(Node node) {
+		if (ACTIVE.get() && node.maybeType instanceof Some<String>(String tag)) JAVA.attachTagged(tag, node);
+	}
+
+	/**
+	 * The record attached to {@code node}, if {@link JavaSerializer} would deserialize it as that record for
+	 * {@code type}.
+	 */
+	static Option<Object> attached(Class<?> type, Node node) {
+		return node.findRecord().filter(value -> JAVA.accepts(type, value));
+	}
+
+	private void visit(Class<?> type) {
+		if (visited.add(type)) explore(type);
+	}
+
+	private void explore(Class<?> type) {
+		if (type.isRecord()) visitRecord(type);
+		else if (type.isSealed()) Arrays.stream(type.getPermittedSubclasses()).forEach(this::visit);
+	}
+
+	private void visitRecord(Class<?> type) {
+		if (plan(type) instanceof Some<Plan>(Plan plan)) {
+			plans.put(type, plan);
+			if (plan.tag() instanceof Some<String>(String tag))
+				tagged.computeIfAbsent(tag, key -> new java.util.ArrayList<Plan>()).add(plan);
+			Arrays.stream(plan.fields()).forEach(this::visitField);
+		}
+	}
+
+	private void visitField(Field field) {
+		switch (field) {
+			case SliceField _ -> {}
+			case NodeField child -> visit(child.type());
+			case ListField list -> visit(list.element());
+		}
+	}
+
+	private static Option<Plan> plan(Class<?> type) {
+		final RecordComponent[] components = type.getRecordComponents();
+		final Field[] fields =
+				Arrays.stream(components).map(RecordFusion::field).flatMap(RecordFusion::stream).toArray(Field[]::new);
+		if (fields.length != components.length) return new None<Plan>();
+
+		final RecordCodec codec = RecordCodec.of(type);
+		return Option.of(new Plan(type,
+															codec.tag(),
+															codec,
+															fields,
+															names(fields, SliceField.class),
+															names(fields, NodeField.class),
+															names(fields, ListField.class),
+															new HashSet<Class<?>>()));
+	}
+
+	private static java.util.stream.Stream<Field> stream(Option<Field> field) {
+		return switch (field) {
+			case None<Field> _ -> java.util.stream.Stream.empty();
+			case Some<Field>(Field value) -> java.util.stream.Stream.of(value);
+		};
+	}
+
+	private static Set<String> names(Field[] fields, Class<?> kind) {
+		return new HashSet<String>(Arrays.stream(fields).filter(kind::isInstance).map(Field::name).toList());
+	}
+
+	// Classifies a component in the same order as JavaSerializer.deserializeField.
+	private static Option<Field> field(RecordComponent component) {
+		final String name = component.getName();
+		final Class<?> type = component.getType();
+		if (type == Slice.class) return Option.of(new SliceField(name, false, false));
+		if (type == String.class) return Option.of(new SliceField(name, true, false));
+		if (Option.class.isAssignableFrom(type)) return argument(component.getGenericType()).flatMap(element -> optional(
+				name,
+				element));
+		if (NonEmptyList.class.isAssignableFrom(type))
+			return element(component.getGenericType()).map(element -> new ListField(name, element, true, false));
+		if (List.class.isAssignableFrom(type))
+			return element(component.getGenericType()).map(element -> new ListField(name, element, false, false));
+		return Option.of(new NodeField(name, type, false));
+	}
+
+	private static Option<Field> optional(String name, Type element) {
+		final Option<Class<?>> erased = erase(element);
+		if (!(erased instanceof Some<Class<?>>(Class<?> type))) return new None<Field>();
+		if (type == Slice.class) return Option.of(new SliceField(name, false, true));
+		if (type == String.class) return Option.of(new SliceField(name, true, true));
+		if (NonEmptyList.class.isAssignableFrom(type))
+			return element(element).map(inner -> new ListField(name, inner, true, true));
+		if (List.class.isAssignableFrom(type)) return element(element).map(inner -> new ListField(name, inner, false, true));
+		return Option.of(new NodeField(name, type, true));
+	}
+
+	private static Option<Class<?>> element(Type type) {
+		return argument(type).flatMap(RecordFusion::erase);
+	}
+
+	private static Option<Type> argument(Type type) {
+		if (type instanceof ParameterizedType parameterized && parameterized.getActualTypeArguments().length == 1)
+			return Option.of(parameterized.getActualTypeArguments()[0]);
+		return new None<Type>();
+	}
+
+	private static Option<Class<?>> erase(Type type) {
+		if (type instanceof Class<?> clazz) return Option.of(clazz);
+		if (type instanceof ParameterizedType parameterized && parameterized.getRawType() instanceof Class<?> raw)
+			return Option.of(raw);
+		return new None<Class<?>>();
+	}
+
+	// The serializer picks the permitted subtype of the expected type that has the node's tag, so a record only stands
+	// for the node when no other record with the same tag is a subtype of the expected type.
+	private void findAmbiguous(java.util.List<Plan> sameTag) {
+		sameTag.forEach(plan -> visited.stream()
+																		 .filter(type -> type.isAssignableFrom(plan.type()))
+																		 .filter(type -> sameTag.stream()
+																														.anyMatch(other -> other != plan &&
+																																							 type.isAssignableFrom(other.type())))
+																		 .forEach(plan.ambiguous()::add));
+	}
+
+	private boolean accepts(Class<?> type, Object value) {
+		if (!type.isInstance(value) || !(plans.get(value.getClass()) instanceof Plan plan)) return false;
+		return switch (plan.tag()) {
+			case None<String> _ -> type == value.getClass();
+			case Some<String> _ -> !plan.ambiguous().contains(type);
+		};
+	}
+
+	private void attachTagged(String tag, Node node) {
+		final java.util.List<Plan> candidates = tagged.getOrDefault(tag, java.util.List.of());
+		if (candidates.size() == 1) decodeRecord(candidates.getFirst(), node);
+	}
+
+	private Option<Object> decode(Class<?> type, Node node) {
+		if (attached(type, node) instanceof Some<Object>(Object value)) return Option.of(value);
+		return resolve(type, node).flatMap(plan -> decodeRecord(plan, node));
+	}
+
+	private Option<Plan> resolve(Class<?> type, Node node) {
+		if (type.isRecord()) return Option.ofNullable(plans.get(type));
+		if (!type.isSealed() || !(node.maybeType instanceof Some<String>(String tag))) return new None<Plan>();
+
+		final java.util.List<Plan> candidates = tagged.getOrDefault(tag, java.util.List.of())
+																									.stream()
+																									.filter(plan -> type.isAssignableFrom(plan.type()))
+																									.toList();
+		if (candidates.size() == 1) return Option.of(candidates.getFirst());
+		return new None<Plan>();
+	}
+
+	private Option<Object> decodeRecord(Plan plan, Node node) {
+		if (!plan.matches(node)) return new None<Object>();
+
+		final Field[] fields = plan.fields();
+		final Object[] arguments = new Object[fields.length];
+		int i = 0;
+		while (i < fields.length) {
+			if (!(decodeField(fields[i], node) instanceof Some<Object>(Object argument))) return new None<Object>();
+			arguments[i] = argument;
+			i++;
+		}
+
+		final Option<Object> value = plan.construct(arguments);
+		if (value instanceof Some<Object>(Object found)) node.withRecord(found);
+		return value;
+	}
+
+	private Option<Object> decodeField(Field field, Node node) {
+		return switch (field) {
+			case SliceField slice -> decodeSlice(slice, node);
+			case NodeField child -> decodeChild(child, node);
+			case ListField list -> decodeList(list, node);
+		};
+	}
+
+	private static Option<Object> decodeSlice(SliceField field, Node node) {
+		final Option<Slice> found =
+				node.findSlice(field.name()).or(() -> JavaSerializer.findSliceInChildren(node, field.name()));
+		if (found instanceof Some<Slice>(Slice slice)) return Option.of(field.present(slice));
+		if (field.optional()) return Option.of(Option.empty());
+		return new None<Object>();
+	}
+
+	private Option<Object> decodeChild(NodeField field, Node node) {
+		if (node.findNode(field.name()) instanceof Some<Node>(Node child))
+			return decode(field.type(), child).map(field::present);
+		return field.absent();
+	}
+
+	private Option<Object> decodeList(ListField field, Node node) {
+		if (node.findNodeList(field.name()) instanceof Some<NonEmptyList<Node>>(NonEmptyList<Node> children))
+			return decodeElements(field.element(), children.toList()).flatMap(field::present);
+		return field.absent();
+	}
+
+	private Option<List<Object>> decodeElements(Class<?> element, List<Node> children) {
+		final List<Object> elements = new ArrayList<Object>();
+		if (children.stream().allMatch(child -> decodeElement(element, child, elements))) return Option.of(elements);
+		return new None<List<Object>>();
+	}
+
+	// The serializer skips untagged elements of a list of sealed types, such as whitespace, and so does this.
+	private boolean decodeElement(Class<?> element, Node child, List<Object> elements) {
+		if (decode(element, child) instanceof Some<Object>(Object value)) {
+			elements.addLast(value);
+			return true;
+		}
+		return element.isSealed() && child.maybeType instanceof None<String>;
+	}
+}
@@ -0,0 +1,108 @@
+package magma.compile;
+
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * For one sealed type, the permitted subtype that {@link JavaSerializer} deserializes a node as, by the node's tag. It
+ * is built once per sealed type from the {@link Tag} annotations and kept in a {@link ClassValue}, so a node is
+ * dispatched with one lookup instead of a walk over the permitted subtypes.
+ * <p>
+ * A permitted subtype with the tag is chosen first. Otherwise, the first permitted sealed interface that has a subtype
+ * with the tag, at any depth, is chosen, and the node is dispatched again from there. A tag that more than one class
+ * below the sealed type carries is ambiguous: it is found when the index is built, and no node with that tag is
+ * dispatched.
+ */
+public final class TagIndex {
+	private static final Indexes INDEXES = new Indexes();
+	private final Map<String, Class<?>> targets = new HashMap<String, Class<?>>();
+	private final Map<String, String> ambiguous;
+
+	private static final class Indexes extends ClassValue<TagIndex> {
+		@Override
+		protected TagIndex computeValue(Class<?> type) {
+			return new TagIndex(type);
+		}
+	}
+
+	private TagIndex(Class<?> type) {
+		final Class<?>[] permitted = type.getPermittedSubclasses();
+		Arrays.stream(permitted).forEach(this::addDirect);
+		Arrays.stream(permitted).filter(TagIndex::isSealedInterface).forEach(this::addNested);
+		this.ambiguous = findAmbiguous(type);
+	}
+
+	/**
+	 * The index of a sealed type. {@code type} must be sealed.
+	 */
+	public static TagIndex of(Class<?> type) {
+		return INDEXES.get(type);
+	}
+
+	/**
+	 * The permitted subtype to deserialize a node with {@code tag} as.
+	 */
+	public Option<Class<?>> target(String tag) {
+		if (ambiguous.containsKey(tag)) return new None<Class<?>>();
+		return Option.ofNullable(targets.get(tag));
+	}
+
+	/**
+	 * The names of the classes that all carry {@code tag}, if there is more than one.
+	 */
+	public Option<String> ambiguity(String tag) {
+		return Option.ofNullable(ambiguous.get(tag));
+	}
+
+	private void addDirect(Class<?> permitted) {
+		if (tagOf(permitted) instanceof Some<String>(String tag)) targets.putIfAbsent(tag, permitted);
+	}
+
+	private void addNested(Class<?> permitted) {
+		tagged(permitted).keySet().forEach(tag -> targets.putIfAbsent(tag, permitted));
+	}
+
+	private static Map<String, String> findAmbiguous(Class<?> type) {
+		return tagged(type).entrySet()
+											 .stream()
+											 .filter(entry -> entry.getValue().size() > 1)
+											 .collect(Collectors.toMap(Map.Entry::getKey, entry -> names(entry.getValue())));
+	}
+
+	private static String names(Set<Class<?>> classes) {
+		return classes.stream().map(Class::getName).collect(Collectors.joining(", "));
+	}
+
+	// Every class below a sealed type, at any depth, by its tag.
+	private static Map<String, Set<Class<?>>> tagged(Class<?> type) {
+		final Map<String, Set<Class<?>>> tagged = new LinkedHashMap<String, Set<Class<?>>>();
+		collect(type, tagged, new HashSet<Class<?>>());
+		return tagged;
+	}
+
+	private static void collect(Class<?> type, Map<String, Set<Class<?>>> tagged, Set<Class<?>> visited) {
+		if (visited.add(type)) Arrays.stream(type.getPermittedSubclasses()).forEach(permitted -> {
+			if (tagOf(permitted) instanceof Some<String>(String tag))
+				tagged.computeIfAbsent(tag, key -> new LinkedHashSet<Class<?>>()).add(permitted);
+			if (isSealedInterface(permitted)) collect(permitted, tagged, visited);
+		});
+	}
+
+	private static boolean isSealedInterface(Class<?> type) {
+		return type.isSealed() && !type.isRecord();
+	}
+
+	private static Option<String> tagOf(Class<?> type) {
+		return Option.ofNullable(type.getAnnotation(Tag.class)).map(Tag::value);
+	}
+}
@@ -11,6 +11,7 @@ import magma.result.Err;
 import magma.result.Ok;
 import magma.result.Result;
 
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
 public record Accumulator<T>(Option<T> option, List<CompileError> errors) {
@@ -27,6 +28,65 @@ public record Accumulator<T>(Option<T> option, List<CompileError> errors) {
 		return reduce.toResult();
 	}
 
+	/**
+	 * Like {@link #merge(List, Function)}, but stops at the first element whose mapping succeeds instead of
+	 * folding over every element and keeping the last success. Errors are only collected for the elements tried.
+	 */
+	public static <T, R> Result<R, List<CompileError>> mergeFirst(List<T> elements,
+																																Function<T, Result<R, CompileError>> mapper) {
+		final List<CompileError> errors = new ArrayList<CompileError>();
+		int i = 0;
+		while (i < elements.size()) {
+			if (elements.get(i) instanceof Some<T>(T element)) switch (mapper.apply(element)) {
+				case Ok<R, CompileError>(R value) -> {
+					return new Ok<R, List<CompileError>>(value);
+				}
+				case Err<R, CompileError>(CompileError error) -> errors.addLast(error);
+			}
+			i++;
+		}
+
+		return new Err<R, List<CompileError>>(errors);
+	}
+
+	/**
+	 * Like {@link #mergeFirst(List, Function)}, for elements that append what they generate to {@code output}. The
+	 * output is rolled back to its length before each element that fails, so only the successful element's text stays.
+	 */
+	public static <T> Option<List<CompileError>> writeFirst(List<T> elements,
+																												 BiFunction<T, StringBuilder, Option<CompileError>> writer,
+																												 StringBuilder output) {
+		final int mark = output.length();
+		final List<CompileError> errors = new ArrayList<CompileError>();
+		int i = 0;
+		while (i < elements.size()) {
+			if (elements.get(i) instanceof Some<T>(T element)) switch (writer.apply(element, output)) {
+				case None<CompileError> _ -> {
+					return new None<List<CompileError>>();
+				}
+				case Some<CompileError>(CompileError error) -> {
+					output.setLength(mark);
+					errors.addLast(error);
+				}
+			}
+			i++;
+		}
+
+		return new Some<List<CompileError>>(errors);
+	}
+
+	/**
+	 * What {@code writer} generates for {@code element} on its own.
+	 */
+	public static <T> Result<String, CompileError> written(BiFunction<T, StringBuilder, Option<CompileError>> writer,
+																												 T element) {
+		final StringBuilder output = new StringBuilder();
+		return switch (writer.apply(element, output)) {
+			case None<CompileError> _ -> new Ok<String, CompileError>(output.toString());
+			case Some<CompileError>(CompileError error) -> new Err<String, CompileError>(error);
+		};
+	}
+
 	private static <T, R> Accumulator<R> fold(Function<T, Result<R, CompileError>> mapper,
 																						Accumulator<R> accumulator,
 																						T rule) {
@@ -0,0 +1,13 @@
+package magma.compile.error;
+
+import magma.list.Joiner;
+import magma.list.List;
+
+import java.nio.file.Path;
+
+public record FailedFiles(List<Path> paths) implements Error {
+	@Override
+	public String display() {
+		return paths.size() + " file(s) failed to compile: " + paths.stream().map(Path::toString).collect(new Joiner(", "));
+	}
+}
@@ -1,5 +1,7 @@
 package magma.compile.rule;
 
+import magma.option.Option;
+
 public class BraceStartFolder implements Folder {
 	@Override
 	public DivideState fold(DivideState state, char c) {
@@ -15,6 +17,11 @@ public class BraceStartFolder implements Folder {
 		return state1;
 	}
 
+	@Override
+	public Option<String> significantChars() {
+		return Option.of("{}()");
+	}
+
 	@Override
 	public String delimiter() {
 		return "{";
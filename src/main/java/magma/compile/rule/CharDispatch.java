@@ -0,0 +1,110 @@
+package magma.compile.rule;
+
+import magma.list.List;
+import magma.list.ListCollector;
+import magma.list.Stream;
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
+
+/**
+ * Dispatch table of an {@link OrRule}: for each ASCII first character, the alternatives whose
+ * {@link Rule#firstChars()} allow it. The table is built on the first lookup rather than with the grammar, because a
+ * {@link LazyRule} only knows its character sets once it has been set. Threads sharing a grammar may build the
+ * table concurrently; each publishes a complete table, so a lookup never sees a partial one.
+ */
+public final class CharDispatch {
+	private static final int TABLE_SIZE = 128;
+	private final List<Rule> rules;
+	private volatile Option<Table> table = new None<Table>();
+	private final ThreadLocal<Boolean> building = ThreadLocal.withInitial(() -> false);
+
+	private record Alternative(Rule rule, Option<CharSet> first, Option<CharSet> last) {
+		private boolean acceptsFirst(char c) {
+			return first.map(chars -> chars.contains(c)).orElse(true);
+		}
+
+		private boolean acceptsLast(char c) {
+			return last.map(chars -> chars.contains(c)).orElse(true);
+		}
+
+		private boolean acceptsEmpty() {
+			return first.map(CharSet::empty).orElse(true) && last.map(CharSet::empty).orElse(true);
+		}
+	}
+
+	private record Table(List<Alternative> alternatives, List<List<Alternative>> byFirst, boolean informative,
+											 Option<CharSet> first, Option<CharSet> last) {}
+
+	public CharDispatch(List<Rule> rules) {
+		this.rules = rules;
+	}
+
+	private static List<Alternative> startingWith(List<Alternative> alternatives, char c) {
+		return alternatives.stream().filter(alternative -> alternative.acceptsFirst(c)).collect(new ListCollector<Alternative>());
+	}
+
+	private static Option<CharSet> unionOf(Stream<Option<CharSet>> sets) {
+		final Option<CharSet> none = new Some<CharSet>(new CharSet("", false, false));
+		return sets.fold(none, CharSet::union);
+	}
+
+	private Table table() {
+		if (table instanceof Some<Table>(Table built)) return built;
+		building.set(true);
+		final List<Alternative> alternatives = rules.stream()
+																								.map(rule -> new Alternative(rule, rule.firstChars(), rule.lastChars()))
+																								.collect(new ListCollector<Alternative>());
+		final List<List<Alternative>> byFirst = Stream.range(0, TABLE_SIZE)
+																									 .map(c -> startingWith(alternatives, (char) c.intValue()))
+																									 .collect(new ListCollector<List<Alternative>>());
+		final boolean informative = alternatives.stream()
+																						.anyMatch(alternative -> alternative.first() instanceof Some<CharSet> ||
+																																		 alternative.last() instanceof Some<CharSet>);
+		final Option<CharSet> first = unionOf(alternatives.stream().map(Alternative::first));
+		final Option<CharSet> last = unionOf(alternatives.stream().map(Alternative::last));
+		final Table built = new Table(alternatives, byFirst, informative, first, last);
+		table = new Some<Table>(built);
+		building.set(false);
+		return built;
+	}
+
+	/**
+	 * The alternatives that can match {@code content}, in their original order.
+	 */
+	public List<Rule> candidates(Slice content) {
+		final Table built = table();
+		if (!built.informative()) return rules;
+		return candidatesByFirst(built, content).stream()
+																						.filter(alternative -> acceptsEnd(alternative, content))
+																						.map(Alternative::rule)
+																						.collect(new ListCollector<Rule>());
+	}
+
+	private List<Alternative> candidatesByFirst(Table built, Slice content) {
+		if (content.isEmpty()) return built.alternatives()
+																				.stream()
+																				.filter(Alternative::acceptsEmpty)
+																				.collect(new ListCollector<Alternative>());
+
+		final char c = content.charAt(0);
+		if (c < TABLE_SIZE) return built.byFirst().get(c).orElse(built.alternatives());
+		return startingWith(built.alternatives(), c);
+	}
+
+	private boolean acceptsEnd(Alternative alternative, Slice content) {
+		if (content.isEmpty()) return true;
+		return alternative.acceptsLast(content.charAt(content.length() - 1));
+	}
+
+	// A grammar cycle leads back here while the table is being built; nothing is known about the cycle yet.
+	public Option<CharSet> firstChars() {
+		if (building.get()) return new None<CharSet>();
+		return table().first();
+	}
+
+	public Option<CharSet> lastChars() {
+		if (building.get()) return new None<CharSet>();
+		return table().last();
+	}
+}
@@ -0,0 +1,49 @@
+package magma.compile.rule;
+
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
+
+/**
+ * The characters that input accepted by a rule can start (or end) with, see {@link Rule#firstChars()}.
+ *
+ * @param chars      the characters themselves
+ * @param whitespace whether any {@link Character#isWhitespace(char) whitespace} character is included as well
+ * @param empty      whether the rule may also accept empty input
+ */
+public record CharSet(String chars, boolean whitespace, boolean empty) {
+	public static CharSet of(char c) {
+		return new CharSet(String.valueOf(c), false, false);
+	}
+
+	public static CharSet emptyInput() {
+		return new CharSet("", false, true);
+	}
+
+	public static Option<CharSet> union(Option<CharSet> left, Option<CharSet> right) {
+		if (left instanceof Some<CharSet>(CharSet first) && right instanceof Some<CharSet>(CharSet second))
+			return new Some<CharSet>(first.union(second));
+		return new None<CharSet>();
+	}
+
+	public CharSet union(CharSet other) {
+		return new CharSet(chars + other.chars, whitespace || other.whitespace, empty || other.empty);
+	}
+
+	public CharSet withWhitespace() {
+		return new CharSet(chars, true, empty);
+	}
+
+	/**
+	 * The set of a rule that is wrapped between {@code c} and the wrapped rule's input, e.g. the last character of a
+	 * {@link PrefixRule}'s input is the one of its child, or the prefix itself when the child accepts empty input.
+	 */
+	public CharSet around(char c) {
+		if (empty) return new CharSet(chars + c, whitespace, false);
+		return this;
+	}
+
+	public boolean contains(char c) {
+		return chars.indexOf(c) != -1 || (whitespace && Character.isWhitespace(c));
+	}
+}
@@ -1,5 +1,7 @@
 package magma.compile.rule;
 
+import magma.option.Option;
+
 public class ClosingParenthesesFolder implements Folder {
 	@Override
 	public DivideState fold(DivideState state, char c) {
@@ -12,6 +14,11 @@ public class ClosingParenthesesFolder implements Folder {
 		return state.append(c);
 	}
 
+	@Override
+	public Option<String> significantChars() {
+		return Option.of("()");
+	}
+
 	@Override
 	public String delimiter() {
 		return ")";
@@ -5,16 +5,35 @@ import magma.compile.context.InputContext;
 import magma.compile.context.NodeContext;
 import magma.compile.error.CompileError;
 import magma.list.List;
+import magma.option.Option;
 import magma.result.Result;
 
+import java.util.Set;
+
 public record ContextRule(String whenErr, Rule child) implements Rule {
 	@Override
 	public Result<Node, CompileError> lex(Slice content) {
+		if (!Diagnostics.detailed()) return child.lex(content);
 		return child.lex(content).mapErr(err -> new CompileError(whenErr, new InputContext(content), List.of(err)));
 	}
 
 	@Override
-	public Result<String, CompileError> generate(Node node) {
-		return child.generate(node).mapErr(err -> new CompileError(whenErr, new NodeContext(node), List.of(err)));
+	public Option<CharSet> firstChars() {
+		return child.firstChars();
+	}
+
+	@Override
+	public Option<CharSet> lastChars() {
+		return child.lastChars();
+	}
+
+	@Override
+	public Option<Set<String>> generatedTags() {
+		return child.generatedTags();
+	}
+
+	@Override
+	public Option<CompileError> generate(Node node, StringBuilder output) {
+		return child.generate(node, output).map(err -> new CompileError(whenErr, new NodeContext(node), List.of(err)));
 	}
 }
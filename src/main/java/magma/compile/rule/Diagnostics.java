@@ -0,0 +1,53 @@
+package magma.compile.rule;
+
+import magma.compile.Node;
+import magma.compile.context.InputContext;
+import magma.compile.error.CompileError;
+import magma.result.Err;
+import magma.result.Result;
+
+import java.util.function.Supplier;
+
+/**
+ * Whether a failed {@link Rule#lex(Slice)} describes why it failed. By default it does; inside
+ * {@link #withoutDetails(Supplier)} every lexing failure is the same shared {@link #failure()}, so the search
+ * through alternatives allocates no messages, contexts or cause lists. A caller that has to report the failure lexes
+ * again inside {@link #withDetails(Supplier)} to rebuild the detailed error tree.
+ * <p>
+ * Both set the mode they need rather than relying on the previous one being restored: a lex that ends with an
+ * {@link Error}, such as a {@link StackOverflowError}, skips the restore, and the pooled worker keeps running.
+ */
+public final class Diagnostics {
+	private static final ThreadLocal<Boolean> DETAILED = ThreadLocal.withInitial(() -> true);
+	private static final CompileError FAILED =
+			new CompileError("Failed to lex (details are only collected when lexing again)", new InputContext(new Slice("")));
+	private static final Result<Node, CompileError> FAILURE = new Err<Node, CompileError>(FAILED);
+
+	public static boolean detailed() {
+		return DETAILED.get();
+	}
+
+	public static Result<Node, CompileError> failure() {
+		return FAILURE;
+	}
+
+	public static CompileError failed() {
+		return FAILED;
+	}
+
+	public static <T> T withDetails(Supplier<T> action) {
+		return within(true, action);
+	}
+
+	public static <T> T withoutDetails(Supplier<T> action) {
+		return within(false, action);
+	}
+
+	private static <T> T within(boolean detailed, Supplier<T> action) {
+		final boolean previous = DETAILED.get();
+		DETAILED.set(detailed);
+		final T result = action.get();
+		DETAILED.set(previous);
+		return result;
+	}
+}
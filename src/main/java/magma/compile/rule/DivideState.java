@@ -4,13 +4,21 @@ import magma.Tuple;
 import magma.list.ArrayList;
 import magma.list.List;
 import magma.list.Stream;
+import magma.option.None;
 import magma.option.Option;
 import magma.option.Some;
 
+/**
+ * Scan state of a {@link FoldingDivider}. As long as the characters appended to a segment are contiguous in the
+ * input, the segment is only recorded as a pair of offsets and emitted as a view of the input; a segment that
+ * skips characters is copied into a buffer instead.
+ */
 public class DivideState {
 	public final List<Slice> segments = new ArrayList<Slice>();
 	private final Slice input;
-	private StringBuilder buffer = new StringBuilder();
+	private Option<StringBuilder> spill = new None<StringBuilder>();
+	private int segmentStart = 0;
+	private int segmentEnd = 0;
 	private int depth = 0;
 	private int index;
 
@@ -28,16 +36,64 @@ public class DivideState {
 	}
 
 	public DivideState advance() {
-		segments.addLast(new Slice(buffer.toString()));
-		this.buffer = new StringBuilder();
+		segments.addLast(switch (spill) {
+			case None<StringBuilder> _ -> input.substring(segmentStart, segmentEnd);
+			case Some<StringBuilder>(StringBuilder buffer) -> new Slice(buffer.toString());
+		});
+		this.spill = new None<StringBuilder>();
+		this.segmentStart = index;
+		this.segmentEnd = index;
 		return this;
 	}
 
 	public DivideState append(char c) {
-		buffer.append(c);
+		if (spill instanceof Some<StringBuilder>(StringBuilder buffer)) {
+			buffer.append(c);
+			return this;
+		}
+
+		final int previous = index - 1;
+		if (segmentStart == segmentEnd) {
+			this.segmentStart = Math.max(previous, 0);
+			this.segmentEnd = segmentStart;
+		}
+
+		if (segmentEnd == previous && input.charAt(previous) == c) {
+			this.segmentEnd = index;
+			return this;
+		}
+
+		spill().append(c);
+		return this;
+	}
+
+	/**
+	 * Consumes and appends every character up to the next structural one (see {@link StructureIndex}) in one step.
+	 * Only valid for folders that append those characters unchanged.
+	 */
+	public DivideState appendPlain() {
+		final int to = input.nextStructural(index);
+		if (to == index) return this;
+		if (ScanHeatmap.enabled()) input.scanned(index, to);
+
+		if (spill instanceof Some<StringBuilder>(StringBuilder buffer)) buffer.append(input, index, to);
+		else if (segmentStart == segmentEnd) {
+			this.segmentStart = index;
+			this.segmentEnd = to;
+		} else if (segmentEnd == index) this.segmentEnd = to;
+		else spill().append(input, index, to);
+
+		this.index = to;
 		return this;
 	}
 
+	// The folders skip some characters (e.g. line comments), after which the segment is no longer one span.
+	private StringBuilder spill() {
+		final StringBuilder buffer = new StringBuilder(input.substring(segmentStart, segmentEnd));
+		this.spill = new Some<StringBuilder>(buffer);
+		return buffer;
+	}
+
 	public DivideState exit() {
 		this.depth = depth - 1;
 		return this;
@@ -52,7 +108,7 @@ public class DivideState {
 	}
 
 	public Option<Character> pop() {
-		final Option<Character> maybeNext = input.charAt(index);
+		final Option<Character> maybeNext = peek();
 		if (maybeNext instanceof Some<Character>) index++;
 		return maybeNext;
 	}
@@ -66,6 +122,7 @@ public class DivideState {
 	}
 
 	public Option<Character> peek() {
-		return input.charAt(index);
+		if (ScanHeatmap.enabled()) input.scanned(index, index + 1);
+		return input.findChar(index);
 	}
 }
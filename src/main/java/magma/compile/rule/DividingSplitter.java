@@ -31,7 +31,7 @@ public record DividingSplitter(Divider divider, Merger merger) implements Splitt
 	}
 
 	@Override
-	public String merge(String left, String right) {
-		return left + divider.delimiter() + right;
+	public String delimiter() {
+		return divider.delimiter();
 	}
 }
@@ -3,6 +3,9 @@ package magma.compile.rule;
 import magma.compile.Node;
 import magma.compile.context.InputContext;
 import magma.compile.error.CompileError;
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
 import magma.result.Err;
 import magma.result.Ok;
 import magma.result.Result;
@@ -13,11 +16,22 @@ public class EmptyRule implements Rule {
 	@Override
 	public Result<Node, CompileError> lex(Slice content) {
 		if (content.isEmpty()) return new Ok<Node, CompileError>(new Node());
+		if (!Diagnostics.detailed()) return Diagnostics.failure();
 		return new Err<Node, CompileError>(new CompileError("Content is not empty", new InputContext(content)));
 	}
 
 	@Override
-	public Result<String, CompileError> generate(Node node) {
-		return new Ok<String, CompileError>("");
+	public Option<CharSet> firstChars() {
+		return new Some<CharSet>(CharSet.emptyInput());
+	}
+
+	@Override
+	public Option<CharSet> lastChars() {
+		return new Some<CharSet>(CharSet.emptyInput());
+	}
+
+	@Override
+	public Option<CompileError> generate(Node node, StringBuilder output) {
+		return new None<CompileError>();
 	}
 }
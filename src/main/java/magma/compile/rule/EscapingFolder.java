@@ -71,6 +71,11 @@ public record EscapingFolder(Folder folder) implements Folder {
 		return new Tuple<Boolean, DivideState>(true, temp);
 	}
 
+	@Override
+	public Option<String> significantChars() {
+		return folder.significantChars().map(chars -> "'\"/" + chars);
+	}
+
 	@Override
 	public String delimiter() {
 		return folder.delimiter();
@@ -3,9 +3,12 @@ package magma.compile.rule;
 import magma.compile.Node;
 import magma.compile.context.InputContext;
 import magma.compile.error.CompileError;
+import magma.option.Option;
 import magma.result.Err;
 import magma.result.Result;
 
+import java.util.Set;
+
 public class FilterRule implements Rule {
 	private final Filter filter;
 	private final Rule rule;
@@ -15,7 +18,7 @@ public class FilterRule implements Rule {
 	}
 
 	public static Rule Filter(Filter filter, Rule rule) {
-		return new FilterRule(filter, rule);
+		return RuleProfiler.profile(new FilterRule(filter, rule));
 	}
 
 	public static Rule Identifier(Rule rule) {
@@ -28,12 +31,28 @@ public class FilterRule implements Rule {
 
 	@Override
 	public Result<Node, CompileError> lex(Slice content) {
-		if (filter.test(content.value())) return rule.lex(content);
+		if (filter.test(content)) return rule.lex(content);
+		if (!Diagnostics.detailed()) return Diagnostics.failure();
 		return new Err<Node, CompileError>(new CompileError(filter.createErrorMessage(), new InputContext(content)));
 	}
 
 	@Override
-	public Result<String, CompileError> generate(Node node) {
-		return rule.generate(node);
+	public Option<CharSet> firstChars() {
+		return rule.firstChars();
+	}
+
+	@Override
+	public Option<CharSet> lastChars() {
+		return rule.lastChars();
+	}
+
+	@Override
+	public Option<Set<String>> generatedTags() {
+		return rule.generatedTags();
+	}
+
+	@Override
+	public Option<CompileError> generate(Node node, StringBuilder output) {
+		return rule.generate(node, output);
 	}
 }
@@ -1,7 +1,18 @@
 package magma.compile.rule;
 
+import magma.option.None;
+import magma.option.Option;
+
 public interface Folder {
 	DivideState fold(DivideState state, char c);
 
+	/**
+	 * The characters this folder reacts to, if it only reacts to some; every other character must simply be
+	 * appended. Lets {@link FoldingDivider} skip runs of plain characters.
+	 */
+	default Option<String> significantChars() {
+		return new None<String>();
+	}
+
 	String delimiter();
 }
@@ -7,13 +7,18 @@ import magma.option.Some;
 
 public class FoldingDivider implements Divider {
 	private final Folder folder;
+	private final boolean skipsPlain;
 
-	public FoldingDivider(Folder folder) {this.folder = folder;}
+	public FoldingDivider(Folder folder) {
+		this.folder = folder;
+		this.skipsPlain = folder.significantChars().map(StructureIndex::covers).orElse(false);
+	}
 
 	@Override
 	public Stream<Slice> divide(Slice slice) {
 		DivideState current = new DivideState(slice);
 		while (true) {
+			if (skipsPlain) current = current.appendPlain();
 			final Option<Character> pop = current.pop();
 			if (pop instanceof None<Character>) break;
 			if (pop instanceof Some<Character>(Character c)) current = folder.fold(current, c);
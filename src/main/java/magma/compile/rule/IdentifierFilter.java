@@ -6,7 +6,7 @@ public class IdentifierFilter implements Filter {
 	public static final Filter Identifier = new IdentifierFilter();
 
 	@Override
-	public boolean test(String input) {
+	public boolean test(CharSequence input) {
 		Stream<Integer> integerStream = Stream.range(0, input.length());
 		return integerStream.map(input::charAt).allMatch(ch -> Character.isLetterOrDigit(ch) || ch == '_');
 	}
@@ -24,7 +24,7 @@ public record InfixSplitter(String infix, Locator locator) implements Splitter {
 	}
 
 	@Override
-	public String merge(String left, String right) {
-		return left + infix + right;
+	public String delimiter() {
+		return infix;
 	}
 }
@@ -1,7 +1,6 @@
 package magma.compile.rule;
 
 import magma.Tuple;
-import magma.list.Joiner;
 import magma.list.List;
 import magma.option.None;
 import magma.option.Option;
@@ -14,10 +13,7 @@ public class KeepFirstMerger implements Merger {
 
 		// Split into first segment and the rest
 		final Slice left = segments.getFirst().orElse(null);
-		final Slice right = new Slice(segments.subListOrEmpty(1, segments.size())
-																					.stream()
-																					.map(Slice::value)
-																					.collect(new Joiner(delimiter)));
+		final Slice right = Slice.join(segments.subListOrEmpty(1, segments.size()), delimiter);
 
 		return new Some<Tuple<Slice, Slice>>(new Tuple<Slice, Slice>(left, right));
 	}
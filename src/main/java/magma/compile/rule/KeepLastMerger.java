@@ -1,7 +1,6 @@
 package magma.compile.rule;
 
 import magma.Tuple;
-import magma.list.Joiner;
 import magma.list.List;
 import magma.option.None;
 import magma.option.Option;
@@ -13,10 +12,7 @@ public class KeepLastMerger implements Merger {
 		if (segments.size() < 2) return new None<Tuple<Slice, Slice>>();
 
 		// Join all but last element
-		final Slice left = new Slice(segments.subListOrEmpty(0, segments.size() - 1)
-																				 .stream()
-																				 .map(Slice::value)
-																				 .collect(new Joiner(delimiter)));
+		final Slice left = Slice.join(segments.subListOrEmpty(0, segments.size() - 1), delimiter);
 
 		final Option<Slice> lastOpt = segments.getLast();
 		if (lastOpt instanceof Some<Slice>(Slice right))
@@ -10,8 +10,12 @@ import magma.option.Some;
 import magma.result.Err;
 import magma.result.Result;
 
+import java.util.Set;
+import java.util.function.Function;
+
 public class LazyRule implements Rule {
 	private Option<Rule> maybeChild = new None<Rule>();
+	private final ThreadLocal<Boolean> resolving = ThreadLocal.withInitial(() -> false);
 
 	public void set(Rule rule) {
 		maybeChild = new Some<Rule>(rule);
@@ -19,6 +23,10 @@ public class LazyRule implements Rule {
 
 	@Override
 	public Result<Node, CompileError> lex(Slice content) {
+		return LexMemo.lex(this, content, () -> lexChild(content));
+	}
+
+	private Result<Node, CompileError> lexChild(Slice content) {
 		return switch (maybeChild.map(child -> child.lex(content))) {
 			case None<Result<Node, CompileError>> _ ->
 					new Err<Node, CompileError>(new CompileError("Child not set", new InputContext(content)));
@@ -27,10 +35,34 @@ public class LazyRule implements Rule {
 	}
 
 	@Override
-	public Result<String, CompileError> generate(Node node) {
-		return switch (maybeChild.map(child -> child.generate(node))) {
-			case None<Result<String, CompileError>> _ -> new Err<String, CompileError>(new CompileError("Child not set", new NodeContext(node)));
-			case Some<Result<String, CompileError>> v -> v.value();
+	public Option<CharSet> firstChars() {
+		return resolve(Rule::firstChars);
+	}
+
+	@Override
+	public Option<CharSet> lastChars() {
+		return resolve(Rule::lastChars);
+	}
+
+	@Override
+	public Option<Set<String>> generatedTags() {
+		return resolve(Rule::generatedTags);
+	}
+
+	// The grammar is recursive through lazy rules; a rule reached again while resolving is treated as unknown.
+	private <T> Option<T> resolve(Function<Rule, Option<T>> property) {
+		if (resolving.get()) return new None<T>();
+		resolving.set(true);
+		final Option<T> resolved = maybeChild.flatMap(property);
+		resolving.set(false);
+		return resolved;
+	}
+
+	@Override
+	public Option<CompileError> generate(Node node, StringBuilder output) {
+		return switch (maybeChild) {
+			case None<Rule> _ -> Option.of(new CompileError("Child not set", new NodeContext(node)));
+			case Some<Rule>(Rule child) -> child.generate(node, output);
 		};
 	}
 }
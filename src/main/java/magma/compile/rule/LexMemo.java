@@ -0,0 +1,109 @@
+package magma.compile.rule;
+
+import magma.Tuple;
+import magma.compile.Node;
+import magma.compile.error.CompileError;
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
+import magma.result.Result;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Packrat memo table for {@link Rule#lex(Slice)}, keyed by rule identity and the lexed span.
+ * A table only exists while {@link #within(Supplier)} runs, so its lifetime is one compilation unit on one thread;
+ * outside of it, {@link LazyRule} and {@link OrRule} lex exactly as before.
+ * <p>
+ * The hits and misses of every table are added up across threads until {@link #report()}, so a parallel build reports
+ * them once instead of once per file from whichever worker lexed it.
+ */
+public final class LexMemo {
+	private static final ThreadLocal<Option<LexMemo>> CURRENT = ThreadLocal.withInitial(None::new);
+	private static final LongAdder TABLES = new LongAdder();
+	private static final LongAdder TOTAL_HITS = new LongAdder();
+	private static final LongAdder TOTAL_MISSES = new LongAdder();
+	private static final LongAdder TOTAL_ENTRIES = new LongAdder();
+	private final Map<Key, Result<Node, CompileError>> table = new HashMap<Key, Result<Node, CompileError>>();
+	private int hits = 0;
+	private int misses = 0;
+
+	private record Key(Rule rule, Slice slice) {
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Key key && key.rule == rule && key.slice.equals(slice);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(System.identityHashCode(rule), slice);
+		}
+	}
+
+	public static <T> Tuple<T, LexMemo> within(Supplier<T> action) {
+		final LexMemo memo = new LexMemo();
+		final Option<LexMemo> previous = CURRENT.get();
+		CURRENT.set(new Some<LexMemo>(memo));
+		final T result = action.get();
+		CURRENT.set(previous);
+		memo.addToTotals();
+		return new Tuple<T, LexMemo>(result, memo);
+	}
+
+	private void addToTotals() {
+		TABLES.increment();
+		TOTAL_HITS.add(hits);
+		TOTAL_MISSES.add(misses);
+		TOTAL_ENTRIES.add(table.size());
+	}
+
+	/**
+	 * The hits and misses of every table since the last report, on one line, or nothing when no table was used.
+	 */
+	public static Option<String> report() {
+		final long tables = TABLES.sumThenReset();
+		final long hits = TOTAL_HITS.sumThenReset();
+		final long misses = TOTAL_MISSES.sumThenReset();
+		final long entries = TOTAL_ENTRIES.sumThenReset();
+		if (tables == 0) return new None<String>();
+		return new Some<String>("Memo: " + tables + " lexes, " + describe(hits, misses, entries));
+	}
+
+	static Result<Node, CompileError> lex(Rule rule, Slice content, Supplier<Result<Node, CompileError>> lexer) {
+		return switch (CURRENT.get()) {
+			case None<LexMemo> _ -> lexer.get();
+			case Some<LexMemo>(LexMemo memo) -> memo.lookup(new Key(rule, content), lexer);
+		};
+	}
+
+	// Callers retype and merge the node they get back, so only shallow copies ever leave the table.
+	private static Result<Node, CompileError> copy(Result<Node, CompileError> result) {
+		return result.mapValue(node -> new Node().merge(node));
+	}
+
+	private Result<Node, CompileError> lookup(Key key, Supplier<Result<Node, CompileError>> lexer) {
+		if (Option.ofNullable(table.get(key)) instanceof Some<Result<Node, CompileError>>(
+				Result<Node, CompileError> cached
+		)) {
+			hits++;
+			return copy(cached);
+		}
+
+		misses++;
+		final Result<Node, CompileError> computed = lexer.get();
+		table.put(key, computed);
+		return copy(computed);
+	}
+
+	private static String describe(long hits, long misses, long entries) {
+		final long lookups = hits + misses;
+		final long rate;
+		if (lookups == 0) rate = 0;
+		else rate = Math.floorDiv(Math.multiplyExact(hits, 100), lookups);
+		return hits + " hits, " + misses + " misses (" + rate + "% hit rate), " + entries + " entries";
+	}
+}
@@ -8,20 +8,19 @@ import magma.list.ArrayList;
 import magma.list.List;
 import magma.list.NonEmptyList;
 import magma.option.None;
+import magma.option.Option;
 import magma.option.Some;
 import magma.result.Err;
 import magma.result.Ok;
 import magma.result.Result;
 
-import java.util.StringJoiner;
-
 /**
  * A rule that handles node lists.
- * Lists are only stored in Node.nodeLists when non-empty (enforced by
+ * Lists are only stored in a Node when non-empty (enforced by
  * NonEmptyList type).
  * Generation fails when list is missing (allowing Or to try alternatives).
- * When list is present, iterates through each element, generates it, and joins
- * with the divider.
+ * When list is present, generates each element into the output, with the
+ * divider's delimiter between them.
  *
  * @param key     the key for the node list
  * @param rule    the rule to apply to each element
@@ -29,15 +28,17 @@ import java.util.StringJoiner;
  */
 public record NodeListRule(String key, Rule rule, Divider divider) implements Rule {
 	public static Rule Statements(String key, Rule rule) {
-		return new NodeListRule(key, rule, new FoldingDivider(new EscapingFolder(new StatementFolder())));
+		final Divider divider = new FoldingDivider(new EscapingFolder(new StatementFolder()));
+		return RuleProfiler.profile(new NodeListRule(key, rule, divider));
 	}
 
 	public static Rule Delimited(String key, Rule rule, String delimiter) {
-		return new NodeListRule(key, rule, new DelimitedRule(delimiter));
+		return RuleProfiler.profile(new NodeListRule(key, rule, new DelimitedRule(delimiter)));
 	}
 
 	public static Rule Expressions(String key, Rule rule) {
-		return new NodeListRule(key, rule, new FoldingDivider(new EscapingFolder(new ValueFolder())));
+		final Divider divider = new FoldingDivider(new EscapingFolder(new ValueFolder()));
+		return RuleProfiler.profile(new NodeListRule(key, rule, divider));
 	}
 
 	/**
@@ -49,12 +50,12 @@ public record NodeListRule(String key, Rule rule, Divider divider) implements Ru
 	 * @return a node list rule with empty delimiter
 	 */
 	public static Rule NonEmptyList(String key, Rule rule) {
-		return new NodeListRule(key, rule, new DelimitedRule(""));
+		return RuleProfiler.profile(new NodeListRule(key, rule, new DelimitedRule("")));
 	}
 
 	@Override
 	public Result<Node, CompileError> lex(Slice slice) {
-		return divider.divide(slice)
+		final Result<Node, CompileError> lex = divider.divide(slice)
 									.reduce(new Ok<List<Node>, CompileError>(new ArrayList<Node>()), this::fold)
 									.mapValue(list -> {
 										// Only add to nodeLists if non-empty
@@ -62,19 +63,18 @@ public record NodeListRule(String key, Rule rule, Divider divider) implements Ru
 										return NonEmptyList.fromList(list)
 																			 .map(nonEmptyList -> new Node().withNodeList(key, nonEmptyList))
 																			 .orElse(new Node()); // Should never happen since we checked isEmpty
-									})
-									.mapErr(err -> new CompileError("Failed to lex segments for key '" + key + "'",
-																									new InputContext(slice),
-																									List.of(err)));
+									});
+		if (!Diagnostics.detailed()) return lex;
+		return lex.mapErr(err -> new CompileError("Failed to lex segments for key '" + key + "'",
+																							new InputContext(slice),
+																							List.of(err)));
 	}
 
 	private Result<List<Node>, CompileError> fold(Result<List<Node>, CompileError> current, Slice element) {
 		return switch (current) {
 			case Err<List<Node>, CompileError> v -> new Err<List<Node>, CompileError>(v.error());
 			case Ok<List<Node>, CompileError>(List<Node> list) -> switch (rule.lex(element)) {
-				case Err<Node, CompileError> v -> new Err<List<Node>, CompileError>(new CompileError("Failed to lex segment",
-																																														 new InputContext(element),
-																																														 List.of(v.error())));
+				case Err<Node, CompileError> v -> new Err<List<Node>, CompileError>(segmentError(element, v.error()));
 				case Ok<Node, CompileError>(Node node) -> {
 					list.addLast(node);
 					yield new Ok<List<Node>, CompileError>(list);
@@ -83,39 +83,40 @@ public record NodeListRule(String key, Rule rule, Divider divider) implements Ru
 		};
 	}
 
+	private CompileError segmentError(Slice element, CompileError error) {
+		if (!Diagnostics.detailed()) return error;
+		return new CompileError("Failed to lex segment", new InputContext(element), List.of(error));
+	}
+
 	@Override
-	public Result<String, CompileError> generate(Node value) {
+	public Option<CompileError> generate(Node value, StringBuilder output) {
 		return switch (value.findNodeList(key)) {
 			// List missing - fail to allow Or to try alternatives
-			case None<?> _ -> new Err<String, CompileError>(new CompileError("Node list '" + key + "' not present",
-																																			 new NodeContext(value)));
+			case None<?> _ -> Option.of(new CompileError("Node list '" + key + "' not present", new NodeContext(value)));
 			// List present and non-empty - iterate and generate each element
-			case Some<NonEmptyList<Node>>(NonEmptyList<Node> list) -> generateList(list);
+			case Some<NonEmptyList<Node>>(NonEmptyList<Node> list) -> generateList(list, output);
 		};
 	}
 
-	private Result<String, CompileError> generateList(NonEmptyList<Node> list) {
-		final StringJoiner sb = new StringJoiner(divider.delimiter());
+	private Option<CompileError> generateList(NonEmptyList<Node> list, StringBuilder output) {
+		final String delimiter = divider.delimiter();
+		Option<CompileError> error = new None<CompileError>();
 		int i = 0;
-		while (i < list.size()) {
-			switch (list.get(i)) {
-				case Some<Node>(Node child) -> {
-					switch (rule.generate(child)) {
-						case Ok<String, CompileError>(String generated) -> sb.add(generated);
-						case Err<String, CompileError>(CompileError error) -> {
-							return new Err<String, CompileError>(error);
-						}
-					}
-				}
-				case None<?> _ -> {
-					// Should never happen - NonEmptyList guarantees elements exist
-					return new Err<String, CompileError>(new CompileError(
-							"Unexpected missing element in NonEmptyList at index " + i, new NodeContext(list.first())));
-				}
-			}
+		while (i < list.size() && error instanceof None<CompileError>) {
+			if (0 < i) output.append(delimiter);
+			error = generateElement(list, i, output);
 			i++;
 		}
-		return new Ok<String, CompileError>(sb.toString());
+		return error;
+	}
+
+	private Option<CompileError> generateElement(NonEmptyList<Node> list, int index, StringBuilder output) {
+		return switch (list.get(index)) {
+			case Some<Node>(Node child) -> rule.generate(child, output);
+			// Should never happen - NonEmptyList guarantees elements exist
+			case None<?> _ -> Option.of(new CompileError("Unexpected missing element in NonEmptyList at index " + index,
+																									 new NodeContext(list.first())));
+		};
 	}
 
 }
@@ -6,29 +6,39 @@ import magma.compile.context.NodeContext;
 import magma.compile.error.CompileError;
 import magma.list.List;
 import magma.option.None;
+import magma.option.Option;
 import magma.option.Some;
-import magma.result.Err;
 import magma.result.Result;
 
 public record NodeRule(String key, Rule rule) implements Rule {
 	public static Rule Node(String key, Rule rule) {
-		return new NodeRule(key, rule);
+		return RuleProfiler.profile(new NodeRule(key, rule));
 	}
 
 	@Override
 	public Result<Node, CompileError> lex(Slice content) {
-		return rule.lex(content)
-							 .mapValue(node -> new Node().withNode(key, node))
-							 .mapErr(error -> new CompileError("Failed to attach node '" + key + "'",
+		final Result<Node, CompileError> lex = rule.lex(content).mapValue(node -> new Node().withNode(key, node));
+		if (!Diagnostics.detailed()) return lex;
+		return lex.mapErr(error -> new CompileError("Failed to attach node '" + key + "'",
 																								 new InputContext(content),
 																								 List.of(error)));
 	}
 
 	@Override
-	public Result<String, CompileError> generate(Node node) {
+	public Option<CharSet> firstChars() {
+		return rule.firstChars();
+	}
+
+	@Override
+	public Option<CharSet> lastChars() {
+		return rule.lastChars();
+	}
+
+	@Override
+	public Option<CompileError> generate(Node node, StringBuilder output) {
 		return switch (node.findNode(key)) {
-			case None<Node> _ -> new Err<String, CompileError>(new CompileError("Node '" + key + "' not present", new NodeContext(node)));
-			case Some<Node> v -> rule.generate(v.value());
+			case None<Node> _ -> Option.of(new CompileError("Node '" + key + "' not present", new NodeContext(node)));
+			case Some<Node> v -> rule.generate(v.value(), output);
 		};
 	}
 }
@@ -6,9 +6,9 @@ public class NumberFilter implements Filter {
 	public static final Filter Filter = new NumberFilter();
 
 	@Override
-	public boolean test(String input) {
-		final String s;
-		if (input.startsWith("-")) s = input.substring(1);
+	public boolean test(CharSequence input) {
+		final CharSequence s;
+		if (!input.isEmpty() && input.charAt(0) == '-') s = input.subSequence(1, input.length());
 		else s = input;
 		Stream<Integer> integerStream = Stream.range(0, s.length());
 		return integerStream.map(s::charAt).allMatch(Character::isDigit);
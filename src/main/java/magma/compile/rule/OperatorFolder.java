@@ -0,0 +1,35 @@
+package magma.compile.rule;
+
+import magma.option.Option;
+import magma.option.Some;
+
+/**
+ * Splits at every occurrence of an operator. Note that only the first character has to match: for a
+ * two-character operator whose second character is missing, the divider still splits but consumes one character.
+ */
+public record OperatorFolder(Slice operator) implements Folder {
+	@Override
+	public DivideState fold(DivideState state, char c) {
+		if (c == operator.value().charAt(0)) {
+			if (operator.value().length() > 1 && state.peek() instanceof Some<Character>(Character next) &&
+					next == operator.value().charAt(1)) {
+				state.pop();
+				return state.advance();
+			}
+
+			return state.advance();
+		}
+
+		return state.append(c);
+	}
+
+	@Override
+	public Option<String> significantChars() {
+		return Option.of(operator.value().substring(0, 1));
+	}
+
+	@Override
+	public String delimiter() {
+		return operator.value();
+	}
+}
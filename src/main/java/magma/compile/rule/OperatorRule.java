@@ -0,0 +1,84 @@
+package magma.compile.rule;
+
+import magma.Tuple;
+import magma.compile.Node;
+import magma.compile.context.InputContext;
+import magma.compile.context.NodeContext;
+import magma.compile.error.CompileError;
+import magma.list.List;
+import magma.list.ListCollector;
+import magma.option.Option;
+import magma.result.Result;
+
+/**
+ * A group of binary operators, tried in order like an {@link OrRule} of {@code Tag(tag, Split(left, infix, right))}
+ * alternatives. The input is scanned once for all of them (see {@link OperatorScan}) instead of once per operator.
+ */
+public record OperatorRule(List<Bound> operators, OrRule.Selection selection) implements Rule {
+	public record Operator(String tag, String infix) {
+		// Constructed directly rather than through the profiled factories, as they were when built for each input.
+		private Bound bind(Rule leftRule, Rule rightRule) {
+			final Splitter fallback =
+					DividingSplitter.KeepFirst(new FoldingDivider(new EscapingFolder(new OperatorFolder(new Slice(infix)))));
+			final SplitRule split = new SplitRule(leftRule, rightRule, fallback, new SplitRule.LeftFirst());
+			return new Bound(infix, split, new TagRule(tag, split));
+		}
+	}
+
+	/**
+	 * An operator with its rules built once for the operands of an {@link OperatorRule}. Lexing an input only creates
+	 * the splitter that reads the input's scan; the fallback splitter and the rules are shared.
+	 */
+	record Bound(String infix, SplitRule split, TagRule rule) {
+		private Result<Node, CompileError> lex(Slice content, OperatorScan scan) {
+			return rule.tagged(content, split.lex(content, new ScannedSplitter(scan, infix, split.splitter())));
+		}
+	}
+
+	private record ScannedSplitter(OperatorScan scan, String infix, Splitter fallback) implements Splitter {
+		@Override
+		public Option<Tuple<Slice, Slice>> split(Slice slice) {
+			return scan.split(infix, fallback);
+		}
+
+		@Override
+		public String createErrorMessage() {
+			return fallback.createErrorMessage();
+		}
+
+		@Override
+		public String delimiter() {
+			return fallback.delimiter();
+		}
+	}
+
+	public static Operator Operator(String tag, String infix) {
+		return new Operator(tag, infix);
+	}
+
+	public static Rule Operators(Rule leftRule, Rule rightRule, Operator... operators) {
+		final List<Bound> bound = List.of(operators)
+																	.stream()
+																	.map(operator -> operator.bind(leftRule, rightRule))
+																	.collect(new ListCollector<Bound>());
+		return RuleProfiler.profile(new OperatorRule(bound, OrRule.defaultSelection()));
+	}
+
+	@Override
+	public Result<Node, CompileError> lex(Slice content) {
+		final OperatorScan scan = new OperatorScan(content);
+		final Result<Node, List<CompileError>> lex =
+				selection.select(operators, operator -> operator.lex(content, scan), () -> new InputContext(content));
+		if (!Diagnostics.detailed()) return lex.mapErr(errors -> Diagnostics.failed());
+		return lex.mapErr(errors -> new CompileError("No operator matched for input", new InputContext(content), errors));
+	}
+
+	@Override
+	public Option<CompileError> generate(Node node, StringBuilder output) {
+		return selection.selectInto(operators,
+																(operator, text) -> operator.rule().generate(node, text),
+																output,
+																() -> new NodeContext(node))
+										.map(errors -> new CompileError("No operator matched for node", new NodeContext(node), errors));
+	}
+}
@@ -0,0 +1,121 @@
+package magma.compile.rule;
+
+import magma.Tuple;
+import magma.list.ArrayList;
+import magma.list.List;
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
+
+/**
+ * One pass over an expression that records where operator characters occur outside of char and string literals,
+ * skipping literals exactly like {@link EscapingFolder} does. Every operator of an {@link OperatorRule} derives its
+ * split from the recorded positions instead of dividing the expression again.
+ */
+public final class OperatorScan {
+	private static final String OPERATOR_CHARS = "<>=!|&-+";
+	private final Slice input;
+	private final List<Integer> positions = new ArrayList<Integer>();
+	private boolean hasComment = false;
+	private int index = 0;
+
+	public OperatorScan(Slice input) {
+		this.input = input;
+		while (index < input.length() && !hasComment) step();
+		if (ScanHeatmap.enabled()) input.scanned(0, Math.min(index, input.length()));
+	}
+
+	private void step() {
+		this.index = input.nextStructural(index);
+		if (index < input.length()) fold(input.charAt(index));
+	}
+
+	private void fold(char c) {
+		index++;
+		if (c == '\'') skipCharLiteral();
+		else if (c == '\"') skipStringLiteral();
+		else if (c == '/') hasComment = isCommentStart();
+		else if (OPERATOR_CHARS.indexOf(c) != -1) positions.addLast(index - 1);
+	}
+
+	private void skipCharLiteral() {
+		if (index < input.length()) skipCharLiteralContent(input.charAt(index));
+	}
+
+	private void skipCharLiteralContent(char next) {
+		index++;
+		if (next == '\\' && index < input.length()) index++;
+		if (index < input.length()) index++;
+	}
+
+	private void skipStringLiteral() {
+		boolean open = true;
+		while (open && index < input.length()) open = skipStringChar(input.charAt(index));
+	}
+
+	private boolean skipStringChar(char next) {
+		index++;
+		if (next == '\\') {
+			if (index < input.length()) index++;
+			return true;
+		}
+		return next != '\"';
+	}
+
+	private boolean isCommentStart() {
+		return input.findChar(index).map(next -> next == '/' || next == '*').orElse(false);
+	}
+
+	/**
+	 * Splits like {@code KeepFirst} over an {@link OperatorFolder} for {@code infix}: at the first occurrence, with
+	 * the rest re-joined by {@code infix}. Where that re-join would not reproduce the original text (comments, or a
+	 * two-character operator whose first character also occurs alone), the given splitter is used instead.
+	 */
+	public Option<Tuple<Slice, Slice>> split(String infix, Splitter fallback) {
+		if (hasComment) return fallback.split(input);
+		return switch (findFrom(infix, 0)) {
+			case None<Integer> _ -> new None<Tuple<Slice, Slice>>();
+			case Some<Integer>(Integer first) -> {
+				final int rest = end(infix, first);
+				if (!isExactFrom(infix, rest)) yield fallback.split(input);
+				yield new Some<Tuple<Slice, Slice>>(new Tuple<Slice, Slice>(input.substring(0, first), input.substring(rest)));
+			}
+		};
+	}
+
+	private Option<Integer> findFrom(String infix, int from) {
+		int i = 0;
+		while (i < positions.size()) {
+			if (positions.get(i) instanceof Some<Integer>(Integer position) && from <= position &&
+					input.charAt(position) == infix.charAt(0)) return new Some<Integer>(position);
+			i++;
+		}
+		return new None<Integer>();
+	}
+
+	private int end(String infix, int position) {
+		final int next = position + 1;
+		if (infix.length() == 1) return next;
+		if (input.findChar(next) instanceof Some<Character>(Character c) && c == infix.charAt(1)) return next + 1;
+		return next;
+	}
+
+	// KeepFirst re-joins with a Joiner, which drops the delimiter while the joined text is still empty.
+	private boolean isExactFrom(String infix, int from) {
+		return switch (findFrom(infix, from)) {
+			case None<Integer> _ -> true;
+			case Some<Integer>(Integer next) -> from < next && isWholeFrom(infix, next);
+		};
+	}
+
+	private boolean isWholeFrom(String infix, int from) {
+		if (infix.length() == 1) return true;
+		Option<Integer> found = new Some<Integer>(from);
+		while (found instanceof Some<Integer>(Integer position)) {
+			final int next = end(infix, position);
+			if (next == position + 1) return false;
+			found = findFrom(infix, next);
+		}
+		return true;
+	}
+}
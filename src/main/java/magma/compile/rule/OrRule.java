@@ -6,30 +6,259 @@ import magma.compile.context.Context;
 import magma.compile.context.InputContext;
 import magma.compile.context.NodeContext;
 import magma.compile.error.CompileError;
+import magma.list.ArrayList;
 import magma.list.List;
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
+import magma.result.Err;
+import magma.result.Ok;
 import magma.result.Result;
 
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
-public record OrRule(List<Rule> rules) implements Rule {
+/**
+ * Tries each alternative in order. How the winning alternative is chosen is decided by the {@link Selection};
+ * the default is {@link FirstMatch}, which can be overridden with the {@code magma.or} system property
+ * ({@code first}, {@code last} or {@code verify}). When lexing, alternatives that cannot start or end with the
+ * input's first or last character are skipped (see {@link CharDispatch}). When generating, alternatives that
+ * require another tag than the node's are skipped (see {@link TagDispatch}).
+ */
+public record OrRule(List<Rule> rules, Selection selection, CharDispatch dispatch, TagDispatch tags) implements Rule {
+	private static final String SELECTION = System.getProperty("magma.or", "first");
+	private static final Selection FIRST_MATCH = new FirstMatch();
+	private static final Selection LAST_MATCH = new LastMatch();
+	private static final int MAX_REPORTED_CONTEXT = 120;
+
+	public OrRule(List<Rule> rules) {
+		this(rules, defaultSelection());
+	}
+
+	public OrRule(List<Rule> rules, Selection selection) {
+		this(rules, selection, new CharDispatch(rules), new TagDispatch(rules));
+	}
+
+	public sealed interface Selection {
+		// Each verified Or is named after the grammar line that built it, so that its findings can be told apart.
+		static Selection fromName(String name) {
+			if (name.equals("last")) return LAST_MATCH;
+			if (name.equals("verify")) return new Verifying(RuleProfiler.site());
+			return FIRST_MATCH;
+		}
+
+		<R, T> Result<T, List<CompileError>> select(List<R> rules,
+																								Function<R, Result<T, CompileError>> mapper,
+																								Supplier<Context> context);
+
+		/**
+		 * Like {@link #select}, for alternatives that append what they generate to {@code output}. Only the text of the
+		 * selected alternative is left in {@code output}. By default, every alternative is generated on its own and the
+		 * selected text is appended.
+		 */
+		default <R> Option<List<CompileError>> selectInto(List<R> rules,
+																										 BiFunction<R, StringBuilder, Option<CompileError>> writer,
+																										 StringBuilder output,
+																										 Supplier<Context> context) {
+			return switch (select(rules, rule -> Accumulator.written(writer, rule), context)) {
+				case Ok<String, List<CompileError>>(String text) -> {
+					output.append(text);
+					yield new None<List<CompileError>>();
+				}
+				case Err<String, List<CompileError>>(List<CompileError> errors) -> Option.of(errors);
+			};
+		}
+	}
+
+	/**
+	 * Stops at the first alternative that succeeds.
+	 */
+	public static final class FirstMatch implements Selection {
+		@Override
+		public <R, T> Result<T, List<CompileError>> select(List<R> rules,
+																											 Function<R, Result<T, CompileError>> mapper,
+																											 Supplier<Context> context) {
+			return Accumulator.mergeFirst(rules, mapper);
+		}
+
+		// Each alternative appends straight to the output, which is rolled back when it fails.
+		@Override
+		public <R> Option<List<CompileError>> selectInto(List<R> rules,
+																										BiFunction<R, StringBuilder, Option<CompileError>> writer,
+																										StringBuilder output,
+																										Supplier<Context> context) {
+			return Accumulator.writeFirst(rules, writer, output);
+		}
+	}
+
+	/**
+	 * Evaluates every alternative and keeps the last one that succeeded.
+	 */
+	public static final class LastMatch implements Selection {
+		@Override
+		public <R, T> Result<T, List<CompileError>> select(List<R> rules,
+																											 Function<R, Result<T, CompileError>> mapper,
+																											 Supplier<Context> context) {
+			return Accumulator.merge(rules, mapper);
+		}
+	}
+
+	/**
+	 * Evaluates every alternative and returns the first match. Whenever the last match would have produced a different
+	 * result, i.e. whenever the grammar still depends on the order of the alternatives, the pair of alternatives is
+	 * counted for the {@code Or} that built this selection, and {@link #report()} lists each pair once with its count.
+	 * <p>
+	 * {@code Lang.Invalid()} accepts any input and is meant to win, so pairs that include it are not counted.
+	 */
+	public static final class Verifying implements Selection {
+		private static final String CATCH_ALL = "invalid";
+		private static final Map<String, Finding> FINDINGS = new ConcurrentHashMap<String, Finding>();
+		private final String site;
+
+		// How often a pair of alternatives disagreed, and the first input they disagreed on.
+		private record Finding(String key, String example, LongAdder count) {
+			private long times() {
+				return count.sum();
+			}
+
+			private String row() {
+				return key + ", " + times() + " times, e.g. for: " + example;
+			}
+		}
+
+		public Verifying(String site) {
+			this.site = site;
+		}
+
+		private static String describe(Object value) {
+			if (value instanceof Node node) return node.format(0, Integer.MAX_VALUE);
+			return String.valueOf(value);
+		}
+
+		private static String name(Object value) {
+			if (value instanceof Node node) return "'" + node.maybeType.orElse("untagged") + "'";
+			return "generated text";
+		}
+
+		private static String abbreviate(String text) {
+			final String line = text.strip().replace(System.lineSeparator(), " ").replace("\n", " ");
+			if (line.length() <= MAX_REPORTED_CONTEXT) return line;
+			return line.substring(0, MAX_REPORTED_CONTEXT) + "...";
+		}
+
+		/**
+		 * The order-dependent pairs found since the last report, most frequent first, one per line.
+		 */
+		public static String report() {
+			final java.util.List<String> rows = FINDINGS.values()
+																									.stream()
+																									.sorted(Comparator.comparingLong(Finding::times).reversed())
+																									.map(Finding::row)
+																									.toList();
+			FINDINGS.clear();
+			if (rows.isEmpty()) return "No Or depends on the order of its alternatives";
+			return "Order-dependent Or alternatives:" + System.lineSeparator() + String.join(System.lineSeparator(), rows);
+		}
+
+		@Override
+		public <R, T> Result<T, List<CompileError>> select(List<R> rules,
+																											 Function<R, Result<T, CompileError>> mapper,
+																											 Supplier<Context> context) {
+			final List<T> matches = new ArrayList<T>();
+			final List<CompileError> errors = new ArrayList<CompileError>();
+			int i = 0;
+			while (i < rules.size()) {
+				if (rules.get(i) instanceof Some<R>(R rule)) switch (mapper.apply(rule)) {
+					case Ok<T, CompileError>(T value) -> matches.addLast(value);
+					case Err<T, CompileError>(CompileError error) -> errors.addLast(error);
+				}
+				i++;
+			}
+
+			if (!(matches.getFirst() instanceof Some<T>(T first))) return new Err<T, List<CompileError>>(errors);
+
+			final T last = matches.getLast().orElse(first);
+			if (!isCatchAll(first) && !isCatchAll(last) && !describe(first).equals(describe(last)))
+				count(name(first), name(last), context);
+			return new Ok<T, List<CompileError>>(first);
+		}
+
+		private static boolean isCatchAll(Object value) {
+			return value instanceof Node node && node.is(CATCH_ALL);
+		}
+
+		private void count(String first, String last, Supplier<Context> context) {
+			final String key = "Or at " + site + ": " + first + " matches first, but " + last + " matches last";
+			FINDINGS.computeIfAbsent(key, ignored -> new Finding(key, abbreviate(context.get().display(0)), new LongAdder()))
+							.count()
+							.increment();
+		}
+	}
+
+	/**
+	 * What {@code -Dmagma.or=verify} found since the last report, or nothing in the other modes.
+	 */
+	public static Option<String> orderReport() {
+		if (!SELECTION.equals("verify")) return new None<String>();
+		return new Some<String>(Verifying.report());
+	}
+
+	static Selection defaultSelection() {
+		return Selection.fromName(SELECTION);
+	}
+
 	public static Rule Or(Rule... rules) {
-		return new OrRule(List.of(rules));
+		return RuleProfiler.profile(new OrRule(List.of(rules)));
 	}
 
 	@Override
 	public Result<Node, CompileError> lex(Slice content) {
-		return foldAll(rule1 -> rule1.lex(content), () -> new InputContext(content));
+		return LexMemo.lex(this,
+											 content,
+											 () -> lexCandidates(content));
+	}
+
+	private Result<Node, CompileError> lexCandidates(Slice content) {
+		final List<Rule> candidates = dispatch.candidates(content);
+		if (Diagnostics.detailed()) return foldAll(candidates, rule -> rule.lex(content), () -> new InputContext(content));
+		return selection.select(candidates, rule -> rule.lex(content), () -> new InputContext(content))
+										.mapErr(errors -> Diagnostics.failed());
+	}
+
+	@Override
+	public Option<CharSet> firstChars() {
+		return dispatch.firstChars();
+	}
+
+	@Override
+	public Option<CharSet> lastChars() {
+		return dispatch.lastChars();
+	}
+
+	@Override
+	public Option<Set<String>> generatedTags() {
+		return tags.generatedTags();
 	}
 
-	private <T> Result<T, CompileError> foldAll(Function<Rule, Result<T, CompileError>> mapper,
+	private <T> Result<T, CompileError> foldAll(List<Rule> candidates,
+																							Function<Rule, Result<T, CompileError>> mapper,
 																							Supplier<Context> context) {
-		return Accumulator.merge(rules, mapper)
-											.mapErr(errors -> new CompileError("No alternative matched for input", context.get(), errors));
+		return selection.select(candidates, mapper, context)
+										.mapErr(errors -> new CompileError("No alternative matched for input", context.get(), errors));
 	}
 
 	@Override
-	public Result<String, CompileError> generate(Node node) {
-		return foldAll(rule1 -> rule1.generate(node), () -> new NodeContext(node));
+	public Option<CompileError> generate(Node node, StringBuilder output) {
+		return selection.selectInto(tags.candidates(node),
+																(rule, text) -> rule.generate(node, text),
+																output,
+																() -> new NodeContext(node))
+										.map(errors -> new CompileError("No alternative matched for input", new NodeContext(node), errors));
 	}
 }
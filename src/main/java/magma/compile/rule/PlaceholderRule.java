@@ -2,15 +2,21 @@ package magma.compile.rule;
 
 import magma.compile.Node;
 import magma.compile.error.CompileError;
+import magma.option.None;
+import magma.option.Option;
+import magma.result.Err;
+import magma.result.Ok;
 import magma.result.Result;
 
+import java.util.Set;
+
 public record PlaceholderRule(Rule rule) implements Rule {
-	private static String wrap(String input) {
+	public static String wrap(String input) {
 		return "/*" + input.replace("/*", "start").replace("*/", "end") + "*/";
 	}
 
 	public static Rule Placeholder(Rule rule) {
-		return new PlaceholderRule(rule);
+		return RuleProfiler.profile(new PlaceholderRule(rule));
 	}
 
 	@Override
@@ -19,7 +25,29 @@ public record PlaceholderRule(Rule rule) implements Rule {
 	}
 
 	@Override
-	public Result<String, CompileError> generate(Node node) {
-		return rule.generate(node).mapValue(PlaceholderRule::wrap);
+	public Option<CharSet> firstChars() {
+		return rule.firstChars();
+	}
+
+	@Override
+	public Option<CharSet> lastChars() {
+		return rule.lastChars();
+	}
+
+	@Override
+	public Option<Set<String>> generatedTags() {
+		return rule.generatedTags();
+	}
+
+	// The comment markers inside the text are replaced, so the text is generated on its own first.
+	@Override
+	public Option<CompileError> generate(Node node, StringBuilder output) {
+		return switch (rule.generate(node)) {
+			case Ok<String, CompileError>(String text) -> {
+				output.append(wrap(text));
+				yield new None<CompileError>();
+			}
+			case Err<String, CompileError>(CompileError error) -> Option.of(error);
+		};
 	}
 }
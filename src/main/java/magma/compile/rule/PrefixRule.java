@@ -3,22 +3,46 @@ package magma.compile.rule;
 import magma.compile.Node;
 import magma.compile.context.InputContext;
 import magma.compile.error.CompileError;
+import magma.option.Option;
+import magma.option.Some;
 import magma.result.Err;
 import magma.result.Result;
 
+import java.util.Set;
+
 public record PrefixRule(String prefix, Rule rule) implements Rule {
 	public static Rule Prefix(String prefix, Rule rule) {
-		return new PrefixRule(prefix, rule);
+		return RuleProfiler.profile(new PrefixRule(prefix, rule));
 	}
 
 	@Override
 	public Result<Node, CompileError> lex(Slice content) {
 		if (content.startsWith(prefix)) return rule.lex(content.substring(prefix.length()));
-		else return new Err<Node, CompileError>(new CompileError("Prefix '" + prefix + "' not present", new InputContext(content)));
+		if (!Diagnostics.detailed()) return Diagnostics.failure();
+		return new Err<Node, CompileError>(new CompileError("Prefix '" + prefix + "' not present", new InputContext(content)));
+	}
+
+	@Override
+	public Option<CharSet> firstChars() {
+		if (prefix.isEmpty()) return rule.firstChars();
+		return new Some<CharSet>(CharSet.of(prefix.charAt(0)));
+	}
+
+	@Override
+	public Option<CharSet> lastChars() {
+		if (prefix.isEmpty()) return rule.lastChars();
+		final char last = prefix.charAt(prefix.length() - 1);
+		return rule.lastChars().map(chars -> chars.around(last));
+	}
+
+	@Override
+	public Option<Set<String>> generatedTags() {
+		return rule.generatedTags();
 	}
 
 	@Override
-	public Result<String, CompileError> generate(Node node) {
-		return rule.generate(node).mapValue(inner -> prefix + inner);
+	public Option<CompileError> generate(Node node, StringBuilder output) {
+		output.append(prefix);
+		return rule.generate(node, output);
 	}
 }
@@ -0,0 +1,44 @@
+package magma.compile.rule;
+
+import magma.compile.Node;
+import magma.compile.error.CompileError;
+import magma.option.Option;
+import magma.result.Ok;
+import magma.result.Result;
+
+import java.util.Set;
+
+/**
+ * A rule whose lexing is counted and timed by {@link RuleProfiler} under {@code name}. Everything else is delegated.
+ */
+public record ProfiledRule(String name, Rule rule) implements Rule {
+	@Override
+	public Result<Node, CompileError> lex(Slice content) {
+		final RuleProfiler.Frame frame = RuleProfiler.enter(name);
+		final long start = System.nanoTime();
+		final Result<Node, CompileError> result = rule.lex(content);
+		final long elapsed = System.nanoTime() - start;
+		RuleProfiler.exit(frame, elapsed, result instanceof Ok<Node, CompileError>, content.length());
+		return result;
+	}
+
+	@Override
+	public Option<CharSet> firstChars() {
+		return rule.firstChars();
+	}
+
+	@Override
+	public Option<CharSet> lastChars() {
+		return rule.lastChars();
+	}
+
+	@Override
+	public Option<Set<String>> generatedTags() {
+		return rule.generatedTags();
+	}
+
+	@Override
+	public Option<CompileError> generate(Node node, StringBuilder output) {
+		return rule.generate(node, output);
+	}
+}
@@ -2,10 +2,53 @@ package magma.compile.rule;
 
 import magma.compile.Node;
 import magma.compile.error.CompileError;
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
+import magma.result.Err;
+import magma.result.Ok;
 import magma.result.Result;
 
+import java.util.Set;
+
 public interface Rule {
 	Result<Node, CompileError> lex(Slice content);
 
-	Result<String, CompileError> generate(Node node);
+	/**
+	 * Appends the text of {@code node} to {@code output}, or returns why it cannot be generated. After a failure,
+	 * {@code output} may hold part of the text: a rule that tries alternatives rolls it back to the length it had
+	 * before the alternative, and any other caller gives the failure up.
+	 */
+	Option<CompileError> generate(Node node, StringBuilder output);
+
+	default Result<String, CompileError> generate(Node node) {
+		final StringBuilder output = new StringBuilder();
+		return switch (generate(node, output)) {
+			case None<CompileError> _ -> new Ok<String, CompileError>(output.toString());
+			case Some<CompileError>(CompileError error) -> new Err<String, CompileError>(error);
+		};
+	}
+
+	/**
+	 * If present, {@link #lex(Slice)} can only succeed on input that is empty (when {@link CharSet#empty()}) or
+	 * starts with a character of the set. Absent means nothing is known.
+	 */
+	default Option<CharSet> firstChars() {
+		return new None<CharSet>();
+	}
+
+	/**
+	 * Like {@link #firstChars()}, for the last character of the input.
+	 */
+	default Option<CharSet> lastChars() {
+		return new None<CharSet>();
+	}
+
+	/**
+	 * If present, {@link #generate(Node, StringBuilder)} can only succeed on a node whose type is one of these tags.
+	 * Absent means nothing is known.
+	 */
+	default Option<Set<String>> generatedTags() {
+		return new None<Set<String>>();
+	}
 }
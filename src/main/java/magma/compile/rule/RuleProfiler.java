@@ -0,0 +1,250 @@
+package magma.compile.rule;
+
+import magma.option.None;
+import magma.option.Option;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+
+/**
+ * Counts and times every {@link Rule#lex(Slice)} of the grammar when {@code -Dmagma.profile=true}. The rule factories
+ * ({@code Tag}, {@code Or}, {@code Prefix}, ...) pass the rule they build to {@link #profile(Rule)}, which wraps it in
+ * a {@link ProfiledRule} named after its tag, or after its kind and the line that built it. When profiling is off,
+ * {@link #profile(Rule)} returns the rule itself, so the grammar is the same graph as before and lexing costs nothing
+ * more.
+ * <p>
+ * Each thread records into its own tree of calls, so profiled threads never contend. A rule's self time is its time
+ * minus the time of the profiled rules it called; its total time only counts its outermost activation, so recursion is
+ * not counted twice. The trees of all threads are merged by {@link #write(Path, Path)}, into a table of rules sorted
+ * by self time and into collapsed stacks ({@code a;b;c nanoseconds} per line) that flame graph tools read.
+ */
+public final class RuleProfiler {
+	private static final boolean ENABLED = Boolean.getBoolean("magma.profile");
+	private static final int REPORTED_ON_CONSOLE = 20;
+	private static final long NANOS_PER_MILLI = 1000000L;
+	private static final Queue<ThreadProfile> PROFILES = new ConcurrentLinkedQueue<ThreadProfile>();
+	private static final ThreadLocal<ThreadProfile> CURRENT = ThreadLocal.withInitial(RuleProfiler::register);
+
+	private static final class Stats {
+		private final String name;
+		private long calls = 0;
+		private long succeeded = 0;
+		private long failed = 0;
+		private long total = 0;
+		private long self = 0;
+		private long bytes = 0;
+		private int active = 0;
+
+		private Stats(String name) {
+			this.name = name;
+		}
+
+		private long self() {
+			return self;
+		}
+
+		private Stats add(Stats other) {
+			calls = calls + other.calls;
+			succeeded = succeeded + other.succeeded;
+			failed = failed + other.failed;
+			total = total + other.total;
+			self = self + other.self;
+			bytes = bytes + other.bytes;
+			return this;
+		}
+
+		private String row() {
+			return "%-56s %10d %10d %10d %10d %10d %12d".formatted(name,
+																															calls,
+																															succeeded,
+																															failed,
+																															Math.floorDiv(total, NANOS_PER_MILLI),
+																															Math.floorDiv(self, NANOS_PER_MILLI),
+																															bytes);
+		}
+	}
+
+	// A path of profiled rules from the outermost one. A path is active at most once at a time on its thread, so the
+	// time of the current activation's callees can be kept on the frame itself.
+	static final class Frame {
+		private final Stats stats;
+		private final Frame parent;
+		private final Map<String, Frame> children = new HashMap<String, Frame>();
+		private long self = 0;
+		private long callees = 0;
+
+		private Frame() {
+			this.stats = new Stats("");
+			this.parent = this;
+		}
+
+		private Frame(Stats stats, Frame parent) {
+			this.stats = stats;
+			this.parent = parent;
+		}
+	}
+
+	private static final class ThreadProfile {
+		private final Map<String, Stats> stats = new HashMap<String, Stats>();
+		private final Frame root = new Frame();
+		private Frame current = root;
+
+		private Frame enter(String name) {
+			final Frame caller = current;
+			final Frame frame = caller.children.computeIfAbsent(name, key -> new Frame(statsOf(key), caller));
+			frame.callees = 0;
+			frame.stats.active++;
+			current = frame;
+			return frame;
+		}
+
+		private Stats statsOf(String name) {
+			return stats.computeIfAbsent(name, Stats::new);
+		}
+
+		private void exit(Frame frame, long elapsed, boolean succeeded, int bytes) {
+			final Stats rule = frame.stats;
+			final long self = elapsed - frame.callees;
+			frame.self = frame.self + self;
+			rule.calls++;
+			if (succeeded) rule.succeeded++;
+			else rule.failed++;
+			rule.self = rule.self + self;
+			rule.bytes = rule.bytes + bytes;
+			rule.active = rule.active - 1;
+			if (rule.active == 0) rule.total = rule.total + elapsed;
+			frame.parent.callees = frame.parent.callees + elapsed;
+			current = frame.parent;
+		}
+
+		// The frames still open were entered by a lex that ended with an Error and never exited them.
+		private void close() {
+			while (current != root) {
+				current.stats.active = current.stats.active - 1;
+				current = current.parent;
+			}
+		}
+	}
+
+	private RuleProfiler() {
+	}
+
+	public static boolean enabled() {
+		return ENABLED;
+	}
+
+	/**
+	 * {@code rule}, profiled if profiling is on.
+	 */
+	public static Rule profile(Rule rule) {
+		if (!ENABLED) return rule;
+		return new ProfiledRule(nameOf(rule), rule);
+	}
+
+	/**
+	 * Starts an outermost lex on this thread at the root of its tree. A previous lex that ended with an {@link Error},
+	 * such as a {@link StackOverflowError}, left its frames open, and its rules would otherwise never count their total
+	 * time again.
+	 */
+	public static void startAtRoot() {
+		if (ENABLED) CURRENT.get().close();
+	}
+
+	static Frame enter(String name) {
+		return CURRENT.get().enter(name);
+	}
+
+	static void exit(Frame frame, long elapsed, boolean succeeded, int bytes) {
+		CURRENT.get().exit(frame, elapsed, succeeded, bytes);
+	}
+
+	private static ThreadProfile register() {
+		final ThreadProfile profile = new ThreadProfile();
+		PROFILES.add(profile);
+		return profile;
+	}
+
+	private static String nameOf(Rule rule) {
+		if (rule instanceof TagRule tag) return "Tag " + tag.tag();
+		final String kind = rule.getClass().getSimpleName().replace("Rule", "");
+		return kind + " " + site();
+	}
+
+	// The first frame outside of this package is the grammar that called the factory.
+	static String site() {
+		return StackWalker.getInstance()
+											.walk(frames -> frames.filter(frame -> !frame.getClassName().startsWith("magma.compile.rule."))
+																						.findFirst()
+																						.map(frame -> simpleName(frame.getClassName()) + "." + frame.getMethodName() +
+																													":" + frame.getLineNumber())
+																						.orElse("?"));
+	}
+
+	private static String simpleName(String className) {
+		return className.substring(className.lastIndexOf('.') + 1);
+	}
+
+	/**
+	 * The rules that took the most self time, one per line under a header, for the console.
+	 */
+	public static String summary() {
+		return String.join(System.lineSeparator(), table().stream().limit(REPORTED_ON_CONSOLE + 1).toList());
+	}
+
+	/**
+	 * Writes the table of all rules to {@code table} and the collapsed stacks to {@code stacks}.
+	 */
+	public static Option<IOException> write(Path table, Path stacks) {
+		try {
+			Files.createDirectories(table.toAbsolutePath().getParent());
+			Files.write(table, table());
+			Files.write(stacks, stacks());
+			return new None<IOException>();
+		} catch (IOException e) {
+			return Option.of(e);
+		}
+	}
+
+	private static List<String> table() {
+		final Map<String, Stats> merged = new HashMap<String, Stats>();
+		PROFILES.forEach(profile -> profile.stats.forEach((name, stats) -> merged.computeIfAbsent(name, Stats::new)
+																																						 .add(stats)));
+		final String header = "%-56s %10s %10s %10s %10s %10s %12s".formatted("rule",
+																																		"calls",
+																																		"succeeded",
+																																		"failed",
+																																		"total ms",
+																																		"self ms",
+																																		"bytes");
+		final List<String> rows = merged.values()
+																		.stream()
+																		.sorted(Comparator.comparingLong(Stats::self).reversed())
+																		.map(Stats::row)
+																		.collect(Collectors.toList());
+		rows.addFirst(header);
+		return rows;
+	}
+
+	private static List<String> stacks() {
+		final Map<String, Long> stacks = new TreeMap<String, Long>();
+		PROFILES.forEach(profile -> profile.root.children.values().forEach(frame -> collapse(frame, "", stacks)));
+		return stacks.entrySet().stream().map(entry -> entry.getKey() + " " + entry.getValue()).toList();
+	}
+
+	private static void collapse(Frame frame, String caller, Map<String, Long> stacks) {
+		final String path;
+		if (caller.isEmpty()) path = frame.stats.name;
+		else path = caller + ";" + frame.stats.name;
+		if (0 < frame.self) stacks.merge(path, frame.self, Long::sum);
+		frame.children.values().forEach(child -> collapse(child, path, stacks));
+	}
+}
@@ -0,0 +1,196 @@
+package magma.compile.rule;
+
+import magma.Tuple;
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * How often each character of one source file was passed over by a scan, when {@code -Dmagma.heatmap=true}. The
+ * scans are the ones that can revisit the same text many times: {@link DivideState} (every divider and folder), the
+ * locators ({@link Slice#indexOf(String)} and {@link Slice#lastIndexOf(String)}) and {@link OperatorScan}. A run of
+ * characters that a scan skips in one step with the {@link StructureIndex} counts as read once. A read is only
+ * counted while {@link #within(String, Supplier)} runs for the source that the slice views, on the same thread; text
+ * that a divider had to copy into a buffer is no longer a view of the source, and is not counted.
+ * <p>
+ * {@link #write(Path, Path, String)} renders the counts as a text report of the hottest lines and as an HTML page of
+ * the whole file, where each character is shaded by the number of times it was read.
+ */
+public final class ScanHeatmap {
+	private static final boolean ENABLED = Boolean.getBoolean("magma.heatmap");
+	private static final ThreadLocal<Option<ScanHeatmap>> CURRENT = ThreadLocal.withInitial(None::new);
+	private static final int HOT_LINES = 30;
+	private static final int SHADES = 9;
+	private static final int MAX_SHOWN_TEXT = 100;
+	private final String source;
+	private final int[] counts;
+	private long copied = 0;
+
+	private record Line(int number, int start, int end, long reads, int peak) {
+		private long perChar() {
+			return Math.floorDiv(reads, Math.max(1, end - start));
+		}
+	}
+
+	private ScanHeatmap(String source) {
+		this.source = source;
+		this.counts = new int[source.length()];
+	}
+
+	public static boolean enabled() {
+		return ENABLED;
+	}
+
+	public static <T> Tuple<T, ScanHeatmap> within(String source, Supplier<T> action) {
+		final ScanHeatmap heatmap = new ScanHeatmap(source);
+		final Option<ScanHeatmap> previous = CURRENT.get();
+		CURRENT.set(new Some<ScanHeatmap>(heatmap));
+		final T result = action.get();
+		CURRENT.set(previous);
+		return new Tuple<T, ScanHeatmap>(result, heatmap);
+	}
+
+	// Called with offsets into source; reads of any other text are only totalled.
+	static void count(String source, int from, int to) {
+		if (ENABLED && CURRENT.get() instanceof Some<ScanHeatmap>(ScanHeatmap heatmap)) {
+			if (heatmap.source == source) heatmap.add(from, Math.min(to, source.length()));
+			else heatmap.copied = heatmap.copied + to - from;
+		}
+	}
+
+	private void add(int from, int to) {
+		int index = from;
+		while (index < to) {
+			counts[index]++;
+			index++;
+		}
+	}
+
+	/**
+	 * Writes the hottest lines of {@code name} to {@code text} and the shaded file to {@code html}.
+	 */
+	public Option<IOException> write(Path text, Path html, String name) {
+		try {
+			Files.createDirectories(text.toAbsolutePath().getParent());
+			Files.writeString(text, text(name));
+			Files.writeString(html, html(name));
+			return new None<IOException>();
+		} catch (IOException e) {
+			return Option.of(e);
+		}
+	}
+
+	private long reads(int from, int to) {
+		return IntStream.range(from, to).mapToLong(index -> counts[index]).sum();
+	}
+
+	private int peak(int from, int to) {
+		return IntStream.range(from, to).map(index -> counts[index]).max().orElse(0);
+	}
+
+	private List<Line> lines() {
+		final List<Integer> starts = IntStream.rangeClosed(0, source.length())
+																					.filter(index -> index == 0 || source.charAt(index - 1) == '\n')
+																					.boxed()
+																					.toList();
+		return IntStream.range(0, starts.size()).mapToObj(index -> line(starts, index)).toList();
+	}
+
+	private Line line(List<Integer> starts, int index) {
+		final int start = starts.get(index);
+		final int next = index + 1;
+		int end = source.length();
+		if (next < starts.size()) end = starts.get(next) - 1;
+		if (start < end && source.charAt(end - 1) == '\r') end = end - 1;
+		return new Line(next, start, end, reads(start, end), peak(start, end));
+	}
+
+	private String text(String name) {
+		final long total = reads(0, source.length());
+		final String header = name + ": " + source.length() + " characters, " + total + " reads (" +
+													Math.floorDiv(total, Math.max(1, source.length())) + " per character), and " + copied +
+													" reads of copied text that cannot be placed";
+		final String rows = lines().stream()
+															 .sorted(Comparator.comparingLong(Line::reads).reversed())
+															 .limit(HOT_LINES)
+															 .map(this::row)
+															 .collect(Collectors.joining(System.lineSeparator()));
+		return String.join(System.lineSeparator(),
+											 header,
+											 "",
+											 "%6s %10s %9s %8s  %s".formatted("line", "reads", "per char", "peak", "text"),
+											 rows,
+											 "");
+	}
+
+	private String row(Line line) {
+		String text = source.substring(line.start(), line.end()).strip();
+		if (MAX_SHOWN_TEXT < text.length()) text = text.substring(0, MAX_SHOWN_TEXT) + "...";
+		return "%6d %10d %9d %8d  %s".formatted(line.number(), line.reads(), line.perChar(), line.peak(), text);
+	}
+
+	private String html(String name) {
+		final String body = lines().stream().map(this::htmlLine).collect(Collectors.joining("\n"));
+		final String shades = IntStream.rangeClosed(1, SHADES)
+																	 .mapToObj(shade -> ".h" + shade + "{background:hsl(0,100%," +
+																											(95 - Math.multiplyExact(shade, 5)) + "%)}")
+																	 .collect(Collectors.joining("\n"));
+		return String.join("\n",
+											 "<!DOCTYPE html>",
+											 "<html><head><meta charset=\"utf-8\"><title>" + escape(name) + "</title><style>",
+											 "pre{font:12px monospace}.n{color:#888}.r{color:#36c}",
+											 shades,
+											 "</style></head><body>",
+											 "<p>" + escape(name) + ": characters are shaded by how often they were read, doubling per shade. " +
+											 "The gutter shows the line number and the reads of the line.</p>",
+											 "<pre>" + body + "</pre>",
+											 "</body></html>",
+											 "");
+	}
+
+	private String htmlLine(Line line) {
+		final String gutter = "<span class=\"n\">%6d</span> <span class=\"r\">%10d</span>  ".formatted(line.number(),
+																																																		line.reads());
+		return gutter + shadedRuns(line.start(), line.end());
+	}
+
+	// Consecutive characters of the same shade share one span.
+	private String shadedRuns(int start, int end) {
+		final StringBuilder html = new StringBuilder();
+		int runStart = start;
+		int index = start;
+		while (index < end) {
+			index++;
+			if (index == end || shade(index) != shade(runStart)) {
+				html.append(run(runStart, index));
+				runStart = index;
+			}
+		}
+		return html.toString();
+	}
+
+	private String run(int from, int to) {
+		final String text = escape(source.substring(from, to));
+		final int shade = shade(from);
+		if (shade == 0) return text;
+		return "<span class=\"h" + shade + "\">" + text + "</span>";
+	}
+
+	// 0 for a character that was never read, then one shade per doubling of the reads.
+	private int shade(int index) {
+		return Math.min(SHADES, 64 - Long.numberOfLeadingZeros(counts[index]));
+	}
+
+	private static String escape(String text) {
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+	}
+}
@@ -1,61 +1,236 @@
 package magma.compile.rule;
 
-import magma.list.ArrayHead;
-import magma.list.HeadedStream;
+import magma.list.ArrayList;
+import magma.list.Joiner;
 import magma.list.List;
-import magma.list.ListCollector;
 import magma.option.None;
 import magma.option.Option;
 import magma.option.Some;
 
-public record Slice(String value) {
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A view of {@code source[start, end)}. Narrowing a slice only moves its offsets, the characters are never copied;
+ * the text is materialized (once) when {@link #value()} or {@link #toString()} is called.
+ * Equality and hashing are based on the viewed characters only, so views of equal text are interchangeable.
+ */
+public final class Slice implements CharSequence {
+	private final String source;
+	private final StructureIndex structure;
+	private final int start;
+	private final int end;
+	private Option<String> materialized = new None<String>();
+	private int hash = 0;
+
+	public Slice(String value) {
+		this(value, new StructureIndex(value), 0, value.length());
+	}
+
+	private Slice(String source, StructureIndex structure, int start, int end) {
+		this.source = source;
+		this.structure = structure;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * The segments joined by {@code delimiter}, like {@link Joiner}. When the joined text is the text that the segments
+	 * span in their source, that span is returned as a view instead of a copy, so it shares the source's
+	 * {@link StructureIndex} and its reads are still placed by {@link ScanHeatmap}.
+	 */
+	public static Slice join(List<Slice> segments, String delimiter) {
+		final String joined = segments.stream().map(Slice::value).collect(new Joiner(delimiter));
+		if (segments.getFirst() instanceof Some<Slice>(Slice first) &&
+				segments.getLast() instanceof Some<Slice>(Slice last) && first.spans(last, joined))
+			return new Slice(first.source, first.structure, first.start, last.end);
+		return new Slice(joined);
+	}
+
+	private boolean spans(Slice last, String joined) {
+		final int length = last.end - start;
+		return source == last.source && length == joined.length() && source.startsWith(joined, start);
+	}
+
+	public String value() {
+		if (materialized instanceof Some<String>(String value)) return value;
+		final String value = source.substring(start, end);
+		materialized = new Some<String>(value);
+		return value;
+	}
+
 	public boolean isEmpty() {
-		return value.isEmpty();
+		return start == end;
 	}
 
 	public boolean startsWith(String slice) {
-		return value.startsWith(slice);
+		return slice.length() <= length() && source.startsWith(slice, start);
 	}
 
 	public Slice substring(int extent) {
-		return new Slice(value.substring(extent));
+		return substring(extent, length());
 	}
 
 	public Slice strip() {
-		return new Slice(value.strip());
+		final int first = skipWhitespace(start);
+		return new Slice(source, structure, first, skipTrailingWhitespace(first, end));
+	}
+
+	private int skipWhitespace(int from) {
+		int index = from;
+		while (index < end && Character.isWhitespace(source.charAt(index))) index++;
+		return index;
+	}
+
+	private int skipTrailingWhitespace(int lower, int to) {
+		int index = to;
+		while (lower < index && isWhitespaceBefore(index)) index = index - 1;
+		return index;
+	}
+
+	private boolean isWhitespaceBefore(int index) {
+		final int previous = index - 1;
+		return Character.isWhitespace(source.charAt(previous));
 	}
 
 	public boolean endsWith(String slice) {
-		return value.endsWith(slice);
+		return slice.length() <= length() && source.startsWith(slice, end - slice.length());
 	}
 
+	@Override
 	public int length() {
-		return value.length();
+		return end - start;
+	}
+
+	@Override
+	public char charAt(int index) {
+		return source.charAt(start + index);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return substring(start, end);
 	}
 
 	public Slice substring(int start, int end) {
-		return new Slice(value.substring(start, end));
+		Objects.checkFromToIndex(start, end, length());
+		return new Slice(source, structure, this.start + start, this.start + end);
+	}
+
+	/**
+	 * Where this slice starts within {@code other}, if both view the same source and this slice lies inside
+	 * {@code other}.
+	 */
+	public Option<Integer> offsetIn(Slice other) {
+		if (source != other.source || start < other.start || other.end < end) return new None<Integer>();
+		return new Some<Integer>(start - other.start);
 	}
 
 	public Option<Integer> indexOf(String infix) {
-		final int index = value.indexOf(infix);
-		if (index == -1) return new None<Integer>();
-		return new Some<Integer>(index);
+		final Option<Integer> found = findFirst(infix);
+		if (ScanHeatmap.enabled()) scanned(0, found.map(index -> index + infix.length()).orElse(length()));
+		return found;
+	}
+
+	private Option<Integer> findFirst(String infix) {
+		int index = start;
+		while (index + infix.length() <= end) {
+			if (source.startsWith(infix, index)) return new Some<Integer>(index - start);
+			index++;
+		}
+		return new None<Integer>();
 	}
 
+	/**
+	 * Same contract as {@link String#split(String)}, except that the pieces are views of this slice.
+	 */
 	public List<Slice> split(String regex) {
-		return new HeadedStream<String>(new ArrayHead<String>(value.split(regex))).map(Slice::new)
-																																							.collect(new ListCollector<Slice>());
+		final Matcher matcher = Pattern.compile(regex).matcher(this);
+		final List<Slice> pieces = new ArrayList<Slice>();
+		int index = 0;
+		while (matcher.find()) {
+			// A zero-width match at the very beginning never produces a leading empty piece.
+			if (!(index == 0 && matcher.start() == 0 && matcher.end() == 0)) {
+				pieces.addLast(substring(index, matcher.start()));
+				index = matcher.end();
+			}
+		}
+
+		if (index == 0) return List.of(this);
+		pieces.addLast(substring(index));
+		return dropTrailingEmpty(pieces);
+	}
+
+	private static List<Slice> dropTrailingEmpty(List<Slice> pieces) {
+		int size = pieces.size();
+		while (0 < size && isEmptyBefore(pieces, size)) size = size - 1;
+		return pieces.subListOrEmpty(0, size);
+	}
+
+	private static boolean isEmptyBefore(List<Slice> pieces, int size) {
+		final int last = size - 1;
+		return pieces.get(last).map(Slice::isEmpty).orElse(false);
+	}
+
+	/**
+	 * The offset of the first structural character (see {@link StructureIndex}) at or after {@code from},
+	 * or {@link #length()} if there is none.
+	 */
+	public int nextStructural(int from) {
+		return Math.min(structure.nextStructural(start + from), end) - start;
+	}
+
+	// Counts the characters from {@code from} up to {@code to} of this slice as read by a scan, see ScanHeatmap.
+	void scanned(int from, int to) {
+		ScanHeatmap.count(source, start + from, start + to);
 	}
 
-	public Option<Character> charAt(int index) {
-		if (index < value.length()) return new Some<Character>(value.charAt(index));
+	public Option<Character> findChar(int index) {
+		if (index < length()) return new Some<Character>(charAt(index));
 		else return new None<Character>();
 	}
 
 	public Option<Integer> lastIndexOf(String infix) {
-		final int index = value.lastIndexOf(infix);
-		if (index == -1) return new None<Integer>();
-		return new Some<Integer>(index);
+		final Option<Integer> found = findLast(infix);
+		if (ScanHeatmap.enabled()) scanned(found.orElse(0), length());
+		return found;
+	}
+
+	private Option<Integer> findLast(String infix) {
+		int index = end - infix.length();
+		while (index >= start) {
+			if (source.startsWith(infix, index)) return new Some<Integer>(index - start);
+			index = index - 1;
+		}
+		return new None<Integer>();
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) return true;
+		if (!(other instanceof Slice slice) || slice.length() != length()) return false;
+		return source.regionMatches(start, slice.source, slice.start, length());
+	}
+
+	@Override
+	public int hashCode() {
+		if (hash == 0) hash = computeHash();
+		return hash;
+	}
+
+	private int computeHash() {
+		int result = 0;
+		int index = start;
+		while (index < end) {
+			result = Integer.rotateLeft(result, 5) + source.charAt(index);
+			index++;
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return value();
 	}
 }
@@ -5,6 +5,7 @@ import magma.compile.Node;
 import magma.compile.context.InputContext;
 import magma.compile.error.CompileError;
 import magma.option.None;
+import magma.option.Option;
 import magma.option.Some;
 import magma.result.Err;
 import magma.result.Result;
@@ -30,31 +31,42 @@ public record SplitRule(Rule leftRule, Rule rightRule, Splitter splitter, Order
 
 	public static Rule First(Rule left, String infix, Rule right) {
 		final Splitter splitter = new InfixSplitter(infix, new FirstLocator());
-		return new SplitRule(left, right, splitter, new LeftFirst());
+		return RuleProfiler.profile(new SplitRule(left, right, splitter, new LeftFirst()));
 	}
 
 	public static Rule Last(Rule leftRule, String infix, Rule rightRule) {
 		final Splitter splitter = new InfixSplitter(infix, new LastLocator());
-		return new SplitRule(leftRule, rightRule, splitter, new LeftFirst());
+		return RuleProfiler.profile(new SplitRule(leftRule, rightRule, splitter, new LeftFirst()));
 	}
 
 	public static Rule Split(Rule left, Splitter splitter, Rule right) {
-		return new SplitRule(left, right, splitter, new LeftFirst());
+		return RuleProfiler.profile(new SplitRule(left, right, splitter, new LeftFirst()));
 	}
 
 	@Override
 	public Result<Node, CompileError> lex(Slice slice) {
+		return lex(slice, splitter);
+	}
+
+	// Lexes with another splitter in place of this rule's own, such as one bound to a scan of the slice.
+	Result<Node, CompileError> lex(Slice slice, Splitter splitter) {
 		return switch (splitter.split(slice)) {
-			case None<Tuple<Slice, Slice>> _ ->
-					new Err<Node, CompileError>(new CompileError(splitter.createErrorMessage(), new InputContext(slice)));
+			case None<Tuple<Slice, Slice>> _ -> notSplit(slice, splitter);
 			case Some<Tuple<Slice, Slice>>(Tuple<Slice, Slice> parts) ->
 					order.evaluate(parts.left(), parts.right(), leftRule, rightRule);
 		};
 	}
 
+	private static Result<Node, CompileError> notSplit(Slice slice, Splitter splitter) {
+		if (!Diagnostics.detailed()) return Diagnostics.failure();
+		return new Err<Node, CompileError>(new CompileError(splitter.createErrorMessage(), new InputContext(slice)));
+	}
+
 	@Override
-	public Result<String, CompileError> generate(Node node) {
-		return leftRule.generate(node)
-									 .flatMap(left -> rightRule.generate(node).mapValue(right -> splitter.merge(left, right)));
+	public Option<CompileError> generate(Node node, StringBuilder output) {
+		final Option<CompileError> left = leftRule.generate(node, output);
+		if (left instanceof Some<CompileError>) return left;
+		output.append(splitter.delimiter());
+		return rightRule.generate(node, output);
 	}
 }
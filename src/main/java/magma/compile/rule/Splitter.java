@@ -13,5 +13,8 @@ public interface Splitter {
 
 	String createErrorMessage();
 
-	String merge(String left, String right);
+	/**
+	 * The text between the left and the right part when they are generated again.
+	 */
+	String delimiter();
 }
@@ -1,5 +1,6 @@
 package magma.compile.rule;
 
+import magma.option.Option;
 import magma.option.Some;
 
 public class StatementFolder implements Folder {
@@ -20,6 +21,11 @@ public class StatementFolder implements Folder {
 		return appended;
 	}
 
+	@Override
+	public Option<String> significantChars() {
+		return Option.of(";{}()-");
+	}
+
 	@Override
 	public String delimiter() {
 		return "";
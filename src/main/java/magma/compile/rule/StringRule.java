@@ -13,23 +13,28 @@ import magma.result.Result;
 
 public record StringRule(String key) implements Rule {
 	public static Rule String(String key) {
-		return new StringRule(key);
+		return RuleProfiler.profile(new StringRule(key));
 	}
 
 	@Override
 	public Result<Node, CompileError> lex(Slice content) {
-		if (content.isEmpty()) return new Err<Node, CompileError>(new CompileError("Content of key '" + key + "' be empty",
-																																							 new InputContext(content)));
+		if (content.isEmpty()) {
+			if (!Diagnostics.detailed()) return Diagnostics.failure();
+			return new Err<Node, CompileError>(new CompileError("Content of key '" + key + "' be empty",
+																													new InputContext(content)));
+		}
 		return new Ok<Node, CompileError>(new Node().withSlice(key, content));
 	}
 
 	@Override
-	public Result<String, CompileError> generate(Node node) {
-		Option<Slice> resultOption = node.findSlice(key);
-		return switch (resultOption) {
-			case None<Slice> _ ->
-					new Err<String, CompileError>(new CompileError("String '" + key + "' not present.", new NodeContext(node)));
-			case Some<Slice>(Slice value) -> new Ok<String, CompileError>(value.value());
+	public Option<CompileError> generate(Node node, StringBuilder output) {
+		return switch (node.findSlice(key)) {
+			case None<Slice> _ -> Option.of(new CompileError("String '" + key + "' not present.", new NodeContext(node)));
+			// The slice is copied straight from the source, without materializing its text first.
+			case Some<Slice>(Slice value) -> {
+				output.append(value);
+				yield new None<CompileError>();
+			}
 		};
 	}
 }
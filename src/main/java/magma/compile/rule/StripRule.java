@@ -2,15 +2,20 @@ package magma.compile.rule;
 
 import magma.compile.Node;
 import magma.compile.error.CompileError;
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
 import magma.result.Result;
 
+import java.util.Set;
+
 public record StripRule(String leftKey, Rule rule, String rightKey) implements Rule {
 	public static Rule Strip(Rule rule) {
-		return new StripRule("?", rule, "?");
+		return RuleProfiler.profile(new StripRule("?", rule, "?"));
 	}
 
 	public static Rule Strip(String left, Rule rule, String right) {
-		return new StripRule(left, rule, right);
+		return RuleProfiler.profile(new StripRule(left, rule, right));
 	}
 
 	@Override
@@ -19,11 +24,26 @@ public record StripRule(String leftKey, Rule rule, String rightKey) implements R
 	}
 
 	@Override
-	public Result<String, CompileError> generate(Node node) {
-		return rule.generate(node).mapValue(generated -> {
-			final String leftString = node.findSlice(leftKey).map(Slice::value).orElse("");
-			final String rightString = node.findSlice(rightKey).map(Slice::value).orElse("");
-			return leftString + generated + rightString;
-		});
+	public Option<CharSet> firstChars() {
+		return rule.firstChars().map(CharSet::withWhitespace);
+	}
+
+	@Override
+	public Option<CharSet> lastChars() {
+		return rule.lastChars().map(CharSet::withWhitespace);
+	}
+
+	@Override
+	public Option<Set<String>> generatedTags() {
+		return rule.generatedTags();
+	}
+
+	@Override
+	public Option<CompileError> generate(Node node, StringBuilder output) {
+		if (node.findSlice(leftKey) instanceof Some<Slice>(Slice left)) output.append(left);
+		final Option<CompileError> error = rule.generate(node, output);
+		if (error instanceof None<CompileError> && node.findSlice(rightKey) instanceof Some<Slice>(Slice right))
+			output.append(right);
+		return error;
 	}
 }
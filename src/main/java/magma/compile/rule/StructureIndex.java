@@ -0,0 +1,44 @@
+package magma.compile.rule;
+
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
+
+/**
+ * For every offset of a source text, the offset of the next structural character: a bracket, a separator, a quote,
+ * a comment slash or an operator character. It is built in one linear pass the first time a {@link FoldingDivider}
+ * needs it and is shared by every {@link Slice} of the same source, so dividers can jump over runs of plain
+ * characters instead of folding them one by one.
+ */
+public final class StructureIndex {
+	private static final String STRUCTURAL = "(){}<>;,'\"/-=!|&+";
+	private final String source;
+	private Option<int[]> next = new None<int[]>();
+
+	public StructureIndex(String source) {
+		this.source = source;
+	}
+
+	static boolean covers(String chars) {
+		return chars.chars().allMatch(c -> STRUCTURAL.indexOf(c) != -1);
+	}
+
+	int nextStructural(int from) {
+		return positions()[from];
+	}
+
+	private int[] positions() {
+		if (next instanceof Some<int[]>(int[] positions)) return positions;
+		final int[] positions = new int[source.length() + 1];
+		positions[source.length()] = source.length();
+		int index = source.length() - 1;
+		while (0 <= index) {
+			if (STRUCTURAL.indexOf(source.charAt(index)) == -1) positions[index] = positions[index + 1];
+			else positions[index] = index;
+			index = index - 1;
+		}
+
+		next = new Some<int[]>(positions);
+		return positions;
+	}
+}
@@ -3,25 +3,51 @@ package magma.compile.rule;
 import magma.compile.Node;
 import magma.compile.context.InputContext;
 import magma.compile.error.CompileError;
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
 import magma.result.Err;
 import magma.result.Result;
 
+import java.util.Set;
+
 public record SuffixRule(Rule rule, String suffix) implements Rule {
 	public static Rule Suffix(Rule rule, String suffix) {
-		return new SuffixRule(rule, suffix);
+		return RuleProfiler.profile(new SuffixRule(rule, suffix));
 	}
 
 	@Override
 	public Result<Node, CompileError> lex(Slice input) {
-		if (!input.endsWith(suffix))
+		if (!input.endsWith(suffix)) {
+			if (!Diagnostics.detailed()) return Diagnostics.failure();
 			return new Err<Node, CompileError>(new CompileError("Suffix '" + suffix + "' not present",
 																													new InputContext(input)));
+		}
 		final var slice = input.substring(0, input.length() - suffix.length());
 		return rule.lex(slice);
 	}
 
 	@Override
-	public Result<String, CompileError> generate(Node node) {
-		return rule.generate(node).mapValue(value -> value + suffix);
+	public Option<CharSet> firstChars() {
+		if (suffix.isEmpty()) return rule.firstChars();
+		return rule.firstChars().map(chars -> chars.around(suffix.charAt(0)));
+	}
+
+	@Override
+	public Option<CharSet> lastChars() {
+		if (suffix.isEmpty()) return rule.lastChars();
+		return new Some<CharSet>(CharSet.of(suffix.charAt(suffix.length() - 1)));
+	}
+
+	@Override
+	public Option<Set<String>> generatedTags() {
+		return rule.generatedTags();
+	}
+
+	@Override
+	public Option<CompileError> generate(Node node, StringBuilder output) {
+		final Option<CompileError> error = rule.generate(node, output);
+		if (error instanceof None<CompileError>) output.append(suffix);
+		return error;
 	}
 }
@@ -0,0 +1,104 @@
+package magma.compile.rule;
+
+import magma.compile.Node;
+import magma.list.List;
+import magma.list.ListCollector;
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generation counterpart of {@link CharDispatch}: for each tag, the alternatives of an {@link OrRule} whose
+ * {@link Rule#generatedTags()} allow a node of that type, together with the alternatives whose tags are unknown. The
+ * table is built on the first lookup, for the same reason as the character table, and is published the same way.
+ */
+public final class TagDispatch {
+	private final List<Rule> rules;
+	private volatile Option<Table> table = new None<Table>();
+	private final ThreadLocal<Boolean> building = ThreadLocal.withInitial(() -> false);
+
+	private record Alternative(Rule rule, Option<Set<String>> tags) {
+		private boolean accepts(String type) {
+			return tags.map(allowed -> allowed.contains(type)).orElse(true);
+		}
+
+		private boolean untagged() {
+			return tags instanceof None<Set<String>>;
+		}
+	}
+
+	private record Table(Map<String, List<Rule>> byTag, List<Rule> untagged, boolean informative,
+											 Option<Set<String>> tags) {}
+
+	public TagDispatch(List<Rule> rules) {
+		this.rules = rules;
+	}
+
+	private static List<Rule> accepting(List<Alternative> alternatives, String type) {
+		return alternatives.stream()
+											 .filter(alternative -> alternative.accepts(type))
+											 .map(Alternative::rule)
+											 .collect(new ListCollector<Rule>());
+	}
+
+	private static Option<Set<String>> union(Option<Set<String>> left, Option<Set<String>> right) {
+		if (left instanceof Some<Set<String>>(Set<String> first) && right instanceof Some<Set<String>>(Set<String> second)) {
+			final Set<String> both = new HashSet<String>(first);
+			both.addAll(second);
+			return new Some<Set<String>>(both);
+		}
+
+		return new None<Set<String>>();
+	}
+
+	private static HashSet<String> addTags(HashSet<String> all, Alternative alternative) {
+		if (alternative.tags() instanceof Some<Set<String>>(Set<String> tags)) all.addAll(tags);
+		return all;
+	}
+
+	private Table table() {
+		if (table instanceof Some<Table>(Table built)) return built;
+		building.set(true);
+		final List<Alternative> alternatives = rules.stream()
+																								.map(rule -> new Alternative(rule, rule.generatedTags()))
+																								.collect(new ListCollector<Alternative>());
+		final Set<String> known = alternatives.stream().fold(new HashSet<String>(), TagDispatch::addTags);
+		final Map<String, List<Rule>> byTag = new HashMap<String, List<Rule>>();
+		known.forEach(tag -> byTag.put(tag, accepting(alternatives, tag)));
+		final List<Rule> untagged = alternatives.stream()
+																						.filter(Alternative::untagged)
+																						.map(Alternative::rule)
+																						.collect(new ListCollector<Rule>());
+		final Option<Set<String>> tags = alternatives.stream()
+																								 .map(Alternative::tags)
+																								 .fold(new Some<Set<String>>(Set.of()), TagDispatch::union);
+		final Table built = new Table(byTag, untagged, !known.isEmpty(), tags);
+		table = new Some<Table>(built);
+		building.set(false);
+		return built;
+	}
+
+	/**
+	 * The alternatives that can generate {@code node}, in their original order. An untyped node can only be generated
+	 * by the alternatives whose tags are unknown.
+	 */
+	public List<Rule> candidates(Node node) {
+		final Table built = table();
+		if (!built.informative()) return rules;
+		return switch (node.maybeType) {
+			case Some<String>(String type) -> built.byTag().getOrDefault(type, built.untagged());
+			case None<String> _ -> built.untagged();
+		};
+	}
+
+	// A grammar cycle leads back here while the table is being built; nothing is known about the cycle yet.
+	public Option<Set<String>> generatedTags() {
+		if (building.get()) return new None<Set<String>>();
+		return table().tags();
+	}
+}
@@ -1,35 +1,62 @@
 package magma.compile.rule;
 
 import magma.compile.Node;
+import magma.compile.RecordFusion;
 import magma.compile.context.InputContext;
 import magma.compile.context.NodeContext;
 import magma.compile.error.CompileError;
 import magma.list.List;
-import magma.result.Err;
+import magma.option.Option;
 import magma.result.Result;
 
+import java.util.Set;
+
 public record TagRule(String tag, Rule rule) implements Rule {
 	public static Rule Tag(String type, Rule rule) {
-		return new TagRule(type, rule);
+		return RuleProfiler.profile(new TagRule(type, rule));
 	}
 
 	@Override
 	public Result<Node, CompileError> lex(Slice content) {
-		final Result<Node, CompileError> lex = rule.lex(content);
-		return lex.mapValue(node -> node.retype(tag))
-							.mapErr(error -> new CompileError("Failed to attach tag '" + tag + "'",
+		return tagged(content, rule.lex(content));
+	}
+
+	// Tags what the inner rule lexed from content, for callers that lex it another way.
+	Result<Node, CompileError> tagged(Slice content, Result<Node, CompileError> lexed) {
+		final Result<Node, CompileError> lex = lexed.mapValue(this::attach);
+		if (!Diagnostics.detailed()) return lex;
+		return lex.mapErr(error -> new CompileError("Failed to attach tag '" + tag + "'",
 																								new InputContext(content),
 																								List.of(error)));
 	}
 
+	private Node attach(Node node) {
+		RecordFusion.attach(node.retype(tag));
+		return node;
+	}
+
+	@Override
+	public Option<CharSet> firstChars() {
+		return rule.firstChars();
+	}
+
 	@Override
-	public Result<String, CompileError> generate(Node node) {
-		if (node.is(tag)) return rule.generate(node)
-																 .mapErr(error -> new CompileError("Failed to generate with tag '" + tag + "'",
-																																	 new NodeContext(node),
-																																	 List.of(error)));
-
-		else
-			return new Err<String, CompileError>(new CompileError("Type '" + tag + "' not present", new NodeContext(node)));
+	public Option<CharSet> lastChars() {
+		return rule.lastChars();
+	}
+
+	@Override
+	public Option<Set<String>> generatedTags() {
+		return Option.of(Set.of(tag));
+	}
+
+	@Override
+	public Option<CompileError> generate(Node node, StringBuilder output) {
+		if (node.is(tag)) return rule.generate(node, output)
+																 .map(error -> new CompileError("Failed to generate with tag '" + tag + "'",
+																																new NodeContext(node),
+																																List.of(error)));
+
+		else return Option.of(new CompileError("Type '" + tag + "' not present", new NodeContext(node)));
 	}
 }
@@ -1,5 +1,6 @@
 package magma.compile.rule;
 
+import magma.option.Option;
 import magma.option.Some;
 
 public record ValueFolder() implements Folder {
@@ -16,6 +17,11 @@ public record ValueFolder() implements Folder {
 		return appended;
 	}
 
+	@Override
+	public Option<String> significantChars() {
+		return Option.of(",<>()-");
+	}
+
 	@Override
 	public String delimiter() {
 		return ", ";
@@ -2,6 +2,7 @@ package magma.transform;
 
 import magma.Tuple;
 import magma.compile.CNodes;
+import magma.compile.HashCons;
 import magma.compile.JNodes;
 import magma.compile.Lang;
 import magma.compile.error.CompileError;
@@ -21,6 +22,8 @@ import magma.result.Result;
 public class Transformer {
 	private static final Slice INVALID_MARKER = new Slice("???");
 	private static final Slice EMPTY_SLICE = new Slice("");
+	private static final HashCons.Memo<Lang.JType, CNodes.CType> TYPES =
+			HashCons.memo(CNodes.CType.class, Transformer::internTransformed);
 
 	public static Lang.CFunction transformMethod(Lang.JMethod method, Slice structName) {
 		final Option<NonEmptyList<Lang.JDefinition>> maybeOldParams = method.params();
@@ -305,7 +308,16 @@ public class Transformer {
 		return Collections.emptyList();
 	}
 
+	// Type records are interned while a file is compiled, so each distinct type is transformed once.
 	static CNodes.CType transformType(Lang.JType type) {
+		return TYPES.apply(type);
+	}
+
+	private static CNodes.CType internTransformed(Lang.JType type) {
+		return CNodes.CType.class.cast(HashCons.intern(convertType(type)));
+	}
+
+	private static CNodes.CType convertType(Lang.JType type) {
 		return switch (type) {
 			case Lang.Invalid invalid -> invalid;
 			case Lang.JGeneric generic -> transformGeneric(generic);
@@ -0,0 +1,444 @@
+package magma.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.RecordComponentElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Writes {@code magma.compile.ProcessedRecords}, the plain Java counterpart of what {@code RecordCodec} finds through
+ * reflection: for every {@code @Tag}-annotated record, its tag and, for each component, its name and its erased type
+ * and element types. The constructors and accessors are called directly, from a {@code switch} on the record's index.
+ * The generated code has no lambdas, so loading it costs no more than loading one class. The class is registered as
+ * the {@code magma.compile.GeneratedRecords} service.
+ * <p>
+ * Each record also gets a {@code deserializeN(Node)} and a {@code serializeN(record)} method. They check the tag,
+ * call the {@code JavaSerializer} method for the kind of each component ({@code Slice}, {@code Option} of a list,
+ * a child node, ...), which {@code JavaSerializer} would otherwise choose by reflection for every node, and call the
+ * constructor and the accessors directly. A component whose kind needs an element type that cannot be erased leaves
+ * that method out, and the serializer falls back to its reflective path for the record.
+ * <p>
+ * A record is skipped, and left to reflection, when the generated class cannot reach it (a private record, or a
+ * non-public one in another package) or when one of its components has a type variable or a wildcard as its generic
+ * argument.
+ */
+@SupportedAnnotationTypes(RecordProcessor.TAG)
+public final class RecordProcessor extends AbstractProcessor {
+	static final String TAG = "magma.compile.Tag";
+	private static final String PACKAGE = "magma.compile";
+	private static final String CLASS_NAME = "ProcessedRecords";
+	private static final String SERVICE = "META-INF/services/magma.compile.GeneratedRecords";
+	private static final String SERIALIZER = "JavaSerializer.";
+	private static final String SLICE = "magma.compile.rule.Slice";
+	private static final String STRING = "java.lang.String";
+	private static final String OPTION = "magma.option.Option";
+	private static final String NON_EMPTY_LIST = "magma.list.NonEmptyList";
+	private static final String LIST = "magma.list.List";
+	private boolean written = false;
+
+	private record Described(TypeElement type, String tag, List<Component> components) {}
+
+	// deserializer and serializer are the JavaSerializer calls for the component, if its kind could be worked out.
+	private record Component(String name, String type, String erased, Optional<String> elementClass,
+													 Optional<String> innerClass, Optional<String> deserializer, Optional<String> serializer) {}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+		if (written || annotations.isEmpty()) return false;
+		written = true;
+
+		final List<Described> records = annotations.stream()
+																							 .flatMap(annotation -> round.getElementsAnnotatedWith(annotation).stream())
+																							 .filter(element -> element.getKind() == ElementKind.RECORD)
+																							 .map(TypeElement.class::cast)
+																							 .filter(RecordProcessor::isReachable)
+																							 .flatMap(type -> describe(type).stream())
+																							 .sorted(Comparator.comparing(described -> described.type()
+																																																 .getQualifiedName()
+																																																 .toString()))
+																							 .toList();
+		write(records);
+		return false;
+	}
+
+	private void write(List<Described> records) {
+		try (Writer source = processingEnv.getFiler().createSourceFile(PACKAGE + "." + CLASS_NAME).openWriter()) {
+			source.write(source(records));
+		} catch (IOException e) {
+			error("Failed to write " + CLASS_NAME + ": " + e.getMessage());
+		}
+
+		try (Writer service = processingEnv.getFiler()
+																			 .createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE)
+																			 .openWriter()) {
+			service.write(PACKAGE + "." + CLASS_NAME + System.lineSeparator());
+		} catch (IOException e) {
+			error("Failed to register " + CLASS_NAME + ": " + e.getMessage());
+		}
+	}
+
+	private void error(String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message);
+	}
+
+	// The generated class lives in magma.compile, so it reaches a record when no enclosing type is private, and every
+	// one of them is public when the record is declared in another package.
+	private static boolean isReachable(Element element) {
+		if (element.getKind() == ElementKind.PACKAGE) return true;
+		if (element.getModifiers().contains(Modifier.PRIVATE)) return false;
+		if (!element.getModifiers().contains(Modifier.PUBLIC) && !packageOf(element).equals(PACKAGE)) return false;
+		return isReachable(element.getEnclosingElement());
+	}
+
+	private static String packageOf(Element element) {
+		if (element.getKind() == ElementKind.PACKAGE) return element.toString();
+		return packageOf(element.getEnclosingElement());
+	}
+
+	private Optional<Described> describe(TypeElement type) {
+		final List<Optional<Component>> components =
+				type.getRecordComponents().stream().map(this::describe).toList();
+		if (components.stream().anyMatch(Optional::isEmpty)) return Optional.empty();
+		return tagOf(type).map(tag -> new Described(type, tag, components.stream().flatMap(Optional::stream).toList()));
+	}
+
+	private Optional<Component> describe(RecordComponentElement component) {
+		final TypeMirror type = component.asType();
+		final Optional<TypeMirror> element = argument(type);
+		if (element.isPresent() && element.flatMap(this::erased).isEmpty()) return Optional.empty();
+		final Optional<TypeMirror> inner = element.flatMap(RecordProcessor::argument);
+		if (inner.isPresent() && inner.flatMap(this::erased).isEmpty()) return Optional.empty();
+
+		final String name = component.getSimpleName().toString();
+		return erased(type).map(erased -> new Component(name,
+																										 type.toString(),
+																										 erased,
+																										 element.flatMap(this::erased),
+																										 inner.flatMap(this::erased),
+																										 deserializer(name, type, element, inner),
+																										 serializer(name, type, element, inner)));
+	}
+
+	// The same choice as JavaSerializer.deserializeField makes from the component's class.
+	private Optional<String> deserializer(String name, TypeMirror type, Optional<TypeMirror> element,
+																				Optional<TypeMirror> inner) {
+		final String field = "\"" + name + "\"";
+		if (is(type, SLICE)) return Optional.of(call("deserializeSliceField", field, "node, consumed"));
+		if (is(type, STRING)) return Optional.of(call("deserializeStringField", field, "node, consumed"));
+		if (isA(type, OPTION)) return element.flatMap(elementType -> optionDeserializer(field, elementType, inner));
+		if (isA(type, NON_EMPTY_LIST))
+			return classOf(element).map(elementClass -> call("deserializeNonEmptyListField", field, elementClass + ", node, consumed"));
+		if (isA(type, LIST))
+			return classOf(element).map(elementClass -> call("deserializeListField", field, elementClass + ", node, consumed"));
+		return classOf(Optional.of(type)).map(fieldClass -> call("deserializeNodeField", field, fieldClass + ", node, consumed"));
+	}
+
+	private Optional<String> optionDeserializer(String field, TypeMirror element, Optional<TypeMirror> inner) {
+		if (is(element, SLICE)) return Optional.of(call("deserializeOptionSliceField", field, "node, consumed"));
+		if (is(element, STRING)) return Optional.of(call("deserializeOptionStringField", field, "node, consumed"));
+		if (isA(element, NON_EMPTY_LIST)) return classOf(inner).map(innerClass -> call(
+				"deserializeOptionNonEmptyListField", field, innerClass + ", node, consumed"));
+		if (isA(element, LIST))
+			return classOf(inner).map(innerClass -> call("deserializeOptionListField", field, innerClass + ", node, consumed"));
+		return classOf(Optional.of(element)).map(elementClass -> call("deserializeOptionNodeField",
+																																		field,
+																																		elementClass + ", node, consumed"));
+	}
+
+	// The same choice as JavaSerializer.serializeField makes from the component's class.
+	private Optional<String> serializer(String name, TypeMirror type, Optional<TypeMirror> element,
+																			Optional<TypeMirror> inner) {
+		final String field = "\"" + name + "\"";
+		final String value = "value." + name + "()";
+		if (is(type, SLICE)) return Optional.of(call("serializeSliceField", field, value));
+		if (isA(type, OPTION)) return element.flatMap(elementType -> optionSerializer(field, value, elementType, inner));
+		if (isA(type, NON_EMPTY_LIST))
+			return classOf(element).map(elementClass -> call("serializeNonEmptyListField", field, elementClass + ", " + value));
+		if (isA(type, LIST))
+			return classOf(element).map(elementClass -> call("serializeListField", field, elementClass + ", " + value));
+		return classOf(Optional.of(type)).map(fieldClass -> call("serializeNodeField", field, fieldClass + ", " + value));
+	}
+
+	private Optional<String> optionSerializer(String field, String value, TypeMirror element,
+																						Optional<TypeMirror> inner) {
+		if (is(element, SLICE)) return Optional.of(call("serializeOptionSliceField", field, value));
+		if (isA(element, NON_EMPTY_LIST)) return classOf(inner).map(innerClass -> call("serializeOptionNonEmptyListField",
+																																										 field,
+																																										 innerClass + ", " + value));
+		if (isA(element, LIST))
+			return classOf(inner).map(innerClass -> call("serializeOptionListField", field, innerClass + ", " + value));
+		return classOf(Optional.of(element)).map(elementClass -> call("serializeOptionNodeField",
+																																		field,
+																																		elementClass + ", " + value));
+	}
+
+	private static String call(String method, String field, String arguments) {
+		return SERIALIZER + method + "(" + field + ", " + arguments + ")";
+	}
+
+	private Optional<String> classOf(Optional<TypeMirror> type) {
+		return type.flatMap(this::erased).map(erased -> erased + ".class");
+	}
+
+	private boolean is(TypeMirror type, String className) {
+		return erased(type).filter(className::equals).isPresent();
+	}
+
+	// Like Class.isAssignableFrom on the erased classes, as the serializer checks them.
+	private boolean isA(TypeMirror type, String className) {
+		if (type.getKind() != TypeKind.DECLARED) return false;
+		final Types types = processingEnv.getTypeUtils();
+		return Optional.ofNullable(processingEnv.getElementUtils().getTypeElement(className))
+									 .filter(target -> types.isAssignable(types.erasure(type), types.erasure(target.asType())))
+									 .isPresent();
+	}
+
+	private static Optional<TypeMirror> argument(TypeMirror type) {
+		if (type instanceof DeclaredType declared && !declared.getTypeArguments().isEmpty())
+			return Optional.of(declared.getTypeArguments().getFirst());
+		return Optional.empty();
+	}
+
+	private Optional<String> erased(TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED) return Optional.empty();
+		return Optional.of(processingEnv.getTypeUtils().erasure(type).toString());
+	}
+
+	private static Optional<String> tagOf(TypeElement type) {
+		return type.getAnnotationMirrors()
+							 .stream()
+							 .filter(mirror -> mirror.getAnnotationType().toString().equals(TAG))
+							 .findFirst()
+							 .flatMap(RecordProcessor::value);
+	}
+
+	private static Optional<String> value(AnnotationMirror mirror) {
+		return mirror.getElementValues()
+								 .entrySet()
+								 .stream()
+								 .filter(entry -> entry.getKey().getSimpleName().contentEquals("value"))
+								 .map(entry -> String.valueOf(entry.getValue().getValue()))
+								 .findFirst();
+	}
+
+	private static String source(List<Described> records) {
+		final String entries = IntStream.range(0, records.size())
+																		.mapToObj(index -> "\t\t\t\tMap.entry(" + records.get(index).type().getQualifiedName() +
+																											 ".class, describe" + index + "())")
+																		.collect(Collectors.joining("," + System.lineSeparator()));
+		final String constructors = IntStream.range(0, records.size())
+																				 .mapToObj(index -> "\t\t\tcase " + index + " -> Option.of(new " +
+																														records.get(index).type().getQualifiedName() + "(" +
+																														arguments(records.get(index)) + "));")
+																				 .collect(Collectors.joining(System.lineSeparator()));
+		final String readers = IntStream.range(0, records.size())
+																		.mapToObj(index -> "\t\t\tcase " + index + " -> read" + index + "(component, (" +
+																											 records.get(index).type().getQualifiedName() + ") value);")
+																		.collect(Collectors.joining(System.lineSeparator()));
+		final String deserializers = IntStream.range(0, records.size())
+																					.filter(index -> hasDeserializer(records.get(index)))
+																					.mapToObj(index -> "\t\t\tcase " + index + " -> Option.of(deserialize" + index +
+																														 "(node));")
+																					.collect(Collectors.joining(System.lineSeparator()));
+		final String serializers = IntStream.range(0, records.size())
+																				.filter(index -> hasSerializer(records.get(index)))
+																				.mapToObj(index -> "\t\t\tcase " + index + " -> Option.of(serialize" + index + "((" +
+																													 records.get(index).type().getQualifiedName() + ") value));")
+																				.collect(Collectors.joining(System.lineSeparator()));
+		final String methods = IntStream.range(0, records.size())
+																		.mapToObj(index -> describe(index, records.get(index)) + read(index, records.get(index)) +
+																											 deserialize(index, records.get(index)) +
+																											 serialize(index, records.get(index)))
+																		.collect(Collectors.joining());
+		return String.join(System.lineSeparator(),
+											 "package " + PACKAGE + ";",
+											 "",
+											 "import magma.compile.error.CompileError;",
+											 "import magma.list.ArrayList;",
+											 "import magma.list.List;",
+											 "import magma.option.Option;",
+											 "import magma.option.Some;",
+											 "import magma.result.Err;",
+											 "import magma.result.Ok;",
+											 "import magma.result.Result;",
+											 "",
+											 "import java.util.HashSet;",
+											 "import java.util.Map;",
+											 "import java.util.Set;",
+											 "",
+											 "@javax.annotation.processing.Generated(\"" + RecordProcessor.class.getName() + "\")",
+											 "public final class " + CLASS_NAME + " implements GeneratedRecords {",
+											 "\t@Override",
+											 "\tpublic Map<Class<?>, GeneratedRecord> records() {",
+											 "\t\treturn Map.ofEntries(",
+											 entries + ");",
+											 "\t}",
+											 "",
+											 "\t@Override",
+											 "\t@SuppressWarnings(\"unchecked\")",
+											 "\tpublic Option<Object> construct(int record, Object[] arguments) {",
+											 "\t\treturn switch (record) {",
+											 constructors,
+											 "\t\t\tdefault -> Option.empty();",
+											 "\t\t};",
+											 "\t}",
+											 "",
+											 "\t@Override",
+											 "\tpublic Option<Object> read(int record, int component, Object value) {",
+											 "\t\treturn switch (record) {",
+											 readers,
+											 "\t\t\tdefault -> Option.empty();",
+											 "\t\t};",
+											 "\t}",
+											 "",
+											 "\t@Override",
+											 "\tpublic Option<Result<Object, CompileError>> deserialize(int record, Node node) {",
+											 "\t\treturn switch (record) {",
+											 deserializers,
+											 "\t\t\tdefault -> Option.empty();",
+											 "\t\t};",
+											 "\t}",
+											 "",
+											 "\t@Override",
+											 "\tpublic Option<Result<Node, CompileError>> serialize(int record, Object value) {",
+											 "\t\treturn switch (record) {",
+											 serializers,
+											 "\t\t\tdefault -> Option.empty();",
+											 "\t\t};",
+											 "\t}",
+											 methods + "}",
+											 "");
+	}
+
+	private static String arguments(Described described) {
+		final List<Component> components = described.components();
+		return IntStream.range(0, components.size())
+										.mapToObj(position -> "(" + components.get(position).type() + ") arguments[" + position + "]")
+										.collect(Collectors.joining(", "));
+	}
+
+	private static String describe(int index, Described described) {
+		final String components = described.components()
+																			 .stream()
+																			 .map(RecordProcessor::component)
+																			 .collect(Collectors.joining("," + System.lineSeparator() + "\t\t\t\t\t\t"));
+		return String.join(System.lineSeparator(),
+											 "",
+											 "\tprivate static GeneratedRecord describe" + index + "() {",
+											 "\t\treturn new GeneratedRecord(" + index + ", \"" + described.tag() + "\",",
+											 "\t\t\t\tjava.util.List.of(" + components + "));",
+											 "\t}",
+											 "");
+	}
+
+	private static String component(Component component) {
+		return "new GeneratedRecord.Component(\"" + component.name() + "\", " + component.erased() + ".class, " +
+					 classOption(component.elementClass()) + ", " + classOption(component.innerClass()) + ")";
+	}
+
+	private static String classOption(Optional<String> erased) {
+		return erased.map(name -> "Option.<Class<?>>of(" + name + ".class)").orElse("Option.<Class<?>>empty()");
+	}
+
+	private static String read(int index, Described described) {
+		final List<Component> components = described.components();
+		final String cases = IntStream.range(0, components.size())
+																	.mapToObj(position -> "\t\t\tcase " + position + " -> Option.of(value." +
+																												components.get(position).name() + "());")
+																	.collect(Collectors.joining(System.lineSeparator()));
+		return String.join(System.lineSeparator(),
+											 "",
+											 "\tprivate static Option<Object> read" + index + "(int component, " +
+											 described.type().getQualifiedName() + " value) {",
+											 "\t\treturn switch (component) {",
+											 cases,
+											 "\t\t\tdefault -> Option.empty();",
+											 "\t\t};",
+											 "\t}",
+											 "");
+	}
+
+	private static boolean hasDeserializer(Described described) {
+		return described.components().stream().allMatch(component -> component.deserializer().isPresent());
+	}
+
+	private static boolean hasSerializer(Described described) {
+		return described.components().stream().allMatch(component -> component.serializer().isPresent());
+	}
+
+	// Builds the record as JavaSerializer.deserializeRecord does, with each component's reader chosen here.
+	private static String deserialize(int index, Described described) {
+		if (!hasDeserializer(described)) return "";
+		final List<Component> components = described.components();
+		final String type = described.type().getQualifiedName().toString();
+		final String reads = IntStream.range(0, components.size())
+																	.mapToObj(position -> "\t\t" + SERIALIZER + "collect(" +
+																												components.get(position).deserializer().orElseThrow() +
+																												", arguments, " + position + ", errors);")
+																	.collect(Collectors.joining(System.lineSeparator()));
+		return String.join(System.lineSeparator(),
+											 "",
+											 "\t@SuppressWarnings(\"unchecked\")",
+											 "\tprivate static Result<Object, CompileError> deserialize" + index + "(Node node) {",
+											 "\t\tif (" + SERIALIZER + "checkTag(" + type + ".class, node, \"" + described.tag() +
+											 "\") instanceof Some<CompileError>(CompileError error))",
+											 "\t\t\treturn new Err<Object, CompileError>(error);",
+											 "",
+											 "\t\tfinal Object[] arguments = new Object[" + components.size() + "];",
+											 "\t\tfinal List<CompileError> errors = new ArrayList<CompileError>();",
+											 "\t\tfinal Set<String> consumed = new HashSet<String>();",
+											 reads,
+											 "\t\tif (" + SERIALIZER + "incomplete(" + type + ".class, node, consumed, errors) instanceof " +
+											 "Some<CompileError>(CompileError error))",
+											 "\t\t\treturn new Err<Object, CompileError>(error);",
+											 "\t\treturn new Ok<Object, CompileError>(HashCons.intern(new " + type + "(" + arguments(described) +
+											 ")));",
+											 "\t}",
+											 "");
+	}
+
+	// Builds the node as JavaSerializer.serializeRecord does, with each component's writer chosen here.
+	private static String serialize(int index, Described described) {
+		if (!hasSerializer(described)) return "";
+		final String type = described.type().getQualifiedName().toString();
+		final String writes = described.components()
+																	 .stream()
+																	 .map(component -> "\t\tresult = " + SERIALIZER + "merge(result, " +
+																										 component.serializer().orElseThrow() + ", errors);")
+																	 .collect(Collectors.joining(System.lineSeparator()));
+		return String.join(System.lineSeparator(),
+											 "",
+											 "\tprivate static Result<Node, CompileError> serialize" + index + "(" + type + " value) {",
+											 "\t\tfinal List<CompileError> errors = new ArrayList<CompileError>();",
+											 "\t\tNode result = " + SERIALIZER + "createNodeWithType(Option.of(\"" + described.tag() + "\"));",
+											 writes,
+											 "\t\treturn " + SERIALIZER + "serialized(" + type + ".class, result, errors);",
+											 "\t}",
+											 "");
+	}
+}
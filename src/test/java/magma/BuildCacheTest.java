@@ -0,0 +1,154 @@
+package magma;
+
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * A cache hit skips compiling a file, so every change that can make the written output stale must miss.
+ */
+public class BuildCacheTest {
+	private static final String KEY = "magma/Example.java";
+	private static final String INPUT = "class Example {}";
+	private static final String OUTPUT = "struct Example {};";
+
+	@TempDir
+	Path directory;
+
+	private Path manifest() {
+		return directory.resolve("target").resolve("magma-build.manifest");
+	}
+
+	private Path output() {
+		return directory.resolve("windows").resolve("magma").resolve("Example.cpp");
+	}
+
+	private static void write(Path path, String content) {
+		try {
+			Files.createDirectories(path.getParent());
+			Files.writeString(path, content);
+		} catch (IOException e) {
+			fail(path + ": " + e.getMessage());
+		}
+	}
+
+	private static void delete(Path path) {
+		try {
+			Files.delete(path);
+		} catch (IOException e) {
+			fail(path + ": " + e.getMessage());
+		}
+	}
+
+	// Records one compiled file, writes its output and reloads the saved manifest.
+	private BuildCache built() {
+		final BuildCache cache = BuildCache.load(manifest());
+		cache.record(KEY, INPUT, OUTPUT);
+		write(output(), OUTPUT);
+		assertTrue(cache.save(manifest()) instanceof None<IOException>, "the manifest was not saved");
+		return BuildCache.load(manifest());
+	}
+
+	@Test
+	void roundTripsTheManifest() {
+		final BuildCache cache = built();
+		assertEquals(List.of(KEY), cache.keys());
+		assertTrue(cache.isUpToDate(KEY, INPUT, output()));
+		assertEquals(1, cache.reused());
+	}
+
+	@Test
+	void missesWhenTheInputChanges() {
+		assertFalse(built().isUpToDate(KEY, INPUT + " ", output()));
+	}
+
+	@Test
+	void missesWhenTheOutputIsEdited() {
+		final BuildCache cache = built();
+		write(output(), OUTPUT + System.lineSeparator());
+		assertFalse(cache.isUpToDate(KEY, INPUT, output()));
+	}
+
+	@Test
+	void missesWhenTheOutputIsDeleted() {
+		final BuildCache cache = built();
+		delete(output());
+		assertFalse(cache.isUpToDate(KEY, INPUT, output()));
+	}
+
+	@Test
+	void missesForAnUnknownSource() {
+		assertFalse(built().isUpToDate("magma/Other.java", INPUT, output()));
+	}
+
+	@Test
+	void dropsTheManifestOfAnotherVersion() {
+		built();
+		write(manifest(), "another version" + System.lineSeparator() + KEY + "\t" + "input" + "\t" + "output");
+		final BuildCache cache = BuildCache.load(manifest());
+		assertEquals(List.of(), cache.keys());
+		assertFalse(cache.isUpToDate(KEY, INPUT, output()));
+	}
+
+	@Test
+	void dropsTheManifestWhenTheOrSelectionChanges() {
+		final Option<String> selection = Option.ofNullable(System.getProperty("magma.or"));
+		built();
+		System.setProperty("magma.or", selection.orElse("first").equals("last") ? "first" : "last");
+		final BuildCache cache = BuildCache.load(manifest());
+		if (selection instanceof Some<String>(String value)) System.setProperty("magma.or", value);
+		else System.clearProperty("magma.or");
+
+		assertEquals(List.of(), cache.keys());
+		assertTrue(BuildCache.load(manifest()).isUpToDate(KEY, INPUT, output()), "restoring magma.or restores the entry");
+	}
+
+	@Test
+	void forgetsADeletedSource() {
+		final BuildCache cache = built();
+		cache.forget(KEY);
+		assertEquals(List.of(), cache.keys());
+		assertFalse(cache.isUpToDate(KEY, INPUT, output()));
+		assertTrue(cache.save(manifest()) instanceof None<IOException>, "the manifest was not saved");
+		assertEquals(List.of(), BuildCache.load(manifest()).keys());
+	}
+
+	@Test
+	void removesTheOutputsOfDeletedSources() {
+		final Path sources = directory.resolve("java");
+		final Path outputs = directory.resolve("windows");
+		// An empty cache has no version, so removeDeleted does not write the manifest of the real build.
+		final BuildCache cache = BuildCache.empty();
+		cache.record("magma/Example.java", INPUT, OUTPUT);
+		cache.record("magma/rule/First.java", INPUT, OUTPUT);
+		cache.record("magma/rule/Second.java", INPUT, OUTPUT);
+		write(sources.resolve("magma").resolve("Example.java"), INPUT);
+		write(output(), OUTPUT);
+		write(outputs.resolve("magma").resolve("rule").resolve("First.cpp"), OUTPUT);
+		write(outputs.resolve("magma").resolve("rule").resolve("Second.cpp"), OUTPUT);
+
+		Main.removeDeleted(sources, outputs, Set.of(sources.resolve("magma").resolve("rule")), cache);
+		assertEquals(List.of("magma/Example.java"), cache.keys());
+		assertTrue(Files.exists(output()), "the output of a source that still exists was removed");
+		assertFalse(Files.exists(outputs.resolve("magma").resolve("rule").resolve("First.cpp")));
+		assertFalse(Files.exists(outputs.resolve("magma").resolve("rule").resolve("Second.cpp")));
+
+		delete(sources.resolve("magma").resolve("Example.java"));
+		Main.removeDeleted(sources, outputs, Set.of(sources.resolve("magma").resolve("Example.java")), cache);
+		assertEquals(List.of(), cache.keys());
+		assertFalse(Files.exists(output()));
+	}
+}
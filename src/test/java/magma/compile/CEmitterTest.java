@@ -0,0 +1,86 @@
+package magma.compile;
+
+import magma.compile.error.ApplicationError;
+import magma.compile.error.CompileError;
+import magma.compile.error.ThrowableError;
+import magma.compile.rule.LexMemo;
+import magma.compile.rule.Slice;
+import magma.result.Err;
+import magma.result.Ok;
+import magma.result.Result;
+import magma.transform.Transformer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * CEmitter is a hand-written copy of what CRules generate, so every source of the project is generated both ways and
+ * the outputs must be the same, byte for byte.
+ */
+public class CEmitterTest {
+	private static final Path SOURCES = Paths.get("src", "main", "java");
+
+	private static Result<List<Path>, ApplicationError> sources() {
+		try (Stream<Path> paths = Files.walk(SOURCES)) {
+			final List<Path> sources = paths.filter(path -> path.toString().endsWith(".java")).sorted().toList();
+			return new Ok<List<Path>, ApplicationError>(sources);
+		} catch (IOException e) {
+			return new Err<List<Path>, ApplicationError>(new ApplicationError(new ThrowableError(e)));
+		}
+	}
+
+	private static Result<String, ApplicationError> read(Path path) {
+		try {
+			return new Ok<String, ApplicationError>(Files.readString(path));
+		} catch (IOException e) {
+			return new Err<String, ApplicationError>(new ApplicationError(new ThrowableError(e)));
+		}
+	}
+
+	private static Result<Lang.CRoot, ApplicationError> transform(Path path) {
+		return read(path).flatMap(input -> transform(new Slice(input)).mapErr(ApplicationError::new));
+	}
+
+	private static Result<Lang.CRoot, CompileError> transform(Slice source) {
+		final Result<Node, CompileError> lexed = LexMemo.within(() -> Lang.JRoot().lex(source)).left();
+		return lexed.flatMap(node -> Serializers.deserialize(Lang.JRoot.class, node)).flatMap(Transformer::transform);
+	}
+
+	private static <T> T orFail(String name, Result<T, ApplicationError> result) {
+		return switch (result) {
+			case Ok<T, ApplicationError>(T value) -> value;
+			case Err<T, ApplicationError>(ApplicationError error) -> fail(name + ": " + error.display());
+		};
+	}
+
+	private static String describe(Result<String, CompileError> result) {
+		return switch (result) {
+			case Ok<String, CompileError>(String value) -> value;
+			case Err<String, CompileError>(CompileError error) -> "error: " + error.display();
+		};
+	}
+
+	@Test
+	void emitsWhatTheRulesGenerate() {
+		final List<Path> sources = orFail(SOURCES.toString(), sources());
+		assertTrue(!sources.isEmpty(), "no sources under " + SOURCES);
+		for (Path path : sources) assertEmitsWhatTheRulesGenerate(path, orFail(path.toString(), transform(path)));
+	}
+
+	private static void assertEmitsWhatTheRulesGenerate(Path path, Lang.CRoot root) {
+		final Result<String, CompileError> generated =
+				Serializers.serialize(Lang.CRoot.class, root).flatMap(CRules.CRoot()::generate);
+		final Result<String, CompileError> emitted = CEmitter.emit(root);
+		assertTrue(generated instanceof Ok<String, CompileError>, () -> path + ": " + describe(generated));
+		assertEquals(describe(generated), describe(emitted), path.toString());
+	}
+}
@@ -0,0 +1,164 @@
+package magma.compile;
+
+import magma.compile.error.CompileError;
+import magma.compile.error.ThrowableError;
+import magma.compile.rule.LexMemo;
+import magma.compile.rule.Slice;
+import magma.list.NonEmptyList;
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
+import magma.result.Err;
+import magma.result.Ok;
+import magma.result.Result;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class ColumnarTreeTest {
+	private static final List<String> SOURCES = List.of("src/main/java/magma/compile/ColumnarNode.java",
+																											"src/main/java/magma/Tuple.java",
+																											"src/main/java/magma/BuildOptions.java");
+	private static final String MISSING = "<missing>";
+
+	private static Node lex(Slice source) {
+		final Result<Node, CompileError> result = LexMemo.within(() -> Lang.JRoot().lex(source)).left();
+		return switch (result) {
+			case Ok<Node, CompileError>(Node node) -> node;
+			case Err<Node, CompileError>(CompileError error) -> fail(error.display());
+		};
+	}
+
+	private static Slice read(String path) {
+		return switch (readString(Paths.get(path))) {
+			case Ok<String, ThrowableError>(String value) -> new Slice(value);
+			case Err<String, ThrowableError>(ThrowableError error) -> fail(path + ": " + error.display());
+		};
+	}
+
+	private static Result<String, ThrowableError> readString(Path path) {
+		try {
+			return new Ok<String, ThrowableError>(Files.readString(path));
+		} catch (IOException e) {
+			return new Err<String, ThrowableError>(new ThrowableError(e));
+		}
+	}
+
+	@Test
+	void roundTripsLexedSources() {
+		for (String path : SOURCES) {
+			final Slice source = read(path);
+			assertStores(path, source, lex(source));
+		}
+	}
+
+	@Test
+	void keepsSlicesThatDoNotViewTheSource() {
+		final Slice source = new Slice("int value");
+		final Node root = new Node().retype("root")
+																.withSlice("type", source.substring(0, 3))
+																.withSlice("name", new Slice("copied"))
+																.withNodeList("children",
+																							NonEmptyList.of(new Node().retype("a"),
+																															new Node().retype("b")
+																																				.withSlice("name", source.substring(4, 9))))
+																.withSlice("last", new Slice("also copied"));
+		assertStores("built", source, root);
+	}
+
+	@Test
+	void failsToReadAnOffHeapTreeAfterClose() {
+		final Slice source = new Slice("value");
+		final ColumnarTree tree = ColumnarTree.offHeap(source, new Node().retype("root").withSlice("name", source));
+		final ColumnarNode root = tree.root();
+		assertEquals("value", root.findSlice("name").map(Slice::value).orElse(""));
+		tree.close();
+		assertThrows(IllegalStateException.class, () -> root.findSlice("name"));
+	}
+
+	// Both layouts must give the original tree back.
+	private static void assertStores(String name, Slice source, Node original) {
+		try (ColumnarTree heap = ColumnarTree.onHeap(source, original);
+				 ColumnarTree offHeap = ColumnarTree.offHeap(source, original)) {
+			assertRoundTrips(name, original, heap);
+			assertRoundTrips(name, original, offHeap);
+		}
+	}
+
+	private static void assertRoundTrips(String name, Node original, ColumnarTree tree) {
+		assertEquals(original.format(0), tree.root().toNode().format(0), name);
+		assertEquals(count(original), tree.size(), name + ": rows");
+		assertAgrees(name, original, tree.root());
+	}
+
+	// A row for each node and for each slice field.
+	private static int count(Node node) {
+		final int children = node.getNodes().stream().mapToInt(ColumnarTreeTest::count).sum();
+		final int elements = node.getNodeLists()
+														 .stream()
+														 .mapToInt(list -> list.stream().fold(0, (sum, element) -> sum + count(element)))
+														 .sum();
+		return 1 + node.getStringKeys().size() + children + elements;
+	}
+
+	private static void assertAgrees(String name, Node expected, ColumnarNode actual) {
+		assertEquals(expected.maybeType.orElse(MISSING), actual.maybeType().orElse(MISSING), name);
+		assertSlicesAgree(name, expected, actual);
+		assertNodesAgree(name, expected, actual);
+		assertListsAgree(name, expected, actual);
+	}
+
+	private static void assertSlicesAgree(String name, Node expected, ColumnarNode actual) {
+		for (String key : expected.getStringKeys())
+			assertEquals(valueOf(expected.findSlice(key)), valueOf(actual.findSlice(key)), name + "." + key);
+	}
+
+	private static void assertNodesAgree(String name, Node expected, ColumnarNode actual) {
+		for (String key : expected.getNodeKeys()) {
+			assertTrue(actual.findNode(key) instanceof Some<ColumnarNode>, name + "." + key);
+			if (expected.findNode(key) instanceof Some<Node>(Node child) &&
+					actual.findNode(key) instanceof Some<ColumnarNode>(ColumnarNode row)) {
+				final int parent = row.parent().map(ColumnarNode::row).orElse(ColumnarTree.ABSENT);
+				assertEquals(actual.row(), parent, name + "." + key);
+				assertAgrees(name + "." + key, child, row);
+			}
+		}
+	}
+
+	private static void assertListsAgree(String name, Node expected, ColumnarNode actual) {
+		for (String key : expected.getNodeListKeys()) {
+			assertTrue(actual.hasNodeList(key), name + "." + key);
+			assertElementsAgree(name + "." + key, elements(expected.findNodeList(key)), elements(actual.findNodeList(key)));
+		}
+	}
+
+	private static void assertElementsAgree(String name, List<Node> children, List<ColumnarNode> rows) {
+		assertEquals(children.size(), rows.size(), name);
+		for (int i = 0; i < children.size(); i++)
+			assertAgrees(name + "[" + i + "]", children.get(i), rows.get(i));
+	}
+
+	private static String valueOf(Option<Slice> slice) {
+		return slice.map(Slice::value).orElse(MISSING);
+	}
+
+	private static <T> List<T> elements(Option<NonEmptyList<T>> list) {
+		return switch (list) {
+			case Some<NonEmptyList<T>>(NonEmptyList<T> value) -> value.stream().fold(new ArrayList<T>(), (elements, element) -> {
+				elements.add(element);
+				return elements;
+			});
+			case None<NonEmptyList<T>> _ -> List.of();
+		};
+	}
+}
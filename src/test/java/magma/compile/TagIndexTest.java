@@ -0,0 +1,102 @@
+package magma.compile;
+
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The serializer only reports an ambiguous tag when it reaches a node with that tag, so every sealed type that the
+ * Java and C trees can hold is checked here instead.
+ */
+public class TagIndexTest {
+	private static final String MISSING = "<none>";
+
+	sealed interface Shape permits Circle, Round, Square {}
+
+	@Tag("circle")
+	record Circle() implements Shape {}
+
+	@Tag("circle")
+	record Round() implements Shape {}
+
+	@Tag("square")
+	record Square() implements Shape {}
+
+	@Test
+	void noTagBelowTheRootsIsAmbiguous() {
+		final Set<Class<?>> sealed = new LinkedHashSet<Class<?>>();
+		walk(Lang.JRoot.class, new HashSet<Class<?>>(), sealed);
+		walk(Lang.CRoot.class, new HashSet<Class<?>>(), sealed);
+		assertTrue(sealed.contains(Lang.JavaRootSegment.class), "JRoot was not walked");
+		assertTrue(sealed.contains(Lang.CRootSegment.class), "CRoot was not walked");
+
+		assertEquals(List.of(), sealed.stream().flatMap(type -> ambiguities(type).stream()).toList());
+	}
+
+	@Test
+	void findsATagCarriedTwice() {
+		final TagIndex index = TagIndex.of(Shape.class);
+		assertEquals(Circle.class.getName() + ", " + Round.class.getName(), index.ambiguity("circle").orElse(MISSING));
+		assertEquals(MISSING, index.ambiguity("square").orElse(MISSING));
+		assertTrue(index.target("square") instanceof Some<Class<?>>(Class<?> target) && target == Square.class);
+		assertTrue(index.target("circle") instanceof None<Class<?>>);
+	}
+
+	// Every sealed type reachable from type, through permitted subtypes and record components.
+	private static void walk(Type type, Set<Class<?>> visited, Set<Class<?>> sealed) {
+		switch (type) {
+			case Class<?> c -> {
+				if (!visited.add(c)) return;
+				if (c.isSealed() && !c.isRecord()) {
+					sealed.add(c);
+					Arrays.stream(c.getPermittedSubclasses()).forEach(permitted -> walk(permitted, visited, sealed));
+				}
+				if (c.isRecord())
+					Arrays.stream(c.getRecordComponents())
+								.map(RecordComponent::getGenericType)
+								.forEach(component -> walk(component, visited, sealed));
+			}
+			case ParameterizedType parameterized -> {
+				walk(parameterized.getRawType(), visited, sealed);
+				Arrays.stream(parameterized.getActualTypeArguments()).forEach(argument -> walk(argument, visited, sealed));
+			}
+			case WildcardType wildcard -> Arrays.stream(wildcard.getUpperBounds()).forEach(bound -> walk(bound, visited, sealed));
+			default -> {}
+		}
+	}
+
+	// One line for each tag that more than one class below the sealed type carries.
+	private static List<String> ambiguities(Class<?> type) {
+		final TagIndex index = TagIndex.of(type);
+		return tags(type).stream()
+										 .flatMap(tag -> index.ambiguity(tag) instanceof Some<String>(String names)
+																		 ? Stream.of(type.getSimpleName() + " '" + tag + "': " + names)
+																		 : Stream.empty())
+										 .toList();
+	}
+
+	// The tags of every class below a sealed type, at any depth.
+	private static Set<String> tags(Class<?> type) {
+		final Set<String> tags = new LinkedHashSet<String>();
+		Arrays.stream(type.getPermittedSubclasses()).forEach(permitted -> {
+			if (Option.ofNullable(permitted.getAnnotation(Tag.class)) instanceof Some<Tag>(Tag tag)) tags.add(tag.value());
+			if (permitted.isSealed() && !permitted.isRecord()) tags.addAll(tags(permitted));
+		});
+		return tags;
+	}
+}
@@ -0,0 +1,88 @@
+package magma.compile.rule;
+
+import magma.compile.Lang;
+import magma.compile.Node;
+import magma.compile.error.CompileError;
+import magma.compile.error.ThrowableError;
+import magma.result.Err;
+import magma.result.Ok;
+import magma.result.Result;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * The memo table must be invisible: lexing with it gives the same tree as lexing without it, and nothing a caller does
+ * to a returned node reaches the cached entry.
+ */
+public class LexMemoTest {
+	private static final List<String> SOURCES = List.of("src/main/java/magma/Tuple.java",
+																											"src/main/java/magma/BuildOptions.java",
+																											"src/main/java/magma/compile/rule/OperatorRule.java",
+																											"src/main/java/magma/compile/rule/OperatorScan.java");
+
+	private static Slice read(String path) {
+		return switch (readString(Paths.get(path))) {
+			case Ok<String, ThrowableError>(String value) -> new Slice(value);
+			case Err<String, ThrowableError>(ThrowableError error) -> fail(path + ": " + error.display());
+		};
+	}
+
+	private static Result<String, ThrowableError> readString(Path path) {
+		try {
+			return new Ok<String, ThrowableError>(Files.readString(path));
+		} catch (IOException e) {
+			return new Err<String, ThrowableError>(new ThrowableError(e));
+		}
+	}
+
+	private static String describe(Result<Node, CompileError> result) {
+		return switch (result) {
+			case Ok<Node, CompileError>(Node node) -> node.format(0);
+			case Err<Node, CompileError>(CompileError error) -> "error: " + error.display();
+		};
+	}
+
+	@Test
+	void lexesTheSameTreeAsWithoutTheTable() {
+		for (String path : SOURCES) assertLexesTheSameTree(path, read(path));
+	}
+
+	@Test
+	void lexesTheSameErrorAsWithoutTheTable() {
+		assertLexesTheSameTree("invalid", new Slice("class Broken { int x = ; }"));
+	}
+
+	private static void assertLexesTheSameTree(String name, Slice source) {
+		final String plain = describe(Lang.JRoot().lex(source));
+		final String memoized = describe(LexMemo.within(() -> Lang.JRoot().lex(source)).left());
+		assertEquals(plain, memoized, name);
+	}
+
+	@Test
+	void returnsACopyOfTheCachedNode() {
+		final Rule rule = new StringRule("value");
+		final Slice content = new Slice("content");
+		final AtomicInteger lexes = new AtomicInteger();
+		final String original = LexMemo.within(() -> {
+			final Result<Node, CompileError> first = LexMemo.lex(rule, content, () -> {
+				lexes.incrementAndGet();
+				return new Ok<Node, CompileError>(new Node().retype("original").withSlice("value", content));
+			});
+			// What an enclosing TagRule and SplitRule do to the node they get back.
+			first.mapValue(node -> node.retype("changed").merge(new Node().withSlice("other", new Slice("other"))));
+			return describe(LexMemo.lex(rule, content, () -> fail("the second lex missed the table")));
+		}).left();
+
+		assertEquals(1, lexes.get());
+		assertEquals(new Node().retype("original").withSlice("value", content).format(0), original);
+	}
+}
@@ -0,0 +1,128 @@
+package magma.compile.rule;
+
+import magma.Tuple;
+import magma.option.None;
+import magma.option.Option;
+import magma.option.Some;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link OperatorScan} must split every input exactly like the {@code FoldingDivider} that {@link OperatorRule} falls
+ * back to, or the generated output would change.
+ */
+public class OperatorScanTest {
+	// In the order that Lang.JExpression tries them.
+	private static final List<String> OPERATORS = List.of(">=", ">", "<=", "<", "!=", "==", "||", "&&", "-", "+");
+
+	private static final List<String> INPUTS = List.of("a + b",
+																										 "a - b + c",
+																										 "a >= b",
+																										 "a > b",
+																										 "a <= b",
+																										 "a < b",
+																										 "a != b",
+																										 "a == b",
+																										 "a || b",
+																										 "a && b",
+																										 "a<=b>=c",
+																										 "a < b <= c",
+																										 "a <= b < c",
+																										 "a > b >= c",
+																										 "a = b == c",
+																										 "!a != b",
+																										 "a == b != c",
+																										 "a | b || c",
+																										 "a & b && c",
+																										 "a && b || c",
+																										 "a ||| b",
+																										 "a = = b",
+																										 "a <<= b",
+																										 "a -- b",
+																										 "a+-b",
+																										 "-a + b",
+																										 "'+' + c",
+																										 "'\\'' == c",
+																										 "'=' == '='",
+																										 "\"a + b\" + c",
+																										 "\"a \\\" <= b\" <= c",
+																										 "\"||\" || \"&&\"",
+																										 "\"unterminated + b",
+																										 "'a",
+																										 "a + b // c + d",
+																										 "a /* <= */ <= b",
+																										 "a // \"x\" + y",
+																										 "a / b + c",
+																										 "a <= b // <",
+																										 "",
+																										 "+",
+																										 "a +",
+																										 "<= b",
+																										 "a ==");
+
+	private static Splitter divider(String infix) {
+		return DividingSplitter.KeepFirst(new FoldingDivider(new EscapingFolder(new OperatorFolder(new Slice(infix)))));
+	}
+
+	private static String describe(Option<Tuple<Slice, Slice>> split) {
+		return switch (split) {
+			case Some<Tuple<Slice, Slice>>(Tuple<Slice, Slice> parts) -> parts.left().value() + " | " + parts.right().value();
+			case None<Tuple<Slice, Slice>> _ -> "<none>";
+		};
+	}
+
+	// Counts how often the scan hands an input to the divider instead of splitting it from its own positions.
+	private record CountingSplitter(Splitter splitter, AtomicInteger calls) implements Splitter {
+		@Override
+		public Option<Tuple<Slice, Slice>> split(Slice slice) {
+			calls.incrementAndGet();
+			return splitter.split(slice);
+		}
+
+		@Override
+		public String createErrorMessage() {
+			return splitter.createErrorMessage();
+		}
+
+		@Override
+		public String delimiter() {
+			return splitter.delimiter();
+		}
+	}
+
+	private static int fallbacks(String input, String infix) {
+		final CountingSplitter fallback = new CountingSplitter(divider(infix), new AtomicInteger());
+		new OperatorScan(new Slice(input)).split(infix, fallback);
+		return fallback.calls().get();
+	}
+
+	@Test
+	void splitsLikeTheDivider() {
+		for (String input : INPUTS) assertSplitsLikeTheDivider(input);
+	}
+
+	private static void assertSplitsLikeTheDivider(String input) {
+		final OperatorScan scan = new OperatorScan(new Slice(input));
+		OPERATORS.forEach(infix -> assertEquals(describe(divider(infix).split(new Slice(input))),
+																						describe(scan.split(infix, divider(infix))),
+																						"'" + input + "' split on " + infix));
+	}
+
+	@Test
+	void splitsWithoutTheDividerWhenThereIsNoComment() {
+		assertEquals(0, fallbacks("a <= b", "<="));
+		assertEquals(0, fallbacks("a && b || c", "||"));
+		assertEquals(0, fallbacks("\"a + b\" + c", "+"));
+		assertEquals(0, fallbacks("'=' == '='", "=="));
+	}
+
+	@Test
+	void fallsBackOnComments() {
+		assertEquals(1, fallbacks("a + b // c + d", "+"));
+		assertEquals(1, fallbacks("a /* <= */ <= b", "<="));
+	}
+}